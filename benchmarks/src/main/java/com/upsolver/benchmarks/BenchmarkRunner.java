@@ -0,0 +1,20 @@
+package com.upsolver.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler, so every result reports the throughput together with the
+ * allocation rate (gc.alloc.rate.norm is the bytes allocated per operation).
+ * Usage: java -cp target/benchmarks.jar com.upsolver.benchmarks.BenchmarkRunner [JMH options, e.g. a benchmark regex]
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
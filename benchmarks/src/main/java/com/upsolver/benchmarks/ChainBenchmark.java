@@ -0,0 +1,80 @@
+package com.upsolver.benchmarks;
+
+import com.upsolver.components.Matrix;
+import com.upsolver.operations.OperationsManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks typical operation chains through OperationsManager over rows that are already split in memory,
+ * so only the operations pipeline is measured (no reading and no output file).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChainBenchmark {
+    @Param({
+            "filter(3, 'Iowa') -> pluck(11) -> max",
+            "filter(3, 'Iowa') -> pluck(11) -> avg",
+            "pluck(11) -> ceil -> sum",
+            "filter(3, 'Iowa') -> pluck(11)",
+            "filter(3, 'Iowa')"
+    })
+    public String operations;
+
+    @Param({CsvDataGenerator.SYNTHETIC, CsvDataGenerator.IOWA})
+    public String dataSet;
+
+    @Param({"100000"})
+    public int rows;
+
+    private String[] header;
+    private List<String[]> data;
+
+    @Setup
+    public void setup() {
+        SilentOutput.enable();
+        header = CsvDataGenerator.createHeader(dataSet, 13);
+        data = CsvDataGenerator.createRows(dataSet, rows, 13);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SilentOutput.disable();
+    }
+
+    @Benchmark
+    public Matrix streaming() {
+        return run(new OperationsManager(operations));
+    }
+
+    @Benchmark
+    public Matrix buffered() {
+        return run(new OperationsManager(operations, false));
+    }
+
+    private Matrix run(OperationsManager operationsManager) {
+        operationsManager.processDataRow(header);
+        for (String[] row : data) {
+            operationsManager.processDataRow(row);
+        }
+        return operationsManager.computeResult();
+    }
+}
@@ -0,0 +1,130 @@
+package com.upsolver.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the benchmark inputs locally, in memory or as csv files in the temp directory.
+ * Both data sets keep the layout the default query expects: a state name in field 3 and a decimal amount
+ * in field 11.
+ * synthetic: id, name, county, state (uniform over STATES) and numeric fields up to the requested field count.
+ * iowa: 24 fields shaped like the Iowa liquor sales data set, most of the rows are in Iowa.
+ */
+public class CsvDataGenerator {
+    public static final String SYNTHETIC = "synthetic";
+    public static final String IOWA = "iowa";
+
+    private static final String[] STATES = {"Iowa", "Illinois", "Nebraska", "Missouri", "Minnesota", "Wisconsin"};
+    private static final String[] CITIES = {"Des Moines", "Cedar Rapids", "Davenport", "Sioux City", "Iowa City",
+            "Waterloo", "Ames", "West Des Moines", "Council Bluffs", "Dubuque"};
+    private static final String[] CATEGORIES = {"Vodka", "Canadian Whiskies", "Straight Bourbon Whiskies",
+            "Spiced Rum", "Tequila", "Imported Brandies", "Flavored Rum", "American Schnapps"};
+    private static final String[] IOWA_HEADER = {"invoice", "date", "store_number", "state", "city", "zip_code",
+            "county_number", "county", "category", "category_name", "vendor_number", "sale_dollars",
+            "vendor_name", "item_number", "item_description", "pack", "bottle_volume_ml", "state_bottle_cost",
+            "state_bottle_retail", "bottles_sold", "volume_sold_liters", "volume_sold_gallons", "store_name",
+            "address"};
+
+    public static String[] createHeader(String dataSet, int fields) {
+        if (IOWA.equals(dataSet)) {
+            return IOWA_HEADER.clone();
+        }
+        String[] header = new String[fields];
+        for (int i = 0; i < fields; i++) {
+            header[i] = "field" + i;
+        }
+        header[3] = "state";
+        header[11] = "amount";
+        return header;
+    }
+
+    /**
+     * @param dataSet synthetic or iowa
+     * @param rows
+     * @param fields number of fields of the synthetic data set (at least 12), ignored for iowa
+     * @returns the rows without the header
+     */
+    public static List<String[]> createRows(String dataSet, int rows, int fields) {
+        Random random = new Random(42);
+        List<String[]> data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            data.add(IOWA.equals(dataSet) ? createIowaRow(random, i) : createSyntheticRow(random, i, fields));
+        }
+        return data;
+    }
+
+    /**
+     * Writes the header and the rows to a csv file in the temp directory, the file is deleted on exit
+     * @returns File
+     * @throws IOException
+     */
+    public static File createFile(String dataSet, int rows, int fields) throws IOException {
+        File file = File.createTempFile("upsolver-" + dataSet + "-" + rows + "-", ".csv");
+        file.deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(String.join(",", createHeader(dataSet, fields)));
+            writer.newLine();
+            for (String[] row : createRows(dataSet, rows, fields)) {
+                writer.write(String.join(",", row));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    private static String[] createSyntheticRow(Random random, int index, int fields) {
+        String[] row = new String[Math.max(fields, 12)];
+        row[0] = String.valueOf(index);
+        row[1] = "name" + random.nextInt(100000);
+        row[2] = "county" + random.nextInt(99);
+        row[3] = STATES[random.nextInt(STATES.length)];
+        for (int i = 4; i < row.length; i++) {
+            row[i] = i % 2 == 1 ? decimal(random, 100000) : String.valueOf(random.nextInt(1000));
+        }
+        return row;
+    }
+
+    private static String[] createIowaRow(Random random, int index) {
+        String[] row = new String[IOWA_HEADER.length];
+        int city = random.nextInt(CITIES.length);
+        int category = random.nextInt(CATEGORIES.length);
+        int bottles = 1 + random.nextInt(24);
+        int volume = 50 * (1 + random.nextInt(35));
+        row[0] = "INV-" + (10000000 + index);
+        row[1] = String.format("%02d/%02d/20%02d", 1 + random.nextInt(12), 1 + random.nextInt(28), 12 + random.nextInt(9));
+        row[2] = String.valueOf(2000 + random.nextInt(3000));
+        row[3] = random.nextInt(10) < 8 ? "Iowa" : STATES[1 + random.nextInt(STATES.length - 1)];
+        row[4] = CITIES[city];
+        row[5] = String.valueOf(50000 + city * 37);
+        row[6] = String.valueOf(1 + city * 9);
+        row[7] = "County" + city;
+        row[8] = String.valueOf(1000000 + category * 1000);
+        row[9] = CATEGORIES[category];
+        row[10] = String.valueOf(100 + random.nextInt(400));
+        row[11] = decimal(random, 500000);
+        row[12] = "Vendor " + row[10];
+        row[13] = String.valueOf(10000 + random.nextInt(90000));
+        row[14] = CATEGORIES[category] + " " + volume + "ml";
+        row[15] = String.valueOf(6 * (1 + random.nextInt(4)));
+        row[16] = String.valueOf(volume);
+        row[17] = decimal(random, 5000);
+        row[18] = decimal(random, 7500);
+        row[19] = String.valueOf(bottles);
+        row[20] = String.valueOf(bottles * volume / 1000.0);
+        row[21] = String.valueOf(Math.round(bottles * volume / 3785.41 * 100) / 100.0);
+        row[22] = "Store " + row[2];
+        row[23] = random.nextInt(9999) + " Main St";
+        return row;
+    }
+
+    //a decimal value with up to two fraction digits below max / 100
+    private static String decimal(Random random, int max) {
+        return String.valueOf(random.nextInt(max) / 100.0);
+    }
+}
@@ -0,0 +1,116 @@
+package com.upsolver.benchmarks;
+
+import com.upsolver.index.ColumnIndex;
+import com.upsolver.io.OutputFormat;
+import com.upsolver.operations.OperationsManager;
+import com.upsolver.processors.IndexedFileProcessor;
+import com.upsolver.processors.MappedFileProcessor;
+import com.upsolver.processors.ParallelFileProcessor;
+import com.upsolver.processors.PipelinedFileProcessor;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.LineIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end benchmark of an App style run: reading the csv file, processing the operations and writing the
+ * result file, for each execution mode of App. Files are generated once per trial in the temp directory,
+ * for the indexed mode the index of the file (with an inverted index of the state column) is built in the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FileBenchmark {
+    @Param({"serial", "mapped", "parallel", "pipelined", "indexed"})
+    public String mode;
+
+    @Param({CsvDataGenerator.SYNTHETIC, CsvDataGenerator.IOWA})
+    public String dataSet;
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"13"})
+    public int fields;
+
+    @Param({"filter(3, 'Iowa') -> pluck(11) -> max", "filter(3, 'Iowa') -> pluck(11)"})
+    public String operations;
+
+    @Param({"CSV", "COLUMNAR"})
+    public String outputFormat;
+
+    private File dataFile;
+    private File outputDirectory;
+
+    @Setup
+    public void setup() throws IOException {
+        SilentOutput.enable();
+        dataFile = CsvDataGenerator.createFile(dataSet, rows, fields);
+        outputDirectory = Files.createTempDirectory("upsolver-benchmark").toFile();
+        if ("indexed".equals(mode)) {
+            ColumnIndex.build(dataFile, new int[]{3}, ColumnIndex.DEFAULT_BLOCK_LINES).save(dataFile);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SilentOutput.disable();
+        FileUtils.deleteQuietly(ColumnIndex.getIndexFile(dataFile));
+        FileUtils.deleteQuietly(dataFile);
+        FileUtils.deleteQuietly(outputDirectory);
+    }
+
+    @Benchmark
+    public void run() throws IOException {
+        OperationsManager operationsManager = new OperationsManager(operations);
+        operationsManager.setOutputDirectory(outputDirectory.getPath());
+        operationsManager.setOutputFormat(OutputFormat.valueOf(outputFormat));
+        operationsManager.setIncrementalOutput(true);
+        switch (mode) {
+            case "mapped":
+                new MappedFileProcessor(dataFile, operationsManager).process();
+                break;
+            case "parallel":
+                new ParallelFileProcessor(dataFile, operationsManager).process();
+                break;
+            case "pipelined":
+                new PipelinedFileProcessor(dataFile, operationsManager).process();
+                break;
+            case "indexed":
+                new IndexedFileProcessor(dataFile, operationsManager).process();
+                break;
+            default:
+                //the App serial loop
+                LineIterator it = FileUtils.lineIterator(dataFile, "UTF-8");
+                try {
+                    while (it.hasNext()) {
+                        if (!operationsManager.processDataRow(it.nextLine().split(","))) {
+                            break;
+                        }
+                    }
+                    operationsManager.finalizeProcess();
+                } finally {
+                    it.close();
+                }
+        }
+    }
+}
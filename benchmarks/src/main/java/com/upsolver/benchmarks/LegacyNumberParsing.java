@@ -0,0 +1,36 @@
+package com.upsolver.benchmarks;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+
+/**
+ * The numeric parsing that was used before NumberParser, kept as the baseline of NumberParsingBenchmark
+ */
+public class LegacyNumberParsing {
+
+    //Utils.checkNumber before NumberParser
+    public static Number checkNumber(final String value) {
+        if (value == null || value.length() == 0) {
+            return null;
+        }
+
+        if(value.matches("[-+]?[0-9]*\\.?[0-9]+")) {
+            try {
+                return NumberFormat.getInstance().parse(value);
+            } catch (ParseException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+    }
+
+    //the aggregations parsing before NumberParser, a failure is an exception
+    public static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
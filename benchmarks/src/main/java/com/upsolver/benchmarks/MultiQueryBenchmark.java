@@ -0,0 +1,97 @@
+package com.upsolver.benchmarks;
+
+import com.upsolver.operations.MultiQueryManager;
+import com.upsolver.operations.OperationsManager;
+import com.upsolver.operations.OperationsProcessor;
+import com.upsolver.processors.MappedFileProcessor;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a batch of queries over the same file: a scan of the file per query against a single scan
+ * for all the queries with MultiQueryManager. Half of the queries share the same leading filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MultiQueryBenchmark {
+    private static final String[] QUERY_TEMPLATES = {
+            "filter(3, 'Iowa') -> pluck(11) -> max",
+            "filter(3, 'Iowa') -> pluck(11) -> avg",
+            "pluck(11) -> sum",
+            "pluck(11) -> ceil -> min"
+    };
+
+    @Param({CsvDataGenerator.IOWA})
+    public String dataSet;
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"13"})
+    public int fields;
+
+    @Param({"4", "20"})
+    public int queries;
+
+    private File dataFile;
+    private File outputDirectory;
+    private List<String> operations;
+
+    @Setup
+    public void setup() throws IOException {
+        SilentOutput.enable();
+        dataFile = CsvDataGenerator.createFile(dataSet, rows, fields);
+        outputDirectory = Files.createTempDirectory("upsolver-benchmark").toFile();
+        operations = new ArrayList<>();
+        for (int i = 0; i < queries; i++) {
+            operations.add(QUERY_TEMPLATES[i % QUERY_TEMPLATES.length]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SilentOutput.disable();
+        FileUtils.deleteQuietly(dataFile);
+        FileUtils.deleteQuietly(outputDirectory);
+    }
+
+    @Benchmark
+    public void scanPerQuery() throws IOException {
+        for (String operationsStr : operations) {
+            process(new OperationsManager(operationsStr));
+        }
+    }
+
+    @Benchmark
+    public void singleScan() throws IOException {
+        process(new MultiQueryManager(operations));
+    }
+
+    private void process(OperationsProcessor operationsProcessor) throws IOException {
+        operationsProcessor.setOutputDirectory(outputDirectory.getPath());
+        new MappedFileProcessor(dataFile, operationsProcessor).process();
+    }
+}
@@ -0,0 +1,109 @@
+package com.upsolver.benchmarks;
+
+import com.upsolver.NumberParser;
+import com.upsolver.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares NumberParser with the previous numeric parsing (regex + NumberFormat in Utils.checkNumber and
+ * Double.parseDouble in the aggregations) on a column of values, run with -prof gc to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NumberParsingBenchmark {
+    private static final int VALUES = 4096;
+
+    //decimal: prices like the Iowa data set, integer: counts, mixed: numbers with some text values
+    @Param({"decimal", "integer", "mixed"})
+    public String values;
+
+    private String[] stringValues;
+    private ByteBuffer byteValues;
+    private int[] byteStarts;
+    private int[] byteEnds;
+    private NumberParser parser;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        stringValues = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            switch (values) {
+                case "decimal":
+                    stringValues[i] = String.valueOf(random.nextInt(10000000) / 100.0);
+                    break;
+                case "integer":
+                    stringValues[i] = String.valueOf(random.nextInt(1000000));
+                    break;
+                default:
+                    stringValues[i] = random.nextInt(4) == 0 ? "Iowa" : String.valueOf(random.nextInt(10000000) / 100.0);
+            }
+        }
+
+        StringBuilder joined = new StringBuilder();
+        byteStarts = new int[VALUES];
+        byteEnds = new int[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            byteStarts[i] = joined.length();
+            joined.append(stringValues[i]);
+            byteEnds[i] = joined.length();
+        }
+        byteValues = ByteBuffer.wrap(joined.toString().getBytes(StandardCharsets.US_ASCII));
+        parser = new NumberParser();
+    }
+
+    @Benchmark
+    public void legacyCheckNumber(Blackhole blackhole) {
+        for (String value : stringValues) {
+            blackhole.consume(LegacyNumberParsing.checkNumber(value));
+        }
+    }
+
+    @Benchmark
+    public void checkNumber(Blackhole blackhole) {
+        for (String value : stringValues) {
+            blackhole.consume(Utils.checkNumber(value));
+        }
+    }
+
+    @Benchmark
+    public void legacyParseDouble(Blackhole blackhole) {
+        for (String value : stringValues) {
+            blackhole.consume(LegacyNumberParsing.parseDouble(value));
+        }
+    }
+
+    @Benchmark
+    public void numberParserString(Blackhole blackhole) {
+        for (String value : stringValues) {
+            blackhole.consume(parser.parse(value) ? parser.getDouble() : Double.NaN);
+        }
+    }
+
+    @Benchmark
+    public void numberParserBytes(Blackhole blackhole) {
+        for (int i = 0; i < VALUES; i++) {
+            blackhole.consume(parser.parse(byteValues, byteStarts[i], byteEnds[i]) ? parser.getDouble() : Double.NaN);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.upsolver.benchmarks;
+
+import com.upsolver.components.ColumnarMatrix;
+import com.upsolver.components.Matrix;
+import com.upsolver.components.OperationContent;
+import com.upsolver.components.Row;
+import com.upsolver.operations.OperationsEnum;
+import com.upsolver.operations.OperationsManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each OperationsEnum operator on its own over rows that are already in memory.
+ * pipeline: the operator as a single operation chain through OperationsManager (compiled row executor and
+ * streaming accumulators), aggregations and ceil get rows of one decimal field like after pluck.
+ * rowMatrix / columnarMatrix: the operator function applied to a buffered Matrix / ColumnarMatrix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OperatorBenchmark {
+    @Param({"FILTER", "PLUCK", "CEIL", "SUM", "AVG", "MIN", "MAX", "GROUPBY", "TOP", "DISTINCT", "PERCENTILE"})
+    public String operator;
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"13", "40"})
+    public int fields;
+
+    private OperationsEnum operationsEnum;
+    private String operationsStr;
+    private List<String> parameters;
+    private String[] header;
+    private List<String[]> data;
+    private Matrix rowMatrix;
+    private ColumnarMatrix columnarMatrix;
+
+    @Setup
+    public void setup() {
+        SilentOutput.enable();
+        operationsEnum = OperationsEnum.valueOf(operator);
+        List<String[]> wideRows = CsvDataGenerator.createRows(CsvDataGenerator.SYNTHETIC, rows, fields);
+        switch (operationsEnum) {
+            case FILTER:
+                operationsStr = "filter(3, 'Iowa')";
+                parameters = Arrays.asList("3", " 'iowa'");
+                header = CsvDataGenerator.createHeader(CsvDataGenerator.SYNTHETIC, fields);
+                data = wideRows;
+                break;
+            case PLUCK:
+                operationsStr = "pluck(11)";
+                parameters = Arrays.asList("11");
+                header = CsvDataGenerator.createHeader(CsvDataGenerator.SYNTHETIC, fields);
+                data = wideRows;
+                break;
+            case GROUPBY:
+                operationsStr = "groupby(3, 11, max)";
+                parameters = Arrays.asList("3", "11", "max");
+                header = CsvDataGenerator.createHeader(CsvDataGenerator.SYNTHETIC, fields);
+                data = wideRows;
+                break;
+            default:
+                //aggregations run on the plucked decimal field
+                operationsStr = operationsEnum.getName();
+                if(operationsEnum == OperationsEnum.TOP) {
+                    operationsStr = "top(100)";
+                    parameters = Arrays.asList("100");
+                } else if(operationsEnum == OperationsEnum.PERCENTILE) {
+                    operationsStr = "percentile(99)";
+                    parameters = Arrays.asList("99");
+                }
+                header = new String[]{"amount"};
+                data = new ArrayList<>(rows);
+                for (String[] row : wideRows) {
+                    data.add(new String[]{row[11]});
+                }
+        }
+
+        rowMatrix = new Matrix();
+        columnarMatrix = new ColumnarMatrix();
+        for (String[] row : data) {
+            rowMatrix.addRow(Row.createRow(row));
+            columnarMatrix.addRow(Row.createRow(row));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SilentOutput.disable();
+    }
+
+    @Benchmark
+    public Matrix pipeline() {
+        OperationsManager operationsManager = new OperationsManager(operationsStr);
+        operationsManager.processDataRow(header);
+        for (String[] row : data) {
+            operationsManager.processDataRow(row);
+        }
+        return operationsManager.computeResult();
+    }
+
+    @Benchmark
+    public Matrix rowMatrix() {
+        return operationsEnum.getFunction().apply(new OperationContent(rowMatrix, parameters));
+    }
+
+    @Benchmark
+    public Matrix columnarMatrix() {
+        return operationsEnum.getFunction().apply(new OperationContent(columnarMatrix, parameters));
+    }
+}
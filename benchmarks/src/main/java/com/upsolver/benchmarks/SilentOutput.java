@@ -0,0 +1,34 @@
+package com.upsolver.benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * OperationsManager reports its progress to System.out, the benchmarks discard it while they run
+ * so the JMH output stays readable.
+ */
+public class SilentOutput {
+    private static PrintStream originalOutput;
+
+    public static synchronized void enable() {
+        if (originalOutput == null) {
+            originalOutput = System.out;
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }));
+        }
+    }
+
+    public static synchronized void disable() {
+        if (originalOutput != null) {
+            System.setOut(originalOutput);
+            originalOutput = null;
+        }
+    }
+}
@@ -1,36 +1,248 @@
 package com.upsolver;
 
+import com.upsolver.index.ColumnIndex;
+import com.upsolver.io.CompressedInput;
+import com.upsolver.io.OutputFormat;
+import com.upsolver.operations.MultiQueryManager;
 import com.upsolver.operations.OperationsManager;
+import com.upsolver.operations.OperationsProcessor;
+import com.upsolver.processors.FollowFileProcessor;
+import com.upsolver.processors.IndexedFileProcessor;
+import com.upsolver.processors.MappedFileProcessor;
+import com.upsolver.processors.ParallelFileProcessor;
+import com.upsolver.processors.PipelinedFileProcessor;
+import com.upsolver.server.QueryServer;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.LineIterator;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
 
+/**
+ * Usage: App [data file] [operations] [mode] [output format]
+ * mode is one of: serial (default), mapped, parallel, pipelined, indexed, follow, tail
+ * output format is one of: csv (default), columnar, columnar-gzip
+ * Many operations chains can be run over a single scan of the file, separated by ';' or read from a file
+ * with a chain per line: App data.csv @queries.txt
+ * The index of a file for the indexed mode is built with the index mode, the operations are then the columns that get
+ * an inverted index: App data.csv 3,5 index
+ * The follow mode processes only the lines that were appended to the file since the previous follow run of the same
+ * operations (that end with a numeric aggregation), the tail mode does it whenever the file changes until it is
+ * stopped, the file is checked every -Dupsolver.pollMillis milliseconds (1000 by default).
+ * A gzip or BGZF compressed data file is read directly, decompressed by the pipelined mode in every scan mode (the
+ * blocks of a BGZF file in parallel), the index, follow and tail modes need an uncompressed file.
+ * App serve [port] [cache size in MB] [worker threads] runs a query server on the loopback interface that caches the query results,
+ * see QueryServer.
+ * With -Dupsolver.metrics=true the execution metrics are printed as JSON after the process, while the process runs
+ * they are available through JMX.
+ */
 public class App {
+    private static final String DEFAULT_DATA_FILE = "c:/tmp/data.csv";
+    private static final String DEFAULT_OPERATIONS = "filter(3, 'Iowa') -> pluck(11) -> max";
+    private static final boolean PRINT_METRICS = Boolean.getBoolean("upsolver.metrics");
+    private static final long POLL_MILLIS = Long.getLong("upsolver.pollMillis", FollowFileProcessor.DEFAULT_POLL_MILLIS);
+
     public static void main(String[] args) {
-        File dataFile = new File("c:/tmp/data.csv");
+        if (args.length > 0 && "serve".equals(args[0])) {
+            serve(args);
+            return;
+        }
+        File dataFile = new File(args.length > 0 ? args[0] : DEFAULT_DATA_FILE);
+        String operationsStr = args.length > 1 ? args[1] : DEFAULT_OPERATIONS;
+        String mode = args.length > 2 ? args[2] : "serial";
+        OutputFormat outputFormat;
+        try {
+            outputFormat = args.length > 3 ? OutputFormat.valueOf(args[3].toUpperCase().replace('-', '_')) : OutputFormat.CSV;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid format: " + args[3] + ", the formats are " + getFormatNames());
+            return;
+        }
+
+        boolean compressed = CompressedInput.isCompressed(dataFile);
+        if (compressed && ("index".equals(mode) || "follow".equals(mode) || "tail".equals(mode))) {
+            System.out.println("The " + mode + " mode needs an uncompressed data file");
+            return;
+        }
+        if ("index".equals(mode)) {
+            buildIndex(dataFile, operationsStr);
+            return;
+        }
+
+        List<String> queries;
+        try {
+            queries = getQueries(operationsStr);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if ("follow".equals(mode) || "tail".equals(mode)) {
+            follow(dataFile, queries, "tail".equals(mode), outputFormat);
+            return;
+        }
+
+        OperationsProcessor operationsManager = queries.size() == 1
+                ? new OperationsManager(queries.get(0)) : new MultiQueryManager(queries);
+        operationsManager.setOutputFormat(outputFormat);
+        operationsManager.setIncrementalOutput(true);
+        if (compressed || "parallel".equals(mode) || "mapped".equals(mode) || "pipelined".equals(mode)
+                || "indexed".equals(mode)) {
+            try {
+                if (compressed) {
+                    new PipelinedFileProcessor(dataFile, operationsManager).process();
+                } else if ("indexed".equals(mode) && operationsManager instanceof OperationsManager) {
+                    new IndexedFileProcessor(dataFile, (OperationsManager) operationsManager).process();
+                } else if ("parallel".equals(mode)) {
+                    new ParallelFileProcessor(dataFile, operationsManager).process();
+                } else if ("pipelined".equals(mode)) {
+                    new PipelinedFileProcessor(dataFile, operationsManager).process();
+                } else {
+                    new MappedFileProcessor(dataFile, operationsManager).process();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            printMetrics(operationsManager);
+            return;
+        }
+
         LineIterator it = null;
-        OperationsManager operationsManager = new OperationsManager("filter(3, 'Iowa') -> pluck(11) -> max");
         try {
             it = FileUtils.lineIterator(dataFile, "UTF-8");
+            long start = System.nanoTime();
+            long rows = 0;
+            long characters = 0;
             while (it.hasNext()) {
                 String line = it.nextLine();
                 String[] rowData = line.split(",");
                 if(!operationsManager.processDataRow(rowData)) {
                     break;
                 }
+                rows++;
+                characters += line.length() + 1;
             }
+            operationsManager.flush();
+            //the characters are the bytes of an ASCII file, the header row is not counted
+            operationsManager.getMetrics().addScan(Math.max(0, rows - 1), characters, System.nanoTime() - start);
             operationsManager.finalizeProcess();
 
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
+            //releases the results of a process that failed before it was finalized
+            operationsManager.abortProcess();
             try {
                 it.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
+        printMetrics(operationsManager);
+    }
+
+    //runs the query server until the process is stopped
+    private static void serve(String[] args) {
+        try {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : QueryServer.DEFAULT_PORT;
+            long cacheBytes = args.length > 2 ? Long.parseLong(args[2]) * 1024 * 1024 : QueryServer.DEFAULT_CACHE_BYTES;
+            int workerThreads = args.length > 3 ? Integer.parseInt(args[3]) : QueryServer.DEFAULT_WORKER_THREADS;
+            new QueryServer(port, workerThreads, cacheBytes).start();
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid port, cache size or worker threads: " + String.join(" ", args));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //processes the lines that were appended since the previous run, once or whenever the file changes
+    private static void follow(File dataFile, List<String> queries, boolean tail, OutputFormat outputFormat) {
+        if (queries.size() != 1) {
+            System.out.println("Follow mode runs a single operations chain");
+            return;
+        }
+        String operationsStr = queries.get(0);
+        Supplier<OperationsManager> operationsManagers = () -> {
+            OperationsManager operationsManager = new OperationsManager(operationsStr);
+            operationsManager.setOutputFormat(outputFormat);
+            return operationsManager;
+        };
+        if (tail) {
+            FollowFileProcessor.follow(dataFile, operationsManagers, operationsStr, POLL_MILLIS);
+            return;
+        }
+        OperationsManager operationsManager = operationsManagers.get();
+        try {
+            new FollowFileProcessor(dataFile, operationsManager, operationsStr).process();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        printMetrics(operationsManager);
+    }
+
+    private static void printMetrics(OperationsProcessor operationsManager) {
+        if (PRINT_METRICS) {
+            System.out.println(operationsManager.getMetrics().toJson());
+        }
+    }
+
+    //builds the index of the data file with an inverted index for the given comma separated columns
+    private static void buildIndex(File dataFile, String columnsStr) {
+        String[] columns = columnsStr.split(",");
+        int[] indexedColumns = new int[columns.length];
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                indexedColumns[i] = Integer.parseInt(columns[i].trim());
+            }
+            ColumnIndex.build(dataFile, indexedColumns, ColumnIndex.DEFAULT_BLOCK_LINES).save(dataFile);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid index columns: " + columnsStr);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //the format names as they are given in the arguments
+    private static String getFormatNames() {
+        List<String> names = new ArrayList<>();
+        for (OutputFormat format : OutputFormat.values()) {
+            names.add(format.name().toLowerCase().replace('_', '-'));
+        }
+        return String.join(", ", names);
+    }
+
+    //the operations chains separated by ';', or the non empty lines of the file after '@'
+    private static List<String> getQueries(String operationsStr) throws IOException {
+        List<String> lines = operationsStr.startsWith("@")
+                ? FileUtils.readLines(new File(operationsStr.substring(1)), StandardCharsets.UTF_8)
+                : splitQueries(operationsStr);
+        List<String> queries = new ArrayList<>();
+        for (String line : lines) {
+            if(!line.trim().isEmpty()) {
+                queries.add(line.trim());
+            }
+        }
+        return queries.isEmpty() ? Arrays.asList(operationsStr) : queries;
+    }
+
+    //splits the operations chains on the ';' characters that are not in a quoted value
+    private static List<String> splitQueries(String operationsStr) {
+        List<String> queries = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < operationsStr.length(); i++) {
+            char c = operationsStr.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == ';' && !quoted) {
+                queries.add(operationsStr.substring(start, i));
+                start = i + 1;
+            }
+        }
+        queries.add(operationsStr.substring(start));
+        return queries;
     }
 }
@@ -0,0 +1,214 @@
+package com.upsolver;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses decimal numbers from characters or bytes into primitive values without allocating and without throwing
+ * exceptions for values that are not numbers. The result of the last successful parse is read with getDouble,
+ * and with getLong when isLong is true.
+ * Accepts what Double.parseDouble accepts, common decimal values are parsed directly and the rare values that
+ * need it (more than 15 significant digits, large exponents, hexadecimal, NaN and Infinity) fall back to
+ * Double.parseDouble, so the result is always identical to Double.parseDouble.
+ * A parser keeps its state between calls so it must not be shared between threads.
+ */
+public class NumberParser {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    //characters that may appear in a value Double.parseDouble accepts other than digits, sign, point and exponent
+    private static final String SLOW_PATH_CHARACTERS = "xXpPabcdfABCDFNIinty";
+
+    private char[] chars = new char[32];
+    private double doubleValue;
+    private long longValue;
+    private boolean isLong;
+
+    /**
+     * @param value
+     * @returns true if the value is a number
+     */
+    public boolean parse(CharSequence value) {
+        if (value == null) {
+            return false;
+        }
+        int length = value.length();
+        ensureCapacity(length);
+        if (value instanceof String) {
+            ((String) value).getChars(0, length, chars, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[i] = value.charAt(i);
+            }
+        }
+        return parseChars(length);
+    }
+
+    /**
+     * Parses the UTF-8 bytes in [start, end) of the buffer
+     * @param buffer
+     * @param start
+     * @param end
+     * @returns true if the bytes are a number
+     */
+    public boolean parse(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(start + i);
+            if (b < 0) {
+                //non ASCII characters are never part of a number
+                return false;
+            }
+            chars[i] = (char) b;
+        }
+        return parseChars(length);
+    }
+
+    public double getDouble() {
+        return doubleValue;
+    }
+
+    public long getLong() {
+        return longValue;
+    }
+
+    //true if the last parsed value is an integer that fits in a long (no decimal point or exponent)
+    public boolean isLong() {
+        return isLong;
+    }
+
+    private boolean parseChars(int length) {
+        isLong = false;
+        //trim like Double.parseDouble
+        int start = 0;
+        int end = length;
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+
+        int position = start;
+        boolean negative = false;
+        if (chars[position] == '-' || chars[position] == '+') {
+            negative = chars[position] == '-';
+            position++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean overflow = false;
+        boolean hasPoint = false;
+        for (; position < end; position++) {
+            char c = chars[position];
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa == 0 && c == '0') {
+                    //leading zeros are not significant
+                    if (hasPoint) {
+                        exponent--;
+                    }
+                    continue;
+                }
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    significantDigits++;
+                    if (hasPoint) {
+                        exponent--;
+                    }
+                } else {
+                    overflow = true;
+                    if (!hasPoint) {
+                        exponent++;
+                    }
+                }
+            } else if (c == '.' && !hasPoint) {
+                hasPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return parseSlowPath(start, end);
+        }
+
+        boolean hasExponent = false;
+        if (position < end && (chars[position] == 'e' || chars[position] == 'E')) {
+            hasExponent = true;
+            position++;
+            boolean negativeExponent = false;
+            if (position < end && (chars[position] == '-' || chars[position] == '+')) {
+                negativeExponent = chars[position] == '-';
+                position++;
+            }
+            int exponentDigits = 0;
+            int exponentValue = 0;
+            for (; position < end && chars[position] >= '0' && chars[position] <= '9'; position++) {
+                if (exponentValue < 100000) {
+                    exponentValue = exponentValue * 10 + (chars[position] - '0');
+                }
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return parseSlowPath(start, end);
+            }
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+        if (position < end) {
+            //type suffix or not a number
+            return parseSlowPath(start, end);
+        }
+
+        if (!hasPoint && !hasExponent && !overflow && significantDigits <= 18) {
+            isLong = true;
+            longValue = negative ? -mantissa : mantissa;
+        }
+        if (overflow || mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+            if (mantissa == 0) {
+                doubleValue = negative ? -0.0 : 0.0;
+                return true;
+            }
+            boolean parsed = parseSlowPath(start, end);
+            if (parsed && !hasPoint && !hasExponent && !overflow) {
+                isLong = true;
+                longValue = negative ? -mantissa : mantissa;
+            }
+            return parsed;
+        }
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        doubleValue = negative ? -value : value;
+        return true;
+    }
+
+    //Double.parseDouble for the values that are not parsed directly, values that cannot be numbers are rejected first
+    private boolean parseSlowPath(int start, int end) {
+        isLong = false;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (!(c >= '0' && c <= '9') && c != '.' && c != '-' && c != '+' && c != 'e' && c != 'E'
+                    && SLOW_PATH_CHARACTERS.indexOf(c) < 0) {
+                return false;
+            }
+        }
+        try {
+            doubleValue = Double.parseDouble(new String(chars, start, end - start));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void ensureCapacity(int length) {
+        if (length > chars.length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+    }
+}
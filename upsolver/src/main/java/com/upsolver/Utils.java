@@ -1,23 +1,72 @@
 package com.upsolver;
 
-import java.text.NumberFormat;
-import java.text.ParseException;
-
 public class Utils {
+    private static final ThreadLocal<NumberParser> NUMBER_PARSER = ThreadLocal.withInitial(NumberParser::new);
+
+    /**
+     * Checks if the value is a plain decimal number ([-+]?[0-9]*\.?[0-9]+) without a regex or a NumberFormat,
+     * the result is the same as NumberFormat.parse for the value.
+     * @param value
+     * @returns the number as a Long if it is an integer that fits in a long, otherwise as a Double,
+     * or null if it is not a number
+     */
     public static Number checkNumber(final String value) {
         // null or empty
         if (value == null || value.length() == 0) {
             return null;
         }
 
-        if(value.matches("[-+]?[0-9]*\\.?[0-9]+")) {
-            try {
-                return NumberFormat.getInstance().parse(value);
-            } catch (ParseException e) {
-                return null;
+        // NumberFormat does not accept a plus sign
+        if(value.charAt(0) != '+' && isPlainDecimal(value)) {
+            //the integer part is accumulated negatively like Long.parseLong, so Long.MIN_VALUE can be reached
+            boolean negative = value.charAt(0) == '-';
+            long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+            long integerValue = 0;
+            boolean isInteger = true;
+            boolean hasPoint = false;
+            for (int i = negative ? 1 : 0; i < value.length() && isInteger; i++) {
+                char c = value.charAt(i);
+                int digit = c - '0';
+                if (c == '.') {
+                    hasPoint = true;
+                } else if (hasPoint) {
+                    isInteger = digit == 0;
+                } else if (integerValue < limit / 10 || integerValue * 10 < limit + digit) {
+                    isInteger = false;
+                } else {
+                    integerValue = integerValue * 10 - digit;
+                }
             }
+            if (isInteger) {
+                if (integerValue == 0 && negative) {
+                    return -0.0;
+                }
+                return negative ? integerValue : -integerValue;
+            }
+
+            NumberParser parser = NUMBER_PARSER.get();
+            return parser.parse(value) ? parser.getDouble() : null;
         } else {
             return null;
         }
     }
+
+    //same as matching [-+]?[0-9]*\.?[0-9]+ without a regex
+    private static boolean isPlainDecimal(String value) {
+        int position = value.charAt(0) == '-' || value.charAt(0) == '+' ? 1 : 0;
+        boolean hasPoint = false;
+        boolean lastIsDigit = false;
+        for (; position < value.length(); position++) {
+            char c = value.charAt(position);
+            if (c >= '0' && c <= '9') {
+                lastIsDigit = true;
+            } else if (c == '.' && !hasPoint) {
+                hasPoint = true;
+                lastIsDigit = false;
+            } else {
+                return false;
+            }
+        }
+        return lastIsDigit;
+    }
 }
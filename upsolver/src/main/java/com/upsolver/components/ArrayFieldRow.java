@@ -0,0 +1,36 @@
+package com.upsolver.components;
+
+/**
+ * A field row over an array of already decoded fields, the array can be replaced to reuse the row object.
+ */
+public class ArrayFieldRow implements FieldRow {
+    private String[] fields;
+
+    public ArrayFieldRow() {
+        this(new String[0]);
+    }
+
+    public ArrayFieldRow(String[] fields) {
+        this.fields = fields;
+    }
+
+    public ArrayFieldRow setFields(String[] fields) {
+        this.fields = fields;
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return fields.length;
+    }
+
+    @Override
+    public String getField(int index) {
+        return fields[index];
+    }
+
+    @Override
+    public String[] toArray() {
+        return fields;
+    }
+}
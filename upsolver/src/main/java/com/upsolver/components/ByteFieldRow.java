@@ -0,0 +1,116 @@
+package com.upsolver.components;
+
+import com.upsolver.NumberParser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A row of fields that are offset / length views over a byte buffer (UTF-8), a field is decoded to a string
+ * only when getField is called. The row object is reused by the reader for the next line.
+ */
+public class ByteFieldRow implements FieldRow {
+    private ByteBuffer buffer;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private int fieldCount;
+    private byte[] decodeBuffer = new byte[64];
+
+    public void reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.fieldCount = 0;
+    }
+
+    /**
+     * Copies the field offsets of the other row, the copy is a view over the same buffer
+     * @param other
+     * @returns this row
+     */
+    public ByteFieldRow copyFrom(ByteFieldRow other) {
+        reset(other.buffer);
+        if (fieldStarts.length < other.fieldCount) {
+            fieldStarts = new int[other.fieldStarts.length];
+            fieldEnds = new int[other.fieldEnds.length];
+        }
+        System.arraycopy(other.fieldStarts, 0, fieldStarts, 0, other.fieldCount);
+        System.arraycopy(other.fieldEnds, 0, fieldEnds, 0, other.fieldCount);
+        fieldCount = other.fieldCount;
+        return this;
+    }
+
+    public void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            int[] newStarts = new int[fieldCount * 2];
+            int[] newEnds = new int[fieldCount * 2];
+            System.arraycopy(fieldStarts, 0, newStarts, 0, fieldCount);
+            System.arraycopy(fieldEnds, 0, newEnds, 0, fieldCount);
+            fieldStarts = newStarts;
+            fieldEnds = newEnds;
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * Removes the trailing empty fields like String.split does, a line without delimiters keeps its single field
+     */
+    public void removeTrailingEmptyFields() {
+        if (fieldCount > 1) {
+            while (fieldCount > 0 && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1]) {
+                fieldCount--;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return fieldCount;
+    }
+
+    @Override
+    public String getField(int index) {
+        int length = getFieldLength(index);
+        if (length > decodeBuffer.length) {
+            decodeBuffer = new byte[Math.max(length, decodeBuffer.length * 2)];
+        }
+        int start = fieldStarts[index];
+        for (int i = 0; i < length; i++) {
+            decodeBuffer[i] = buffer.get(start + i);
+        }
+        return new String(decodeBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    //parses the field bytes without decoding them to a string
+    @Override
+    public boolean parseNumber(int index, NumberParser parser) {
+        checkIndex(index);
+        return parser.parse(buffer, fieldStarts[index], fieldEnds[index]);
+    }
+
+    public int getFieldStart(int index) {
+        checkIndex(index);
+        return fieldStarts[index];
+    }
+
+    @Override
+    public int getFieldLength(int index) {
+        checkIndex(index);
+        return fieldEnds[index] - fieldStarts[index];
+    }
+
+    @Override
+    public char getFieldChar(int index, int position) {
+        return (char) (buffer.get(fieldStarts[index] + position) & 0xff);
+    }
+
+    public byte getByte(int position) {
+        return buffer.get(position);
+    }
+
+    private void checkIndex(int index) {
+        if (index >= fieldCount) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+    }
+}
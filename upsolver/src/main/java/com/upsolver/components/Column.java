@@ -0,0 +1,68 @@
+package com.upsolver.components;
+
+import com.upsolver.NumberParser;
+
+/**
+ * A column of a ColumnarMatrix, stores the values of one field of all the rows in a typed primitive array.
+ * Values are converted to the column type once when they are added, and back to their original text
+ * when the rows are read.
+ */
+public abstract class Column {
+    protected int size;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param row
+     * @returns the original text of the value in the row
+     */
+    public abstract String getValue(int row);
+
+    /**
+     * Appends a value to the column
+     * @param value
+     * @returns false if the value cannot be represented by the column type without changing its text
+     */
+    public abstract boolean add(String value);
+
+    /**
+     * Appends a placeholder for a row that does not have this field
+     */
+    public abstract void addMissing();
+
+    /**
+     * Appends all the values of another column of the same type
+     * @param other
+     * @returns false if the other column is of a different type
+     */
+    public abstract boolean addAll(Column other);
+
+    /**
+     * @param rows the rows to take the values from, only rows that have the field may be given
+     * @param count number of rows
+     * @returns the numeric values of the rows, throws NumberFormatException if a value is not a number
+     */
+    public abstract double[] getDoubleValues(int[] rows, int count);
+
+    //capacity for the next value of a column that holds the given number of values
+    protected static int grow(int capacity) {
+        return capacity < 16 ? 16 : capacity + (capacity >> 1);
+    }
+
+    /**
+     * Creates a column for the given value, numbers are kept in primitive arrays when their text is the canonical
+     * text of the number (so the original text can be restored), any other value is dictionary encoded.
+     * @param value
+     * @returns Column
+     */
+    public static Column createColumn(String value) {
+        if (LongColumn.isCanonicalLong(value)) {
+            return new LongColumn();
+        } else if (DoubleColumn.isCanonicalDouble(value, new NumberParser())) {
+            return new DoubleColumn();
+        }
+        return new DictionaryColumn();
+    }
+}
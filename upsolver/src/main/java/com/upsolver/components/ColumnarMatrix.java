@@ -0,0 +1,196 @@
+package com.upsolver.components;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A matrix that stores each field in a typed column instead of a list of rows, numbers are parsed once when
+ * the rows are added and are kept in primitive arrays, so numeric aggregations run over primitive arrays.
+ * getRows returns a read only view that creates the rows when they are read.
+ */
+public class ColumnarMatrix extends Matrix {
+    private final List<Column> columns = new ArrayList<>();
+    private int[] rowSizes = new int[0];
+    private int rowCount;
+
+    public ColumnarMatrix() {
+        super(null);
+    }
+
+    /**
+     * Creates a matrix with one field from a column
+     * @param column
+     * @returns ColumnarMatrix
+     */
+    public static ColumnarMatrix fromColumn(Column column) {
+        ColumnarMatrix matrix = new ColumnarMatrix();
+        matrix.columns.add(column);
+        for (int row = 0; row < column.size(); row++) {
+            matrix.addRowSize(1);
+        }
+        return matrix;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public Column getColumn(int index) {
+        return columns.get(index);
+    }
+
+    /**
+     * @param row
+     * @returns the number of fields of the row, the columns after it hold placeholders for the row
+     */
+    public int getRowSize(int row) {
+        return rowSizes[row];
+    }
+
+    public void addRow(FieldRow row) {
+        int size = row.size();
+        for (int i = 0; i < size; i++) {
+            addValue(i, row.getField(i));
+        }
+        completeRow(size);
+    }
+
+    @Override
+    public void addRow(Row row) {
+        List<String> data = row.getData();
+        for (int i = 0; i < data.size(); i++) {
+            addValue(i, data.get(i));
+        }
+        completeRow(data.size());
+    }
+
+    @Override
+    public List<Row> getRows() {
+        return new AbstractList<Row>() {
+            @Override
+            public Row get(int index) {
+                return getRow(index);
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+
+    @Override
+    public void setRows(List<Row> rows) {
+        columns.clear();
+        rowCount = 0;
+        for (Row row : rows) {
+            addRow(row);
+        }
+    }
+
+    @Override
+    public void join(Matrix matrix) {
+        if (!(matrix instanceof ColumnarMatrix)) {
+            for (Row row : matrix.getRows()) {
+                addRow(row);
+            }
+            return;
+        }
+        ColumnarMatrix other = (ColumnarMatrix) matrix;
+        for (int i = 0; i < Math.max(columns.size(), other.columns.size()); i++) {
+            if (i >= other.columns.size()) {
+                for (int row = 0; row < other.rowCount; row++) {
+                    columns.get(i).addMissing();
+                }
+                continue;
+            }
+            Column otherColumn = other.columns.get(i);
+            if (i >= columns.size()) {
+                columns.add(createMissingColumn(otherColumn));
+            }
+            if (!columns.get(i).addAll(otherColumn)) {
+                columns.set(i, DictionaryColumn.from(columns.get(i)));
+                columns.get(i).addAll(otherColumn);
+            }
+        }
+        for (int row = 0; row < other.rowCount; row++) {
+            addRowSize(other.rowSizes[row]);
+        }
+    }
+
+    /**
+     * @param column
+     * @returns the numeric values of the column, throws NumberFormatException if a value is not a number
+     * and IndexOutOfBoundsException if a row does not have the field
+     */
+    public double[] getDoubleValues(int column) {
+        int[] rows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            if (rowSizes[row] <= column) {
+                throw new IndexOutOfBoundsException("Row " + row + " has no field " + column);
+            }
+            rows[row] = row;
+        }
+        return rowCount == 0 ? new double[0] : columns.get(column).getDoubleValues(rows, rowCount);
+    }
+
+    public Row getRow(int index) {
+        List<String> data = new ArrayList<>(rowSizes[index]);
+        for (int i = 0; i < rowSizes[index]; i++) {
+            data.add(columns.get(i).getValue(index));
+        }
+        return new Row(data);
+    }
+
+    private void addValue(int index, String value) {
+        if (index == columns.size()) {
+            Column column = Column.createColumn(value);
+            for (int row = 0; row < rowCount; row++) {
+                column.addMissing();
+            }
+            columns.add(column);
+        }
+        Column column = columns.get(index);
+        if (!column.add(value)) {
+            DictionaryColumn dictionaryColumn = DictionaryColumn.from(column);
+            dictionaryColumn.add(value);
+            columns.set(index, dictionaryColumn);
+        }
+    }
+
+    //adds placeholders to the columns the row does not have
+    private void completeRow(int size) {
+        for (int i = size; i < columns.size(); i++) {
+            columns.get(i).addMissing();
+        }
+        addRowSize(size);
+    }
+
+    private void addRowSize(int size) {
+        if (rowCount == rowSizes.length) {
+            rowSizes = Arrays.copyOf(rowSizes, Column.grow(rowCount));
+        }
+        rowSizes[rowCount++] = size;
+    }
+
+    private Column createMissingColumn(Column typeColumn) {
+        Column column;
+        if (typeColumn instanceof LongColumn) {
+            column = new LongColumn();
+        } else if (typeColumn instanceof DoubleColumn) {
+            column = new DoubleColumn();
+        } else {
+            column = new DictionaryColumn();
+        }
+        for (int row = 0; row < rowCount; row++) {
+            column.addMissing();
+        }
+        return column;
+    }
+}
@@ -0,0 +1,113 @@
+package com.upsolver.components;
+
+import com.upsolver.NumberParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column of text values, each distinct value is stored once in the dictionary and the rows hold
+ * the dictionary codes. Numeric aggregations parse each distinct value once.
+ */
+public class DictionaryColumn extends Column {
+    private static final int NULL_CODE = -1;
+
+    private int[] codes = new int[0];
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryCodes = new HashMap<>();
+
+    /**
+     * Creates a dictionary column with the values of another column
+     * @param column
+     * @returns DictionaryColumn
+     */
+    public static DictionaryColumn from(Column column) {
+        DictionaryColumn dictionaryColumn = new DictionaryColumn();
+        for (int row = 0; row < column.size(); row++) {
+            dictionaryColumn.add(column.getValue(row));
+        }
+        return dictionaryColumn;
+    }
+
+    @Override
+    public String getValue(int row) {
+        int code = codes[row];
+        return code == NULL_CODE ? null : dictionary.get(code);
+    }
+
+    public int getCode(int row) {
+        return codes[row];
+    }
+
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    @Override
+    public boolean add(String value) {
+        ensureCapacity();
+        codes[size++] = encode(value);
+        return true;
+    }
+
+    @Override
+    public void addMissing() {
+        ensureCapacity();
+        codes[size++] = NULL_CODE;
+    }
+
+    @Override
+    public boolean addAll(Column other) {
+        for (int row = 0; row < other.size(); row++) {
+            add(other.getValue(row));
+        }
+        return true;
+    }
+
+    @Override
+    public double[] getDoubleValues(int[] rows, int count) {
+        //parse each distinct value once
+        double[] dictionaryValues = new double[dictionary.size()];
+        boolean[] parsed = new boolean[dictionary.size()];
+        NumberParser parser = new NumberParser();
+        double[] doubleValues = new double[count];
+        int valuesCount = 0;
+        for (int i = 0; i < count; i++) {
+            int code = codes[rows[i]];
+            if (code == NULL_CODE) {
+                continue;
+            }
+            if (!parsed[code]) {
+                if (!parser.parse(dictionary.get(code))) {
+                    throw new NumberFormatException(dictionary.get(code));
+                }
+                dictionaryValues[code] = parser.getDouble();
+                parsed[code] = true;
+            }
+            doubleValues[valuesCount++] = dictionaryValues[code];
+        }
+        return valuesCount == count ? doubleValues : Arrays.copyOf(doubleValues, valuesCount);
+    }
+
+    private int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = dictionaryCodes.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            dictionaryCodes.put(value, code);
+        }
+        return code;
+    }
+
+    private void ensureCapacity() {
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, grow(size));
+        }
+    }
+}
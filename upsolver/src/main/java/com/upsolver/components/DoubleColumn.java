@@ -0,0 +1,80 @@
+package com.upsolver.components;
+
+import com.upsolver.NumberParser;
+
+import java.util.Arrays;
+
+/**
+ * A column of decimal values stored in a double array
+ */
+public class DoubleColumn extends Column {
+    private double[] values = new double[0];
+    private final NumberParser parser = new NumberParser();
+
+    @Override
+    public String getValue(int row) {
+        return String.valueOf(values[row]);
+    }
+
+    public double getDouble(int row) {
+        return values[row];
+    }
+
+    @Override
+    public boolean add(String value) {
+        if (!isCanonicalDouble(value, parser)) {
+            return false;
+        }
+        add(parser.getDouble());
+        return true;
+    }
+
+    public void add(double value) {
+        ensureCapacity();
+        values[size++] = value;
+    }
+
+    @Override
+    public void addMissing() {
+        add(0);
+    }
+
+    @Override
+    public boolean addAll(Column other) {
+        if (!(other instanceof DoubleColumn)) {
+            return false;
+        }
+        DoubleColumn otherColumn = (DoubleColumn) other;
+        values = Arrays.copyOf(values, Math.max(values.length, size + otherColumn.size));
+        System.arraycopy(otherColumn.values, 0, values, size, otherColumn.size);
+        size += otherColumn.size;
+        return true;
+    }
+
+    @Override
+    public double[] getDoubleValues(int[] rows, int count) {
+        double[] doubleValues = new double[count];
+        for (int i = 0; i < count; i++) {
+            doubleValues[i] = values[rows[i]];
+        }
+        return doubleValues;
+    }
+
+    private void ensureCapacity() {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(size));
+        }
+    }
+
+    //true if the value is the text Double.toString would produce for its number, the number is left in the parser
+    static boolean isCanonicalDouble(String value, NumberParser parser) {
+        if (value == null || value.isEmpty() || value.indexOf('.') < 0) {
+            return false;
+        }
+        char first = value.charAt(0);
+        if (first != '-' && (first < '0' || first > '9')) {
+            return false;
+        }
+        return parser.parse(value) && Double.toString(parser.getDouble()).equals(value);
+    }
+}
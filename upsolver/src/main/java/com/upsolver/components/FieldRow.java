@@ -0,0 +1,49 @@
+package com.upsolver.components;
+
+import com.upsolver.NumberParser;
+
+/**
+ * A row of fields that are only converted to strings when an operation needs them.
+ * Implementations may be views that are reused for the next row, so a row must be copied with toArray if it is kept.
+ */
+public interface FieldRow {
+    int size();
+
+    /**
+     * @param index zero indexed field
+     * @returns the field value, throws IndexOutOfBoundsException if the row has no such field
+     */
+    String getField(int index);
+
+    /**
+     * Field characters access without decoding the field, for byte rows each byte is a character
+     * (non ASCII bytes are returned as characters above 0x7f)
+     * @param index zero indexed field
+     * @returns the number of characters of the field
+     */
+    default int getFieldLength(int index) {
+        return getField(index).length();
+    }
+
+    default char getFieldChar(int index, int position) {
+        return getField(index).charAt(position);
+    }
+
+    /**
+     * Parses the field as a number, the result is read from the parser
+     * @param index zero indexed field
+     * @param parser
+     * @returns true if the field is a number
+     */
+    default boolean parseNumber(int index, NumberParser parser) {
+        return parser.parse(getField(index));
+    }
+
+    default String[] toArray() {
+        String[] fields = new String[size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = getField(i);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,236 @@
+package com.upsolver.components;
+
+/**
+ * Maps the distinct values of a field to dense ids (0, 1, 2... in the order the values are first added), so the
+ * state of each value can be kept in primitive arrays indexed by the id.
+ * The keys are kept in a single character array and looked up in an open addressing table of ids, there is no
+ * object per key. ASCII fields are hashed and compared from the row characters without decoding the field.
+ * A key index is not thread safe, but get does not change it, so an index that is no longer added to can be read
+ * by many threads.
+ */
+public class KeyIndex {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] table = new int[INITIAL_CAPACITY]; //id + 1 of the key in each slot, 0 for an empty slot
+    private int[] hashes = new int[INITIAL_CAPACITY / 2];
+    private int[] offsets = new int[INITIAL_CAPACITY / 2 + 1];
+    private char[] chars = new char[INITIAL_CAPACITY * 8];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param row
+     * @param index zero indexed field
+     * @returns the id of the field value, the value is added if it is new
+     */
+    public int getOrAdd(FieldRow row, int index) {
+        int length = row.getFieldLength(index);
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            char c = row.getFieldChar(index, i);
+            if (c > 0x7f) {
+                //byte rows return the UTF-8 bytes of non ASCII characters, the key is the decoded field
+                return getOrAdd(row.getField(index));
+            }
+            hash = 31 * hash + c;
+        }
+        int slot = findSlot(hash, row, index, length);
+        if (table[slot] != 0) {
+            return table[slot] - 1;
+        }
+        ensureCharsCapacity(length);
+        int offset = offsets[size];
+        for (int i = 0; i < length; i++) {
+            chars[offset + i] = row.getFieldChar(index, i);
+        }
+        return add(slot, hash, length);
+    }
+
+    /**
+     * @param key
+     * @returns the id of the key, the key is added if it is new
+     */
+    public int getOrAdd(String key) {
+        int hash = key.hashCode();
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && keyEquals(id, key)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ensureCharsCapacity(key.length());
+        key.getChars(0, key.length(), chars, offsets[size]);
+        return add(slot, hash, key.length());
+    }
+
+    /**
+     * @param row
+     * @param index zero indexed field
+     * @returns the id of the field value, or -1 if the value is not in the index
+     */
+    public int get(FieldRow row, int index) {
+        int length = row.getFieldLength(index);
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            char c = row.getFieldChar(index, i);
+            if (c > 0x7f) {
+                return get(row.getField(index));
+            }
+            hash = 31 * hash + c;
+        }
+        return table[findSlot(hash, row, index, length)] - 1;
+    }
+
+    /**
+     * @param key
+     * @returns the id of the key, or -1 if the key is not in the index
+     */
+    public int get(String key) {
+        int hash = key.hashCode();
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && keyEquals(id, key)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a key of another index, used to merge the state of two indexes
+     * @param other
+     * @param otherId
+     * @returns the id of the key in this index
+     */
+    public int getOrAdd(KeyIndex other, int otherId) {
+        int hash = other.hashes[otherId];
+        int otherOffset = other.offsets[otherId];
+        int length = other.offsets[otherId + 1] - otherOffset;
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && keyEquals(id, other.chars, otherOffset, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ensureCharsCapacity(length);
+        System.arraycopy(other.chars, otherOffset, chars, offsets[size], length);
+        return add(slot, hash, length);
+    }
+
+    /**
+     * @param id
+     * @returns the key of the id
+     */
+    public String getKey(int id) {
+        return new String(chars, offsets[id], offsets[id + 1] - offsets[id]);
+    }
+
+    private int findSlot(int hash, FieldRow row, int index, int length) {
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && keyEquals(id, row, index, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    //adds the key that was copied to the end of the characters array to the empty slot
+    private int add(int slot, int hash, int length) {
+        int id = size++;
+        table[slot] = id + 1;
+        hashes[id] = hash;
+        offsets[id + 1] = offsets[id] + length;
+        if (size * 2 >= table.length) {
+            resize();
+        }
+        return id;
+    }
+
+    private boolean keyEquals(int id, FieldRow row, int index, int length) {
+        int offset = offsets[id];
+        if (offsets[id + 1] - offset != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != row.getFieldChar(index, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean keyEquals(int id, String key) {
+        int offset = offsets[id];
+        if (offsets[id + 1] - offset != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (chars[offset + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean keyEquals(int id, char[] keyChars, int keyOffset, int length) {
+        int offset = offsets[id];
+        if (offsets[id + 1] - offset != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != keyChars[keyOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureCharsCapacity(int length) {
+        int required = offsets[size] + length;
+        if (required > chars.length) {
+            char[] newChars = new char[Math.max(required, chars.length * 2)];
+            System.arraycopy(chars, 0, newChars, 0, offsets[size]);
+            chars = newChars;
+        }
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void resize() {
+        int[] newTable = new int[table.length * 2];
+        int mask = newTable.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = id + 1;
+        }
+        table = newTable;
+        int[] newHashes = new int[newTable.length / 2];
+        System.arraycopy(hashes, 0, newHashes, 0, size);
+        hashes = newHashes;
+        int[] newOffsets = new int[newTable.length / 2 + 1];
+        System.arraycopy(offsets, 0, newOffsets, 0, size + 1);
+        offsets = newOffsets;
+    }
+}
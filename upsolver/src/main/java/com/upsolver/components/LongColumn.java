@@ -0,0 +1,89 @@
+package com.upsolver.components;
+
+import java.util.Arrays;
+
+/**
+ * A column of integer values stored in a long array
+ */
+public class LongColumn extends Column {
+    private long[] values = new long[0];
+
+    @Override
+    public String getValue(int row) {
+        return String.valueOf(values[row]);
+    }
+
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    public boolean add(String value) {
+        if (!isCanonicalLong(value)) {
+            return false;
+        }
+        ensureCapacity();
+        values[size++] = Long.parseLong(value);
+        return true;
+    }
+
+    @Override
+    public void addMissing() {
+        ensureCapacity();
+        values[size++] = 0;
+    }
+
+    @Override
+    public boolean addAll(Column other) {
+        if (!(other instanceof LongColumn)) {
+            return false;
+        }
+        LongColumn otherColumn = (LongColumn) other;
+        values = Arrays.copyOf(values, Math.max(values.length, size + otherColumn.size));
+        System.arraycopy(otherColumn.values, 0, values, size, otherColumn.size);
+        size += otherColumn.size;
+        return true;
+    }
+
+    @Override
+    public double[] getDoubleValues(int[] rows, int count) {
+        double[] doubleValues = new double[count];
+        for (int i = 0; i < count; i++) {
+            doubleValues[i] = values[rows[i]];
+        }
+        return doubleValues;
+    }
+
+    private void ensureCapacity() {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(size));
+        }
+    }
+
+    //true if the value is the decimal text Long.toString would produce for its number
+    static boolean isCanonicalLong(String value) {
+        if (value == null || value.isEmpty()) {
+            return false;
+        }
+        int start = value.charAt(0) == '-' ? 1 : 0;
+        int length = value.length() - start;
+        if (length == 0 || length > 19 || (value.charAt(start) == '0' && (length > 1 || start == 1))) {
+            return false;
+        }
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        if (length == 19) {
+            //may overflow
+            try {
+                Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package com.upsolver.components;
+
+import com.upsolver.NumberParser;
+
+/**
+ * A view of some of the fields of another row, used by pluck so the plucked field is not decoded
+ * until it is needed.
+ */
+public class ProjectedFieldRow implements FieldRow {
+    private final int[] fieldIndexes;
+    private FieldRow row;
+
+    public ProjectedFieldRow(int... fieldIndexes) {
+        this.fieldIndexes = fieldIndexes;
+    }
+
+    public ProjectedFieldRow setRow(FieldRow row) {
+        this.row = row;
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return fieldIndexes.length;
+    }
+
+    @Override
+    public String getField(int index) {
+        return row.getField(fieldIndexes[index]);
+    }
+
+    @Override
+    public int getFieldLength(int index) {
+        return row.getFieldLength(fieldIndexes[index]);
+    }
+
+    @Override
+    public char getFieldChar(int index, int position) {
+        return row.getFieldChar(fieldIndexes[index], position);
+    }
+
+    @Override
+    public boolean parseNumber(int index, NumberParser parser) {
+        return row.parseNumber(fieldIndexes[index], parser);
+    }
+}
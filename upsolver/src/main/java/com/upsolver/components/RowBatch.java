@@ -0,0 +1,79 @@
+package com.upsolver.components;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A batch of csv rows tokenized from a block of bytes, the fields of each row are offset ranges in the block.
+ * The rows are read as ByteFieldRow views with getRow. A batch is not changed once it is tokenized, so it can be
+ * handed from the thread that tokenized it to the thread that processes it.
+ */
+public class RowBatch {
+    private final ByteBuffer buffer;
+    private int[] fieldStarts;
+    private int[] fieldEnds;
+    private int fieldCount;
+    private int[] rowEnds;
+    private int rowCount;
+
+    /**
+     * @param buffer the block the fields are read from
+     * @param rowCapacity the expected number of rows
+     */
+    public RowBatch(ByteBuffer buffer, int rowCapacity) {
+        this.buffer = buffer;
+        this.rowEnds = new int[Math.max(rowCapacity, 1)];
+        this.fieldStarts = new int[Math.max(rowCapacity, 1) * 4];
+        this.fieldEnds = new int[fieldStarts.length];
+    }
+
+    public void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            int[] newStarts = new int[fieldCount * 2];
+            int[] newEnds = new int[fieldCount * 2];
+            System.arraycopy(fieldStarts, 0, newStarts, 0, fieldCount);
+            System.arraycopy(fieldEnds, 0, newEnds, 0, fieldCount);
+            fieldStarts = newStarts;
+            fieldEnds = newEnds;
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * Ends the row of the fields that were added since the previous row
+     * @param removeTrailingEmptyFields true to remove the trailing empty fields like String.split does (a line
+     *                                  without delimiters keeps its single field)
+     */
+    public void endRow(boolean removeTrailingEmptyFields) {
+        int rowStart = rowCount == 0 ? 0 : rowEnds[rowCount - 1];
+        if (removeTrailingEmptyFields && fieldCount - rowStart > 1) {
+            while (fieldCount > rowStart && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1]) {
+                fieldCount--;
+            }
+        }
+        if (rowCount == rowEnds.length) {
+            int[] newRowEnds = new int[rowCount * 2];
+            System.arraycopy(rowEnds, 0, newRowEnds, 0, rowCount);
+            rowEnds = newRowEnds;
+        }
+        rowEnds[rowCount++] = fieldCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param index the row in the batch
+     * @param row the view that is reset to the row fields
+     * @returns the given row
+     */
+    public ByteFieldRow getRow(int index, ByteFieldRow row) {
+        row.reset(buffer);
+        for (int i = index == 0 ? 0 : rowEnds[index - 1]; i < rowEnds[index]; i++) {
+            row.addField(fieldStarts[i], fieldEnds[i]);
+        }
+        return row;
+    }
+}
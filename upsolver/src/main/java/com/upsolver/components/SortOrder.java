@@ -0,0 +1,270 @@
+package com.upsolver.components;
+
+import com.upsolver.NumberParser;
+
+import java.util.List;
+
+/**
+ * The order of the sort operation: sort(index, asc|desc, limit), ascending and without a limit by default.
+ * The sort key of a row is its field at the index. Numbers sort before texts, numbers are compared by value and
+ * texts by their characters, the direction applies to both. A row that does not have the field sorts last in
+ * either direction. Rows with equal keys keep their order (the sort is stable).
+ */
+public class SortOrder {
+    public static final int NO_LIMIT = -1;
+
+    private static final int INDEX_PARAMETER = 0;
+    private static final int DIRECTION_PARAMETER = 1;
+    private static final int LIMIT_PARAMETER = 2;
+    //the key classes in their sort order
+    private static final byte NUMBER = 0;
+    private static final byte TEXT = 1;
+    private static final byte MISSING = 2;
+    private static final int INSERTION_SORT_THRESHOLD = 7;
+
+    private final int fieldIndex;
+    private final boolean descending;
+    private final int limit;
+
+    public SortOrder(int fieldIndex, boolean descending, int limit) {
+        this.fieldIndex = fieldIndex;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    /**
+     * @param parameters the field index, the optional direction (asc or desc) and the optional limit
+     * @returns SortOrder
+     */
+    public static SortOrder compile(List<String> parameters) {
+        int fieldIndex = Integer.parseInt(parameters.get(INDEX_PARAMETER).trim());
+        boolean descending = false;
+        if(parameters.size() > DIRECTION_PARAMETER) {
+            String direction = parameters.get(DIRECTION_PARAMETER).trim();
+            if("desc".equals(direction)) {
+                descending = true;
+            } else if(!"asc".equals(direction)) {
+                throw new IllegalArgumentException("Invalid direction in sort operation: " + direction);
+            }
+        }
+        int limit = NO_LIMIT;
+        if(parameters.size() > LIMIT_PARAMETER) {
+            limit = Integer.parseInt(parameters.get(LIMIT_PARAMETER).trim());
+            if(limit <= 0) {
+                throw new IllegalArgumentException("Invalid limit in sort operation: " + limit);
+            }
+        }
+        return new SortOrder(fieldIndex, descending, limit);
+    }
+
+    public int getFieldIndex() {
+        return fieldIndex;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public boolean hasLimit() {
+        return limit != NO_LIMIT;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param capacity the number of keys
+     * @returns empty sort keys of this order
+     */
+    public Keys createKeys(int capacity) {
+        return new Keys(capacity);
+    }
+
+    /**
+     * The sort keys of rows in slots, a key is parsed once when it is set and is kept in primitive arrays, so the
+     * comparisons of the sort do not parse or allocate. Keys are not thread safe.
+     */
+    public class Keys {
+        private final byte[] types;
+        private final double[] numbers;
+        private final String[] texts;
+        private final NumberParser parser = new NumberParser();
+
+        private Keys(int capacity) {
+            this.types = new byte[capacity];
+            this.numbers = new double[capacity];
+            this.texts = new String[capacity];
+        }
+
+        public void set(int slot, FieldRow row) {
+            if(fieldIndex >= row.size() || row.getField(fieldIndex) == null) {
+                setMissing(slot);
+            } else if(row.parseNumber(fieldIndex, parser)) {
+                setNumber(slot, parser.getDouble());
+            } else {
+                setText(slot, row.getField(fieldIndex));
+            }
+        }
+
+        public void set(int slot, Row row) {
+            List<String> data = row.getData();
+            if(fieldIndex >= data.size()) {
+                setMissing(slot);
+            } else {
+                setValue(slot, data.get(fieldIndex));
+            }
+        }
+
+        /**
+         * Sets the keys of all the rows of the matrix, the key of row i to slot i. The numeric columns are read
+         * without parsing and each distinct value of a dictionary column is parsed once.
+         * @param matrix
+         */
+        public void setAll(ColumnarMatrix matrix) {
+            int rowCount = matrix.getRowCount();
+            Column column = fieldIndex < matrix.getColumnCount() ? matrix.getColumn(fieldIndex) : null;
+            int dictionarySize = column instanceof DictionaryColumn ? ((DictionaryColumn) column).getDictionarySize() : 0;
+            Keys dictionaryKeys = new Keys(dictionarySize);
+            boolean[] parsed = new boolean[dictionarySize];
+            for (int row = 0; row < rowCount; row++) {
+                if(column == null || matrix.getRowSize(row) <= fieldIndex) {
+                    setMissing(row);
+                } else if(column instanceof LongColumn) {
+                    setNumber(row, ((LongColumn) column).getLong(row));
+                } else if(column instanceof DoubleColumn) {
+                    setNumber(row, ((DoubleColumn) column).getDouble(row));
+                } else if(column instanceof DictionaryColumn) {
+                    int code = ((DictionaryColumn) column).getCode(row);
+                    if(code < 0) {
+                        setMissing(row);
+                    } else {
+                        if(!parsed[code]) {
+                            dictionaryKeys.setValue(code, column.getValue(row));
+                            parsed[code] = true;
+                        }
+                        copy(dictionaryKeys, code, row);
+                    }
+                } else {
+                    setValue(row, column.getValue(row));
+                }
+            }
+        }
+
+        /**
+         * @param source the keys to copy from, of the same order
+         * @param sourceSlot
+         * @param slot
+         */
+        public void copy(Keys source, int sourceSlot, int slot) {
+            types[slot] = source.types[sourceSlot];
+            numbers[slot] = source.numbers[sourceSlot];
+            texts[slot] = source.texts[sourceSlot];
+        }
+
+        public void swap(int slot, int otherSlot) {
+            byte type = types[slot];
+            types[slot] = types[otherSlot];
+            types[otherSlot] = type;
+            double number = numbers[slot];
+            numbers[slot] = numbers[otherSlot];
+            numbers[otherSlot] = number;
+            String text = texts[slot];
+            texts[slot] = texts[otherSlot];
+            texts[otherSlot] = text;
+        }
+
+        /**
+         * @param slot
+         * @param otherSlot
+         * @returns a negative number if the key of the slot sorts first, 0 if the keys are equal and a positive
+         * number if the key of the other slot sorts first
+         */
+        public int compare(int slot, int otherSlot) {
+            byte type = types[slot];
+            if(type != types[otherSlot]) {
+                return type < types[otherSlot] ? -1 : 1;
+            }
+            int comparison;
+            if(type == NUMBER) {
+                comparison = Double.compare(numbers[slot], numbers[otherSlot]);
+            } else if(type == TEXT) {
+                comparison = texts[slot].compareTo(texts[otherSlot]);
+            } else {
+                return 0;
+            }
+            return descending ? -comparison : comparison;
+        }
+
+        /**
+         * Stable merge sort of the first slots by their keys
+         * @param count the number of slots to sort
+         * @returns the slots in the sort order
+         */
+        public int[] sort(int count) {
+            int[] slots = new int[count];
+            for (int i = 0; i < count; i++) {
+                slots[i] = i;
+            }
+            mergeSort(slots.clone(), slots, 0, count);
+            return slots;
+        }
+
+        //sorts [from, to) of source into destination, the ranges of both arrays start with the same slots
+        private void mergeSort(int[] source, int[] destination, int from, int to) {
+            if(to - from < INSERTION_SORT_THRESHOLD) {
+                for (int i = from + 1; i < to; i++) {
+                    int slot = destination[i];
+                    int j = i - 1;
+                    while (j >= from && compare(destination[j], slot) > 0) {
+                        destination[j + 1] = destination[j];
+                        j--;
+                    }
+                    destination[j + 1] = slot;
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            mergeSort(destination, source, from, middle);
+            mergeSort(destination, source, middle, to);
+            if(compare(source[middle - 1], source[middle]) <= 0) {
+                //the halves are already in order
+                System.arraycopy(source, from, destination, from, to - from);
+                return;
+            }
+            for (int i = from, left = from, right = middle; i < to; i++) {
+                if(right >= to || left < middle && compare(source[left], source[right]) <= 0) {
+                    destination[i] = source[left++];
+                } else {
+                    destination[i] = source[right++];
+                }
+            }
+        }
+
+        private void setValue(int slot, String value) {
+            if(value == null) {
+                setMissing(slot);
+            } else if(parser.parse(value)) {
+                setNumber(slot, parser.getDouble());
+            } else {
+                setText(slot, value);
+            }
+        }
+
+        private void setNumber(int slot, double number) {
+            types[slot] = NUMBER;
+            numbers[slot] = number;
+            texts[slot] = null;
+        }
+
+        private void setText(int slot, String text) {
+            types[slot] = TEXT;
+            texts[slot] = text;
+        }
+
+        private void setMissing(int slot) {
+            types[slot] = MISSING;
+            texts[slot] = null;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.upsolver.index;
+
+import com.upsolver.NumberParser;
+import com.upsolver.components.FieldRow;
+import com.upsolver.io.MappedCsvReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sidecar index of a csv file, saved next to the file as [data file].idx, for files that are queried repeatedly.
+ * The lines after the header are split into blocks of lines, for each block the index keeps its byte range in the
+ * file and the ColumnStatistics of every column of the header. For the chosen columns it also keeps an inverted
+ * index from each (lower cased and trimmed) value to the blocks that contain it, so a filter on that column only
+ * reads the blocks that can match.
+ * The index records the size and the last modified time of the file, and is not loaded once either of them changed.
+ */
+public class ColumnIndex {
+    public static final String FILE_EXTENSION = ".idx";
+    public static final int DEFAULT_BLOCK_LINES = 16 * 1024;
+    //columns with more distinct values than this are not worth an inverted index, the blocks are not skipped
+    public static final int MAX_INDEXED_VALUES = 64 * 1024;
+
+    private static final int MAGIC = 0x55505349; //UPSI
+    private static final int VERSION = 1;
+
+    private final long fileSize;
+    private final long lastModified;
+    private final String[] header;
+    private final long[] blockStarts;
+    private final long[] blockEnds;
+    private final long[] blockRows;
+    private final ColumnStatistics[][] blockStatistics;
+    private final Map<Integer, Map<String, BitSet>> invertedIndex;
+
+    private ColumnIndex(long fileSize, long lastModified, String[] header, long[] blockStarts, long[] blockEnds,
+                        long[] blockRows, ColumnStatistics[][] blockStatistics,
+                        Map<Integer, Map<String, BitSet>> invertedIndex) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.header = header;
+        this.blockStarts = blockStarts;
+        this.blockEnds = blockEnds;
+        this.blockRows = blockRows;
+        this.blockStatistics = blockStatistics;
+        this.invertedIndex = invertedIndex;
+    }
+
+    /**
+     * Scans the csv file once and builds its index
+     * @param dataFile
+     * @param indexedColumns the columns that get an inverted index
+     * @param blockLines the number of lines in a block
+     * @returns ColumnIndex
+     * @throws IOException
+     */
+    public static ColumnIndex build(File dataFile, int[] indexedColumns, int blockLines) throws IOException {
+        long fileSize = dataFile.length();
+        long lastModified = dataFile.lastModified();
+        NumberParser parser = new NumberParser();
+        List<long[]> blocks = new ArrayList<>();
+        List<ColumnStatistics[]> statistics = new ArrayList<>();
+        Map<Integer, Map<String, BitSet>> invertedIndex = new HashMap<>();
+        String[] header = new String[0];
+        try (MappedCsvReader reader = new MappedCsvReader(dataFile)) {
+            if(reader.next()) {
+                header = reader.getRow().toArray();
+            }
+            for (int column : indexedColumns) {
+                if(column >= 0 && column < header.length) {
+                    invertedIndex.put(column, new HashMap<>());
+                }
+            }
+            long blockStart = reader.getBytesRead();
+            long rows = 0;
+            ColumnStatistics[] columns = createStatistics(header.length);
+            while (reader.next()) {
+                FieldRow row = reader.getRow();
+                for (int i = 0; i < columns.length; i++) {
+                    if(i >= row.size()) {
+                        columns[i].addMissing();
+                    } else if(row.parseNumber(i, parser)) {
+                        columns[i].add(parser.getDouble());
+                    } else {
+                        columns[i].addInvalid();
+                    }
+                }
+                for (Map.Entry<Integer, Map<String, BitSet>> column : invertedIndex.entrySet()) {
+                    if(column.getKey() < row.size()) {
+                        addValue(column.getValue(), row.getField(column.getKey()), blocks.size());
+                    }
+                }
+                if(++rows == blockLines) {
+                    blocks.add(new long[]{blockStart, reader.getBytesRead(), rows});
+                    statistics.add(columns);
+                    blockStart = reader.getBytesRead();
+                    rows = 0;
+                    columns = createStatistics(header.length);
+                }
+            }
+            if(rows > 0) {
+                blocks.add(new long[]{blockStart, reader.getBytesRead(), rows});
+                statistics.add(columns);
+            }
+        }
+        //drop the inverted index of columns that had too many distinct values
+        invertedIndex.values().removeIf(values -> values.size() > MAX_INDEXED_VALUES);
+
+        long[] blockStarts = new long[blocks.size()];
+        long[] blockEnds = new long[blocks.size()];
+        long[] blockRows = new long[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            blockStarts[i] = blocks.get(i)[0];
+            blockEnds[i] = blocks.get(i)[1];
+            blockRows[i] = blocks.get(i)[2];
+        }
+        return new ColumnIndex(fileSize, lastModified, header, blockStarts, blockEnds, blockRows,
+                statistics.toArray(new ColumnStatistics[0][]), invertedIndex);
+    }
+
+    /**
+     * Loads the index of the data file
+     * @param dataFile
+     * @returns the index, or null if there is no index file or the data file changed since it was built
+     */
+    public static ColumnIndex load(File dataFile) {
+        File indexFile = getIndexFile(dataFile);
+        if(!indexFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+                System.out.println("Invalid index file " + indexFile.getPath());
+                return null;
+            }
+            long fileSize = input.readLong();
+            long lastModified = input.readLong();
+            if(fileSize != dataFile.length() || lastModified != dataFile.lastModified()) {
+                System.out.println("Index file " + indexFile.getPath() + " is out of date");
+                return null;
+            }
+            String[] header = new String[input.readInt()];
+            for (int i = 0; i < header.length; i++) {
+                header[i] = readString(input);
+            }
+            int blockCount = input.readInt();
+            long[] blockStarts = new long[blockCount];
+            long[] blockEnds = new long[blockCount];
+            long[] blockRows = new long[blockCount];
+            ColumnStatistics[][] blockStatistics = new ColumnStatistics[blockCount][header.length];
+            for (int i = 0; i < blockCount; i++) {
+                blockStarts[i] = input.readLong();
+                blockEnds[i] = input.readLong();
+                blockRows[i] = input.readLong();
+                for (int j = 0; j < header.length; j++) {
+                    blockStatistics[i][j] = ColumnStatistics.read(input);
+                }
+            }
+            Map<Integer, Map<String, BitSet>> invertedIndex = new HashMap<>();
+            int indexedColumns = input.readInt();
+            for (int i = 0; i < indexedColumns; i++) {
+                int column = input.readInt();
+                int valueCount = input.readInt();
+                Map<String, BitSet> values = new HashMap<>(valueCount * 2);
+                for (int j = 0; j < valueCount; j++) {
+                    String value = readString(input);
+                    long[] words = new long[input.readInt()];
+                    for (int k = 0; k < words.length; k++) {
+                        words[k] = input.readLong();
+                    }
+                    values.put(value, BitSet.valueOf(words));
+                }
+                invertedIndex.put(column, values);
+            }
+            return new ColumnIndex(fileSize, lastModified, header, blockStarts, blockEnds, blockRows,
+                    blockStatistics, invertedIndex);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Saves the index next to the data file
+     * @param dataFile
+     * @throws IOException
+     */
+    public void save(File dataFile) throws IOException {
+        File indexFile = getIndexFile(dataFile);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(fileSize);
+            output.writeLong(lastModified);
+            output.writeInt(header.length);
+            for (String field : header) {
+                writeString(output, field);
+            }
+            output.writeInt(blockStarts.length);
+            for (int i = 0; i < blockStarts.length; i++) {
+                output.writeLong(blockStarts[i]);
+                output.writeLong(blockEnds[i]);
+                output.writeLong(blockRows[i]);
+                for (ColumnStatistics statistics : blockStatistics[i]) {
+                    statistics.write(output);
+                }
+            }
+            output.writeInt(invertedIndex.size());
+            for (Map.Entry<Integer, Map<String, BitSet>> column : invertedIndex.entrySet()) {
+                output.writeInt(column.getKey());
+                output.writeInt(column.getValue().size());
+                for (Map.Entry<String, BitSet> value : column.getValue().entrySet()) {
+                    writeString(output, value.getKey());
+                    long[] words = value.getValue().toLongArray();
+                    output.writeInt(words.length);
+                    for (long word : words) {
+                        output.writeLong(word);
+                    }
+                }
+            }
+        }
+        System.out.println("Index file " + indexFile.getPath() + " created");
+    }
+
+    public static File getIndexFile(File dataFile) {
+        return new File(dataFile.getPath() + FILE_EXTENSION);
+    }
+
+    /**
+     * @returns the field names in the first line of the file
+     */
+    public String[] getHeader() {
+        return header.clone();
+    }
+
+    public int getBlockCount() {
+        return blockStarts.length;
+    }
+
+    /**
+     * @param block
+     * @returns the offset of the first byte of the block in the file
+     */
+    public long getBlockStart(int block) {
+        return blockStarts[block];
+    }
+
+    /**
+     * @param block
+     * @returns the offset after the last byte of the block in the file
+     */
+    public long getBlockEnd(int block) {
+        return blockEnds[block];
+    }
+
+    public long getBlockRows(int block) {
+        return blockRows[block];
+    }
+
+    public ColumnStatistics getBlockStatistics(int block, int column) {
+        return blockStatistics[block][column];
+    }
+
+    /**
+     * @param column
+     * @returns the statistics of all the blocks merged in the file order, or null if the column is not in the header
+     */
+    public ColumnStatistics getStatistics(int column) {
+        if(column < 0 || column >= header.length) {
+            return null;
+        }
+        ColumnStatistics statistics = new ColumnStatistics();
+        for (ColumnStatistics[] block : blockStatistics) {
+            statistics.merge(block[column]);
+        }
+        return statistics;
+    }
+
+    public boolean isIndexed(int column) {
+        return invertedIndex.containsKey(column);
+    }
+
+    /**
+     * @param column an indexed column
+     * @param value a lower cased and trimmed value
+     * @returns the blocks that have lines with the value in the column
+     */
+    public BitSet getBlocks(int column, String value) {
+        BitSet blocks = invertedIndex.get(column).get(value);
+        return blocks != null ? (BitSet) blocks.clone() : new BitSet();
+    }
+
+    private static ColumnStatistics[] createStatistics(int columns) {
+        ColumnStatistics[] statistics = new ColumnStatistics[columns];
+        for (int i = 0; i < columns; i++) {
+            statistics[i] = new ColumnStatistics();
+        }
+        return statistics;
+    }
+
+    private static void addValue(Map<String, BitSet> values, String value, int block) {
+        if(values.size() > MAX_INDEXED_VALUES) {
+            return;
+        }
+        values.computeIfAbsent(value.toLowerCase().trim(), v -> new BitSet()).set(block);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,107 @@
+package com.upsolver.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The statistics of a column in a block of lines: the number of numeric values, their min, max and compensated sum
+ * (the same Kahan summation SumAccumulator uses), the number of non numeric values and the number of lines without
+ * the column. Statistics of consecutive blocks are merged in order to get the statistics of the whole column.
+ */
+public class ColumnStatistics {
+    private long count;
+    private long invalidCount;
+    private long missingCount;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private double sumCompensation;
+    private double simpleSum;
+
+    public void add(double value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        simpleSum += value;
+        sumWithCompensation(value);
+    }
+
+    public void addInvalid() {
+        invalidCount++;
+    }
+
+    public void addMissing() {
+        missingCount++;
+    }
+
+    public void merge(ColumnStatistics other) {
+        count += other.count;
+        invalidCount += other.invalidCount;
+        missingCount += other.missingCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        simpleSum += other.simpleSum;
+        sumWithCompensation(other.sum);
+        sumWithCompensation(-other.sumCompensation);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getInvalidCount() {
+        return invalidCount;
+    }
+
+    public long getMissingCount() {
+        return missingCount;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        double tmp = sum - sumCompensation;
+        if (Double.isNaN(tmp) && Double.isInfinite(simpleSum)) {
+            return simpleSum;
+        }
+        return tmp;
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeLong(count);
+        output.writeLong(invalidCount);
+        output.writeLong(missingCount);
+        output.writeDouble(min);
+        output.writeDouble(max);
+        output.writeDouble(sum);
+        output.writeDouble(sumCompensation);
+        output.writeDouble(simpleSum);
+    }
+
+    static ColumnStatistics read(DataInput input) throws IOException {
+        ColumnStatistics statistics = new ColumnStatistics();
+        statistics.count = input.readLong();
+        statistics.invalidCount = input.readLong();
+        statistics.missingCount = input.readLong();
+        statistics.min = input.readDouble();
+        statistics.max = input.readDouble();
+        statistics.sum = input.readDouble();
+        statistics.sumCompensation = input.readDouble();
+        statistics.simpleSum = input.readDouble();
+        return statistics;
+    }
+
+    private void sumWithCompensation(double value) {
+        double tmp = value - sumCompensation;
+        double velvel = sum + tmp;
+        sumCompensation = (velvel - sum) - tmp;
+        sum = velvel;
+    }
+}
@@ -0,0 +1,243 @@
+package com.upsolver.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a BGZF file (the block gzip format of bgzip: a series of gzip members of at most 64KB, each one with its
+ * compressed size in the BC extra field) with the blocks decompressed in parallel.
+ * The compressed blocks are read ahead in the file order and inflated by a pool of threads, up to MAX_PENDING_BLOCKS per
+ * thread ahead of the block that is read, and the decompressed bytes are returned in the file order. The blocks, with
+ * their compressed and decompressed buffers and their inflater, are reused once they were read.
+ * The stream is read by a single thread, close stops the pool.
+ */
+public class BgzfInputStream extends InputStream {
+    public static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int FOOTER_SIZE = 8;
+    private static final int FLAG_EXTRA = 4;
+    private static final int MAX_PENDING_BLOCKS = 4;
+
+    private final InputStream input;
+    private final ExecutorService inflaters;
+    private final int maxPendingBlocks;
+    private final ArrayDeque<Future<Block>> pendingBlocks = new ArrayDeque<>();
+    private final ArrayDeque<Block> freeBlocks = new ArrayDeque<>();
+    private final byte[] header = new byte[HEADER_SIZE];
+    private Block block;
+    private int position;
+    private boolean endOfInput;
+
+    /**
+     * @param input the compressed bytes, buffered by the caller
+     * @param threads the number of threads that decompress the blocks
+     */
+    public BgzfInputStream(InputStream input, int threads) {
+        this.input = input;
+        this.maxPendingBlocks = threads * MAX_PENDING_BLOCKS;
+        this.inflaters = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "upsolver-inflater");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param header the first bytes of a gzip member
+     * @param length the number of bytes of the header
+     * @returns true if the member has the BC extra field of a BGZF block
+     */
+    public static boolean isBgzfHeader(byte[] header, int length) {
+        if (length < HEADER_SIZE + 6 || (header[3] & FLAG_EXTRA) == 0) {
+            return false;
+        }
+        int extraLength = readShort(header, 10);
+        for (int offset = HEADER_SIZE; offset + 4 <= Math.min(length, HEADER_SIZE + extraLength); ) {
+            int fieldLength = readShort(header, offset + 2);
+            if (header[offset] == 'B' && header[offset + 1] == 'C' && fieldLength == 2) {
+                return true;
+            }
+            offset += 4 + fieldLength;
+        }
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureBytes()) {
+            return -1;
+        }
+        return block.data[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureBytes()) {
+            return -1;
+        }
+        int count = Math.min(length, block.length - position);
+        System.arraycopy(block.data, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflaters.shutdownNow();
+        input.close();
+    }
+
+    //moves to the next block that has bytes, false at the end of the input
+    private boolean ensureBytes() throws IOException {
+        while (block == null || position == block.length) {
+            if (block != null) {
+                freeBlocks.add(block);
+                block = null;
+            }
+            readAhead();
+            Future<Block> nextBlock = pendingBlocks.poll();
+            if (nextBlock == null) {
+                return false;
+            }
+            block = takeBlock(nextBlock);
+            position = 0;
+        }
+        return true;
+    }
+
+    //reads compressed blocks and queues their decompression until enough blocks are pending
+    private void readAhead() throws IOException {
+        while (!endOfInput && pendingBlocks.size() < maxPendingBlocks) {
+            Block nextBlock = freeBlocks.isEmpty() ? new Block() : freeBlocks.poll();
+            if (!readBlock(nextBlock)) {
+                endOfInput = true;
+                freeBlocks.add(nextBlock);
+                return;
+            }
+            pendingBlocks.add(inflaters.submit(() -> nextBlock.inflate()));
+        }
+    }
+
+    private static Block takeBlock(Future<Block> pendingBlock) throws IOException {
+        try {
+            return pendingBlock.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decompressing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    //reads the compressed bytes of the next gzip member into the block, false at the end of the input
+    private boolean readBlock(Block nextBlock) throws IOException {
+        int first = input.read();
+        if (first < 0) {
+            return false;
+        }
+        header[0] = (byte) first;
+        readFully(header, 1, HEADER_SIZE - 1);
+        if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || header[2] != 8 || (header[3] & FLAG_EXTRA) == 0) {
+            throw new IOException("Invalid BGZF block header");
+        }
+        int extraLength = readShort(header, 10);
+        byte[] extra = new byte[extraLength];
+        readFully(extra, 0, extraLength);
+        int blockSize = -1;
+        for (int offset = 0; offset + 4 <= extraLength; offset += 4 + readShort(extra, offset + 2)) {
+            if (extra[offset] == 'B' && extra[offset + 1] == 'C' && readShort(extra, offset + 2) == 2) {
+                blockSize = readShort(extra, offset + 4) + 1;
+            }
+        }
+        if (blockSize < 0) {
+            throw new IOException("Missing BGZF block size");
+        }
+        int compressedLength = blockSize - HEADER_SIZE - extraLength - FOOTER_SIZE;
+        if (compressedLength < 0) {
+            throw new IOException("Invalid BGZF block size: " + blockSize);
+        }
+        nextBlock.setCompressedLength(compressedLength);
+        readFully(nextBlock.compressed, 0, compressedLength + FOOTER_SIZE);
+        return true;
+    }
+
+    private void readFully(byte[] bytes, int offset, int length) throws IOException {
+        for (int read = 0; read < length; ) {
+            int count = input.read(bytes, offset + read, length - read);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of BGZF file");
+            }
+            read += count;
+        }
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return readShort(bytes, offset) | readShort(bytes, offset + 2) << 16;
+    }
+
+    //a block with its compressed bytes (followed by the gzip footer), its decompressed bytes and its inflater
+    private static class Block {
+        private byte[] compressed = new byte[MAX_BLOCK_SIZE];
+        private final byte[] data = new byte[MAX_BLOCK_SIZE];
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 checksum = new CRC32();
+        private int compressedLength;
+        private int length;
+
+        private void setCompressedLength(int compressedLength) {
+            this.compressedLength = compressedLength;
+            if (compressed.length < compressedLength + FOOTER_SIZE) {
+                compressed = new byte[compressedLength + FOOTER_SIZE];
+            }
+        }
+
+        //runs on an inflater thread
+        private Block inflate() throws IOException {
+            int expectedChecksum = readInt(compressed, compressedLength);
+            int expectedLength = readInt(compressed, compressedLength + 4);
+            if (expectedLength < 0 || expectedLength > data.length) {
+                throw new IOException("Invalid BGZF block length: " + expectedLength);
+            }
+            inflater.reset();
+            inflater.setInput(compressed, 0, compressedLength);
+            try {
+                length = 0;
+                while (length < expectedLength && !inflater.finished()) {
+                    int count = inflater.inflate(data, length, expectedLength - length);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += count;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Invalid BGZF block data", e);
+            }
+            checksum.reset();
+            checksum.update(data, 0, length);
+            if (length != expectedLength || (int) checksum.getValue() != expectedChecksum) {
+                throw new IOException("Corrupt BGZF block");
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.upsolver.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a result file that was written by ColumnarResultWriter, block by block.
+ * Usage: while (reader.next()) { reader.getRow() }
+ */
+public class ColumnarResultReader implements Closeable {
+    private final DataInputStream input;
+    private final String[] fieldNames;
+    private int blockRows;
+    private int blockRow;
+    private int[] rowSizes = new int[0];
+    private String[][] columns = new String[0][];
+    private boolean ended;
+
+    public ColumnarResultReader(File file) throws IOException {
+        InputStream fileInput = new FileInputStream(file);
+        try {
+            byte[] magic = new byte[ColumnarResultWriter.MAGIC.length];
+            new DataInputStream(fileInput).readFully(magic);
+            int version = fileInput.read();
+            int flags = fileInput.read();
+            if (!Arrays.equals(magic, ColumnarResultWriter.MAGIC) || version != ColumnarResultWriter.VERSION) {
+                throw new IOException("Not a columnar result file: " + file);
+            }
+            input = new DataInputStream(new BufferedInputStream((flags & ColumnarResultWriter.COMPRESSED) != 0
+                    ? new GZIPInputStream(fileInput, 64 * 1024) : fileInput, 64 * 1024));
+            fieldNames = new String[readLength(input)];
+            for (int i = 0; i < fieldNames.length; i++) {
+                fieldNames[i] = readString(input, readLength(input));
+            }
+        } catch (IOException e) {
+            fileInput.close();
+            throw e;
+        }
+    }
+
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * Moves to the next row
+     * @returns false at the end of the file
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        if (blockRow + 1 < blockRows) {
+            blockRow++;
+            return true;
+        }
+        if (ended) {
+            return false;
+        }
+        blockRows = readLength(input);
+        if (blockRows == 0) {
+            ended = true;
+            return false;
+        }
+        readBlock();
+        blockRow = 0;
+        return true;
+    }
+
+    /**
+     * @returns the fields of the current row
+     */
+    public String[] getRow() {
+        String[] row = new String[rowSizes[blockRow]];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = columns[i][blockRow];
+        }
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private void readBlock() throws IOException {
+        int columnCount = readLength(input);
+        rowSizes = new int[blockRows];
+        for (int row = 0; row < blockRows; row++) {
+            rowSizes[row] = readLength(input);
+        }
+        columns = new String[columnCount][blockRows];
+        for (int column = 0; column < columnCount; column++) {
+            readLength(input); //the column length is for readers that skip columns
+            for (int row = 0; row < blockRows; row++) {
+                int length = readLength(input);
+                columns[column][row] = length == 0 ? null : readString(input, length - 1);
+            }
+        }
+    }
+
+    private static String readString(DataInputStream input, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readLength(DataInputStream input) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int current;
+        do {
+            current = input.read();
+            if (current < 0) {
+                throw new EOFException();
+            }
+            value |= (current & 0x7f) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+}
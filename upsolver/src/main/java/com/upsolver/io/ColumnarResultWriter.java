@@ -0,0 +1,129 @@
+package com.upsolver.io;
+
+import com.upsolver.components.FieldRow;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the result rows in a compact binary columnar format, for jobs that read the result without parsing csv.
+ * The file starts with the MAGIC bytes, the format VERSION and the flags (COMPRESSED when the rest of the file is
+ * gzip compressed), then the field names, then blocks of up to BLOCK_ROWS rows and an empty block at the end.
+ * A block holds the number of rows, the number of columns, the number of fields of each row and then each column:
+ * its length in bytes and for each row the length of the UTF-8 bytes of the value plus one (0 for a row without
+ * the field) followed by the bytes. All the lengths are variable length integers.
+ * See ColumnarResultReader.
+ */
+public class ColumnarResultWriter extends ResultWriter {
+    public static final byte[] MAGIC = {'U', 'P', 'S', 'C'};
+    public static final int VERSION = 1;
+    public static final int COMPRESSED = 1;
+    static final int BLOCK_ROWS = 64 * 1024;
+
+    private final boolean compressed;
+    private final List<ByteArrayOutputStream> columns = new ArrayList<>();
+    private final ByteArrayOutputStream rowSizes = new ByteArrayOutputStream();
+    private DataOutputStream output;
+    private int blockRows;
+
+    public ColumnarResultWriter(File file, String[] fieldNames, boolean compressed) {
+        super(file, fieldNames);
+        this.compressed = compressed;
+    }
+
+    @Override
+    protected void open(File file) throws IOException {
+        OutputStream fileOutput = new FileOutputStream(file);
+        fileOutput.write(MAGIC);
+        fileOutput.write(VERSION);
+        fileOutput.write(compressed ? COMPRESSED : 0);
+        output = new DataOutputStream(new BufferedOutputStream(
+                compressed ? new GZIPOutputStream(fileOutput, 64 * 1024) : fileOutput, 64 * 1024));
+        writeLength(output, fieldNames.length);
+        for (String fieldName : fieldNames) {
+            writeBytes(output, fieldName.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    protected void write(FieldRow row) throws IOException {
+        int size = row.size();
+        while (columns.size() < size) {
+            ByteArrayOutputStream column = new ByteArrayOutputStream();
+            //the rows of the block before this row do not have the new column
+            for (int i = 0; i < blockRows; i++) {
+                column.write(0);
+            }
+            columns.add(column);
+        }
+        for (int i = 0; i < size; i++) {
+            ByteArrayOutputStream column = columns.get(i);
+            int length = row.getFieldLength(i);
+            if (isAscii(row, i, length)) {
+                writeLength(column, length + 1);
+                for (int position = 0; position < length; position++) {
+                    column.write(row.getFieldChar(i, position));
+                }
+            } else {
+                byte[] bytes = row.getField(i).getBytes(StandardCharsets.UTF_8);
+                writeLength(column, bytes.length + 1);
+                column.write(bytes, 0, bytes.length);
+            }
+        }
+        for (int i = size; i < columns.size(); i++) {
+            columns.get(i).write(0);
+        }
+        writeLength(rowSizes, size);
+        if (++blockRows == BLOCK_ROWS) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        try {
+            if (blockRows > 0) {
+                writeBlock();
+            }
+            writeLength(output, 0);
+        } finally {
+            output.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        writeLength(output, blockRows);
+        writeLength(output, columns.size());
+        rowSizes.writeTo(output);
+        for (ByteArrayOutputStream column : columns) {
+            writeLength(output, column.size());
+            column.writeTo(output);
+        }
+        rowSizes.reset();
+        columns.clear();
+        blockRows = 0;
+    }
+
+    private static void writeBytes(OutputStream output, byte[] bytes) throws IOException {
+        writeLength(output, bytes.length);
+        output.write(bytes);
+    }
+
+    static void writeLength(OutputStream output, int length) throws IOException {
+        int value = length;
+        while ((value & ~0x7f) != 0) {
+            output.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+}
@@ -0,0 +1,82 @@
+package com.upsolver.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Detects the compression of a data file by its first bytes and opens the decompressed bytes of the file.
+ * Gzip files are decompressed in order (a file of several gzip members is read as their concatenation), BGZF files
+ * (gzip members that carry their compressed size) have their blocks decompressed in parallel.
+ * Zstandard files are detected but can not be decompressed, the JDK has no Zstandard decoder.
+ */
+public class CompressedInput {
+    public enum Format {
+        NONE, GZIP, BGZF, ZSTD
+    }
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int DETECT_SIZE = 32;
+
+    private CompressedInput() {
+    }
+
+    /**
+     * @param file
+     * @returns the compression of the file, NONE for an empty file
+     * @throws IOException
+     */
+    public static Format detect(File file) throws IOException {
+        byte[] header = new byte[DETECT_SIZE];
+        int length = 0;
+        try (InputStream input = new FileInputStream(file)) {
+            for (int read = 0; read >= 0 && length < header.length; length += Math.max(read, 0)) {
+                read = input.read(header, length, header.length - length);
+            }
+        }
+        if (length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b) {
+            return BgzfInputStream.isBgzfHeader(header, length) ? Format.BGZF : Format.GZIP;
+        }
+        if (length >= 4 && (header[0] & 0xff) == 0x28 && (header[1] & 0xff) == 0xb5 && (header[2] & 0xff) == 0x2f
+                && (header[3] & 0xff) == 0xfd) {
+            return Format.ZSTD;
+        }
+        return Format.NONE;
+    }
+
+    /**
+     * @param file
+     * @returns true if the file is compressed, false if it is not or can not be read
+     */
+    public static boolean isCompressed(File file) {
+        try {
+            return file.isFile() && detect(file) != Format.NONE;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param file
+     * @param format the compression of the file
+     * @returns the decompressed bytes of the file, unbuffered for a compressed file
+     * @throws IOException if the format can not be decompressed
+     */
+    public static InputStream open(File file, Format format) throws IOException {
+        switch (format) {
+            case GZIP:
+                return new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE);
+            case BGZF:
+                return new BgzfInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE),
+                        Runtime.getRuntime().availableProcessors());
+            case ZSTD:
+                throw new IOException("Zstandard compressed files are not supported, decompress " + file.getPath()
+                        + " with zstd -d or recompress it with gzip or bgzip");
+            default:
+                return new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.upsolver.io;
+
+import com.upsolver.components.RowBatch;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a block of csv bytes that holds whole lines into batches of rows, the same way MappedCsvReader splits lines
+ * (a '\r' before the new line is not part of the last field and trailing empty fields are removed), with max fields
+ * only the leading fields of a line are split like MappedCsvReader.setMaxFields.
+ * The tokenizer has no state, one instance can be used by many threads.
+ */
+public class CsvBlockTokenizer {
+    private final byte delimiter;
+    private final int batchSize;
+    private final int maxFields;
+
+    /**
+     * @param delimiter
+     * @param batchSize the max number of rows in a batch
+     */
+    public CsvBlockTokenizer(char delimiter, int batchSize) {
+        this(delimiter, batchSize, -1);
+    }
+
+    /**
+     * @param delimiter
+     * @param batchSize the max number of rows in a batch
+     * @param maxFields the number of leading fields of a line to split, or -1 for all the fields
+     */
+    public CsvBlockTokenizer(char delimiter, int batchSize, int maxFields) {
+        this.delimiter = (byte) delimiter;
+        this.batchSize = batchSize;
+        this.maxFields = maxFields;
+    }
+
+    /**
+     * @param block
+     * @param length the number of bytes of the block that hold lines, the last line may not end with a new line
+     * @returns the row batches in the block order
+     */
+    public List<RowBatch> tokenize(byte[] block, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        List<RowBatch> batches = new ArrayList<>();
+        RowBatch batch = new RowBatch(buffer, batchSize);
+        int lineStart = 0;
+        int fieldStart = 0;
+        int rowFields = 0;
+        for (int position = 0; position < length; position++) {
+            byte current = block[position];
+            if (current == '\n') {
+                batch.addField(fieldStart, position > fieldStart && block[position - 1] == '\r' ? position - 1 : position);
+                batch.endRow(true);
+            } else if (current == delimiter) {
+                batch.addField(fieldStart, position);
+                fieldStart = position + 1;
+                if (++rowFields != maxFields) {
+                    continue;
+                }
+                //skips the rest of the line, its fields are removed only if they are all empty trailing fields
+                int contentBytes = 0;
+                for (position++; position < length && block[position] != '\n'; position++) {
+                    if (block[position] != delimiter) {
+                        contentBytes++;
+                    }
+                }
+                boolean emptyRest = contentBytes == 0 || contentBytes == 1 && block[position - 1] == '\r';
+                if (emptyRest) {
+                    batch.addField(position, position);
+                }
+                batch.endRow(emptyRest);
+            } else {
+                continue;
+            }
+            lineStart = position + 1;
+            fieldStart = lineStart;
+            rowFields = 0;
+            if (batch.getRowCount() == batchSize) {
+                batches.add(batch);
+                batch = new RowBatch(buffer, batchSize);
+            }
+        }
+        if (lineStart < length) {
+            //last line without a new line character
+            batch.addField(fieldStart, length > fieldStart && block[length - 1] == '\r' ? length - 1 : length);
+            batch.endRow(true);
+        }
+        if (batch.getRowCount() > 0) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,120 @@
+package com.upsolver.io;
+
+import com.upsolver.components.FieldRow;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the result rows as csv lines through a reusable byte buffer: the field names line and then each row
+ * with a delimiter after every field, the same layout the result matrix file always had.
+ * ASCII fields are copied to the buffer character by character (the bytes of a byte row field are not decoded),
+ * other fields are encoded with the charset.
+ */
+public class CsvResultWriter extends ResultWriter {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final String ASCII_SAMPLE = "azAZ09,.-\n";
+
+    private final Charset charset;
+    private final boolean asciiCompatible;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final char delimiter = ',';
+    private OutputStream output;
+
+    public CsvResultWriter(File file, String[] fieldNames, Charset charset) {
+        super(file, fieldNames);
+        this.charset = charset;
+        this.asciiCompatible = Arrays.equals(ASCII_SAMPLE.getBytes(charset), ASCII_SAMPLE.getBytes(StandardCharsets.US_ASCII));
+        //unmappable characters are replaced, like a FileWriter does
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    protected void open(File file) throws IOException {
+        output = new FileOutputStream(file);
+        writeChars(String.join(String.valueOf(delimiter), fieldNames));
+        writeChars("\n");
+    }
+
+    @Override
+    protected void write(FieldRow row) throws IOException {
+        for (int i = 0; i < row.size(); i++) {
+            int length = row.getFieldLength(i);
+            if (asciiCompatible && isAscii(row, i, length)) {
+                for (int position = 0; position < length; position++) {
+                    writeByte(row.getFieldChar(i, position));
+                }
+                writeByte(delimiter);
+            } else {
+                writeChars(row.getField(i));
+                writeChars(String.valueOf(delimiter));
+            }
+        }
+        if (asciiCompatible) {
+            writeByte('\n');
+        } else {
+            writeChars("\n");
+        }
+    }
+
+    @Override
+    protected void finish() throws IOException {
+        try {
+            encode(CharBuffer.allocate(0), true);
+            flushBuffer();
+        } finally {
+            output.close();
+        }
+    }
+
+    private void writeByte(char c) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) c);
+    }
+
+    private void writeChars(String value) throws IOException {
+        encode(CharBuffer.wrap(value), false);
+    }
+
+    private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, endOfInput);
+            if (result.isOverflow()) {
+                flushBuffer();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(buffer).isOverflow()) {
+                flushBuffer();
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        output.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
@@ -0,0 +1,173 @@
+package com.upsolver.io;
+
+import com.upsolver.components.ByteFieldRow;
+import com.upsolver.components.FieldRow;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the lines of a csv file (or of a byte range of it) from memory mapped regions of the file.
+ * The bytes are scanned for delimiters and new lines directly, and each line is exposed as a ByteFieldRow
+ * with offset / length views over the mapped region, so fields are decoded only when an operation needs them.
+ * The row returned by getRow is reused by the next call to next. With setMaxFields the line is split only to its
+ * leading fields, the rest of the line is scanned for the new line character only.
+ */
+public class MappedCsvReader implements Closeable {
+    private static final long DEFAULT_REGION_SIZE = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long end;
+    private final long regionSize;
+    private final byte delimiter;
+    private final ByteFieldRow row = new ByteFieldRow();
+
+    private MappedByteBuffer region;
+    private long regionStart;
+    private int regionPosition;
+    private long bytesRead;
+    private int maxFields = -1;
+
+    public MappedCsvReader(File file) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ), true, 0, -1, ',', DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Reads the lines in the byte range [start, end) of the file, start must be the beginning of a line
+     * @param channel the channel is not closed by the reader
+     * @param start
+     * @param end
+     * @throws IOException
+     */
+    public MappedCsvReader(FileChannel channel, long start, long end) throws IOException {
+        this(channel, false, start, end, ',', DEFAULT_REGION_SIZE);
+    }
+
+    MappedCsvReader(FileChannel channel, boolean ownsChannel, long start, long end, char delimiter, long regionSize)
+            throws IOException {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.end = end < 0 ? channel.size() : end;
+        this.delimiter = (byte) delimiter;
+        this.regionSize = regionSize;
+        this.regionStart = start;
+        mapRegion(start);
+    }
+
+    /**
+     * Advances to the next line
+     * @returns false when there are no more lines in the range
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        if (regionStart + regionPosition >= end) {
+            return false;
+        }
+        while (!scanLine()) {
+            //the line continues after the mapped region, map a region that starts at the beginning of the line
+            mapRegion(regionStart + regionPosition);
+        }
+        return true;
+    }
+
+    /**
+     * Splits only the leading fields of the next lines, a row that has more fields has exactly maxFields fields
+     * (the trailing empty fields are removed only if all the skipped fields are empty, like String.split does)
+     * @param maxFields the number of leading fields to split, or -1 for all the fields
+     */
+    public void setMaxFields(int maxFields) {
+        this.maxFields = maxFields;
+    }
+
+    public FieldRow getRow() {
+        return row;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    //scans one line from the current position, returns false if the line is not complete in the mapped region
+    private boolean scanLine() {
+        MappedByteBuffer buffer = region;
+        int limit = buffer.limit();
+        boolean lastRegion = regionStart + limit >= end;
+        row.reset(buffer);
+        int fieldStart = regionPosition;
+        int position = regionPosition;
+        while (position < limit) {
+            byte current = buffer.get(position);
+            if (current == '\n') {
+                row.addField(fieldStart, position > fieldStart && buffer.get(position - 1) == '\r' ? position - 1 : position);
+                row.removeTrailingEmptyFields();
+                bytesRead += position + 1 - regionPosition;
+                regionPosition = position + 1;
+                return true;
+            } else if (current == delimiter) {
+                row.addField(fieldStart, position);
+                fieldStart = position + 1;
+                if (row.size() == maxFields) {
+                    return skipLine(buffer, fieldStart, limit, lastRegion);
+                }
+            }
+            position++;
+        }
+        if (!lastRegion) {
+            return false;
+        }
+        //last line of the range without a new line character
+        row.addField(fieldStart, position > fieldStart && buffer.get(position - 1) == '\r' ? position - 1 : position);
+        row.removeTrailingEmptyFields();
+        bytesRead += position - regionPosition;
+        regionPosition = position;
+        return true;
+    }
+
+    //skips the rest of the line after the max fields, returns false if the line is not complete in the mapped region
+    private boolean skipLine(MappedByteBuffer buffer, int position, int limit, boolean lastRegion) {
+        int lineEnd = position;
+        int contentBytes = 0;
+        byte current;
+        while (lineEnd < limit && (current = buffer.get(lineEnd)) != '\n') {
+            if (current != delimiter) {
+                contentBytes++;
+            }
+            lineEnd++;
+        }
+        if (lineEnd == limit && !lastRegion) {
+            return false;
+        }
+        if (contentBytes == 0 || contentBytes == 1 && buffer.get(lineEnd - 1) == '\r') {
+            //the skipped fields are all empty, they are removed with the trailing empty fields of the row
+            row.addField(lineEnd, lineEnd);
+            row.removeTrailingEmptyFields();
+        }
+        int next = lineEnd < limit ? lineEnd + 1 : lineEnd;
+        bytesRead += next - regionPosition;
+        regionPosition = next;
+        return true;
+    }
+
+    private void mapRegion(long position) throws IOException {
+        long size = Math.min(end - position, regionSize);
+        if (region != null && position == regionStart && size <= region.limit()) {
+            //a single line is larger than the region size
+            size = Math.min(end - position, Math.min(Integer.MAX_VALUE, (long) region.limit() * 2));
+        }
+        region = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        regionStart = position;
+        regionPosition = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
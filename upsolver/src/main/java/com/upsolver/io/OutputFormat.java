@@ -0,0 +1,40 @@
+package com.upsolver.io;
+
+import java.io.File;
+import java.nio.charset.Charset;
+
+/**
+ * The formats of the result file
+ */
+public enum OutputFormat {
+    CSV(".csv"),
+    COLUMNAR(".ucol"),
+    COLUMNAR_GZIP(".ucol.gz");
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @param file
+     * @param fieldNames
+     * @param charset the charset of the csv format, the columnar formats are always UTF-8
+     * @returns ResultWriter
+     */
+    public ResultWriter createWriter(File file, String[] fieldNames, Charset charset) {
+        switch (this) {
+            case COLUMNAR:
+                return new ColumnarResultWriter(file, fieldNames, false);
+            case COLUMNAR_GZIP:
+                return new ColumnarResultWriter(file, fieldNames, true);
+            default:
+                return new CsvResultWriter(file, fieldNames, charset);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.upsolver.io;
+
+import com.upsolver.components.ArrayFieldRow;
+import com.upsolver.components.FieldRow;
+import com.upsolver.components.Row;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes the result rows to a file as they are produced. The file is created when the first row is written,
+ * so a result without rows creates no file. Write errors are thrown as UncheckedIOException.
+ * The owner of the writer either closes it or, when the process fails, aborts it so the partial file is deleted.
+ * A writer is not thread safe.
+ */
+public abstract class ResultWriter implements Closeable {
+    private final File file;
+    protected final String[] fieldNames;
+    private final ArrayFieldRow arrayFieldRow = new ArrayFieldRow();
+    private boolean opened;
+    private boolean closed;
+    private boolean aborted;
+    private long rowCount;
+
+    protected ResultWriter(File file, String[] fieldNames) {
+        this.file = file;
+        this.fieldNames = fieldNames;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void writeRow(FieldRow row) {
+        try {
+            if (!opened) {
+                opened = true;
+                open(file);
+            }
+            write(row);
+            rowCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write to " + file, e);
+        }
+    }
+
+    //a missing value of a matrix row is written as null, like the result matrix file always had
+    public void writeRow(Row row) {
+        String[] fields = row.getData().toArray(new String[0]);
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == null) {
+                fields[i] = "null";
+            }
+        }
+        writeRow(arrayFieldRow.setFields(fields));
+    }
+
+    /**
+     * Writes the rows that are still buffered and closes the file
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (opened) {
+            try {
+                finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write to " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Closes the writer and deletes the file, for a result that failed after some rows were written
+     */
+    public void abort() {
+        aborted = true;
+        try {
+            close();
+        } catch (UncheckedIOException e) {
+            //the file is deleted anyway
+        }
+        if (opened) {
+            file.delete();
+        }
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    //creates the file and writes the field names
+    protected abstract void open(File file) throws IOException;
+
+    protected abstract void write(FieldRow row) throws IOException;
+
+    //flushes the buffered bytes and closes the file
+    protected abstract void finish() throws IOException;
+
+    //true if the field has only ASCII characters, the characters of a byte row field are its bytes
+    protected static boolean isAscii(FieldRow row, int index, int length) {
+        for (int i = 0; i < length; i++) {
+            if (row.getFieldChar(index, i) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+package com.upsolver.io;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The memory budget of the rows that are buffered by the SpillingRowBuffers of one process, shared by the buffers
+ * of all the parts of the file so the rows that are held in memory are bounded for any number of parts.
+ * A buffer spills its rows to a run file in the spill directory once the budget is exceeded.
+ */
+public class SpillBudget {
+    //a quarter of the max heap by default
+    public static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private volatile long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private volatile File directory = new File(System.getProperty("java.io.tmpdir"));
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @param memoryBudget the estimated size in bytes of the rows that can be buffered in memory
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param directory the directory of the run files, the system temp directory by default
+     */
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param bytes the estimated size of the rows that were buffered
+     * @returns true if the budget is exceeded
+     */
+    boolean reserve(long bytes) {
+        return bufferedBytes.addAndGet(bytes) > memoryBudget;
+    }
+
+    void release(long bytes) {
+        bufferedBytes.addAndGet(-bytes);
+    }
+
+    boolean isExceeded() {
+        return bufferedBytes.get() > memoryBudget;
+    }
+
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+}
@@ -0,0 +1,438 @@
+package com.upsolver.io;
+
+import com.upsolver.components.ColumnarMatrix;
+import com.upsolver.components.FieldRow;
+import com.upsolver.components.Matrix;
+import com.upsolver.components.Row;
+import com.upsolver.components.SortOrder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Buffers the transformed rows of a process in a ColumnarMatrix until the shared SpillBudget is exceeded, then the
+ * buffered rows are written to a run file and the buffer is cleared. Iterating the buffer reads the runs back in
+ * order followed by the rows that are still in memory, so the rows keep the file order and only one row
+ * of a run is in memory at a time.
+ * A run file holds for each row the number of fields and for each field the length of its UTF-8 bytes and the bytes,
+ * lengths are written as variable length integers.
+ * A sorted buffer sorts the rows in memory by the SortOrder before they are written, so every run is sorted, and
+ * iterating it merges the runs and the sorted rows in memory (a k-way merge that reads one row of each run at a time).
+ * Rows with equal keys are taken from the earlier run first, so the sort keeps the file order of equal rows.
+ * When there are more runs than MAX_MERGE_RUNS they are first merged in groups into longer runs.
+ * A buffer is not thread safe, close deletes the run files (the owner closes it in a finally block, the runs are not
+ * deleted on exit since a long running process would keep every run it ever spilled in the delete on exit list).
+ */
+public class SpillingRowBuffer implements Iterable<Row>, Closeable {
+    //a buffer smaller than this is not spilled, so the buffers of many small parts do not create tiny runs
+    private static final long MIN_RUN_BYTES = 1024 * 1024;
+    private static final int ROW_OVERHEAD_BYTES = 16;
+    private static final int FIELD_OVERHEAD_BYTES = 8;
+    //the sort key and the slots of a row while a sorted buffer is sorted
+    private static final int SORT_KEY_BYTES = 32;
+    //the number of runs that are merged at once, each one with its own read buffer
+    private static final int MAX_MERGE_RUNS = 64;
+    private static final int RUN_BUFFER_BYTES = 64 * 1024;
+
+    private final SpillBudget budget;
+    private final SortOrder sortOrder;
+    private final List<File> runs = new ArrayList<>();
+    private ColumnarMatrix buffer = new ColumnarMatrix();
+    private long bufferedBytes;
+    private long rowCount;
+
+    public SpillingRowBuffer(SpillBudget budget) {
+        this(budget, null);
+    }
+
+    /**
+     * @param budget
+     * @param sortOrder the order the rows are iterated in, null to keep the file order
+     */
+    public SpillingRowBuffer(SpillBudget budget, SortOrder sortOrder) {
+        this.budget = budget;
+        this.sortOrder = sortOrder;
+    }
+
+    public void addRow(FieldRow row) {
+        buffer.addRow(row);
+        long rowBytes = sortOrder != null ? ROW_OVERHEAD_BYTES + SORT_KEY_BYTES : ROW_OVERHEAD_BYTES;
+        for (int i = 0; i < row.size(); i++) {
+            rowBytes += FIELD_OVERHEAD_BYTES + 2L * row.getFieldLength(i);
+        }
+        bufferedBytes += rowBytes;
+        rowCount++;
+        if (budget.reserve(rowBytes) && bufferedBytes >= Math.min(MIN_RUN_BYTES, budget.getMemoryBudget())) {
+            spill();
+        }
+    }
+
+    /**
+     * Appends the rows of the buffer of the next part of the file, the runs of the other buffer are moved to this one
+     * @param other
+     */
+    public void addAll(SpillingRowBuffer other) {
+        if (!other.runs.isEmpty()) {
+            //the rows in memory come before the rows of the other runs
+            spill();
+            runs.addAll(other.runs);
+            other.runs.clear();
+        }
+        buffer.join(other.buffer);
+        bufferedBytes += other.bufferedBytes;
+        rowCount += other.rowCount;
+        other.buffer = new ColumnarMatrix();
+        other.bufferedBytes = 0;
+        other.rowCount = 0;
+        if (budget.isExceeded() && bufferedBytes >= Math.min(MIN_RUN_BYTES, budget.getMemoryBudget())) {
+            spill();
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @returns the number of rows that are in memory (not spilled)
+     */
+    public int getBufferedRowCount() {
+        return buffer.getRowCount();
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * @returns all the rows in a matrix, the rows of the runs are read back into memory
+     */
+    public Matrix toMatrix() {
+        if (runs.isEmpty() && sortOrder == null) {
+            return buffer;
+        }
+        ColumnarMatrix matrix = new ColumnarMatrix();
+        for (Row row : this) {
+            matrix.addRow(row);
+        }
+        return matrix;
+    }
+
+    /**
+     * Writes the rows in memory to a new run file, in the sort order when the buffer is sorted
+     */
+    public void spill() {
+        if (buffer.getRowCount() == 0) {
+            return;
+        }
+        runs.add(writeRun(getBufferRows().iterator()));
+        budget.release(bufferedBytes);
+        bufferedBytes = 0;
+        buffer = new ColumnarMatrix();
+    }
+
+    /**
+     * @returns the rows of the runs followed by the rows in memory, or the merged rows in the sort order
+     */
+    @Override
+    public Iterator<Row> iterator() {
+        if (sortOrder != null) {
+            mergeRuns(MAX_MERGE_RUNS - 1);
+            List<Iterator<Row>> sources = new ArrayList<>();
+            for (File run : runs) {
+                sources.add(new RunIterator(run));
+            }
+            sources.add(getBufferRows().iterator());
+            return new MergeIterator(sources);
+        }
+        return new Iterator<Row>() {
+            private int runIndex;
+            private Iterator<Row> runRows;
+            private final Iterator<Row> bufferRows = buffer.getRows().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (runIndex < runs.size()) {
+                    if (runRows == null) {
+                        runRows = new RunIterator(runs.get(runIndex));
+                    }
+                    if (runRows.hasNext()) {
+                        return true;
+                    }
+                    runRows = null;
+                    runIndex++;
+                }
+                return bufferRows.hasNext();
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return runRows != null ? runRows.next() : bufferRows.next();
+            }
+        };
+    }
+
+    /**
+     * Deletes the run files and releases the budget of the rows in memory
+     */
+    @Override
+    public void close() {
+        for (File run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        budget.release(bufferedBytes);
+        bufferedBytes = 0;
+    }
+
+    //the rows in memory, in the sort order when the buffer is sorted
+    private List<Row> getBufferRows() {
+        if (sortOrder == null) {
+            return buffer.getRows();
+        }
+        ColumnarMatrix rows = buffer;
+        SortOrder.Keys keys = sortOrder.createKeys(rows.getRowCount());
+        keys.setAll(rows);
+        int[] order = keys.sort(rows.getRowCount());
+        return new AbstractList<Row>() {
+            @Override
+            public Row get(int index) {
+                return rows.getRow(order[index]);
+            }
+
+            @Override
+            public int size() {
+                return order.length;
+            }
+        };
+    }
+
+    //merges groups of consecutive runs into single runs until there are at most maxRuns runs
+    private void mergeRuns(int maxRuns) {
+        while (runs.size() > maxRuns) {
+            List<File> mergedRuns = new ArrayList<>();
+            try {
+                mergeRunGroups(mergedRuns);
+            } catch (RuntimeException e) {
+                //the runs that were not merged yet are deleted by close, the merged runs are not in the runs
+                for (File mergedRun : mergedRuns) {
+                    if (!runs.contains(mergedRun)) {
+                        mergedRun.delete();
+                    }
+                }
+                throw e;
+            }
+            runs.clear();
+            runs.addAll(mergedRuns);
+        }
+    }
+
+    //merges each group of MAX_MERGE_RUNS consecutive runs into a single run that is added to the merged runs
+    private void mergeRunGroups(List<File> mergedRuns) {
+        for (int start = 0; start < runs.size(); start += MAX_MERGE_RUNS) {
+            List<File> group = runs.subList(start, Math.min(runs.size(), start + MAX_MERGE_RUNS));
+            if (group.size() == 1) {
+                mergedRuns.add(group.get(0));
+                continue;
+            }
+            List<Iterator<Row>> sources = new ArrayList<>();
+            for (File run : group) {
+                sources.add(new RunIterator(run));
+            }
+            mergedRuns.add(writeRun(new MergeIterator(sources)));
+            for (File run : group) {
+                run.delete();
+            }
+        }
+    }
+
+    private File writeRun(Iterator<Row> rows) {
+        File run = null;
+        boolean written = false;
+        try {
+            run = File.createTempFile("upsolver-run-", ".bin", budget.getDirectory());
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), RUN_BUFFER_BYTES))) {
+                while (rows.hasNext()) {
+                    writeRow(output, rows.next());
+                }
+            }
+            written = true;
+            return run;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill rows to " + budget.getDirectory(), e);
+        } finally {
+            if (!written && run != null) {
+                //a run that failed is not added to the runs, so close would not delete it
+                run.delete();
+            }
+        }
+    }
+
+    //reads the rows of a run, the file is opened on the first read and closed at its end
+    private static class RunIterator implements Iterator<Row> {
+        private final File run;
+        private DataInputStream input;
+        private Row nextRow;
+        private boolean finished;
+
+        RunIterator(File run) {
+            this.run = run;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextRow == null && !finished) {
+                try {
+                    if (input == null) {
+                        input = new DataInputStream(new BufferedInputStream(new FileInputStream(run), RUN_BUFFER_BYTES));
+                    }
+                    nextRow = readRow(input);
+                    if (nextRow == null) {
+                        finished = true;
+                        input.close();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read spilled rows", e);
+                }
+            }
+            return nextRow != null;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Row row = nextRow;
+            nextRow = null;
+            return row;
+        }
+    }
+
+    //the k-way merge of sorted sources, equal rows are taken from the first source that has them
+    private class MergeIterator implements Iterator<Row> {
+        private final List<Iterator<Row>> sources;
+        private final Row[] heads;
+        private final SortOrder.Keys keys;
+        private final PriorityQueue<Integer> queue;
+
+        MergeIterator(List<Iterator<Row>> sources) {
+            this.sources = sources;
+            this.heads = new Row[sources.size()];
+            this.keys = sortOrder.createKeys(sources.size());
+            this.queue = new PriorityQueue<>(Math.max(1, sources.size()), (source, otherSource) -> {
+                int comparison = keys.compare(source, otherSource);
+                return comparison != 0 ? comparison : Integer.compare(source, otherSource);
+            });
+            for (int source = 0; source < sources.size(); source++) {
+                advance(source);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Row next() {
+            if (queue.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            int source = queue.poll();
+            Row row = heads[source];
+            advance(source);
+            return row;
+        }
+
+        //reads the next row of the source into the queue
+        private void advance(int source) {
+            Iterator<Row> rows = sources.get(source);
+            if (rows.hasNext()) {
+                heads[source] = rows.next();
+                keys.set(source, heads[source]);
+                queue.add(source);
+            } else {
+                heads[source] = null;
+            }
+        }
+    }
+
+    private static void writeRow(DataOutputStream output, Row row) throws IOException {
+        List<String> data = row.getData();
+        writeLength(output, data.size());
+        for (String field : data) {
+            if (field == null) {
+                writeLength(output, 0);
+            } else {
+                byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+                writeLength(output, bytes.length + 1);
+                output.write(bytes);
+            }
+        }
+    }
+
+    //the next row of the run, or null at the end of the run
+    private static Row readRow(DataInputStream input) throws IOException {
+        int size = readLength(input);
+        if (size < 0) {
+            return null;
+        }
+        List<String> data = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int length = readLength(input);
+            if (length <= 0) {
+                data.add(null);
+            } else {
+                byte[] bytes = new byte[length - 1];
+                input.readFully(bytes);
+                data.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+        return new Row(data);
+    }
+
+    private static void writeLength(DataOutputStream output, int length) throws IOException {
+        int value = length;
+        while ((value & ~0x7f) != 0) {
+            output.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    //the variable length integer, or -1 at the end of the stream
+    private static int readLength(DataInputStream input) throws IOException {
+        int first = input.read();
+        if (first < 0) {
+            return -1;
+        }
+        int value = first & 0x7f;
+        int shift = 7;
+        int current = first;
+        while ((current & 0x80) != 0) {
+            current = input.readUnsignedByte();
+            value |= (current & 0x7f) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,241 @@
+package com.upsolver.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of processing a file with an operations chain (or with many chains over a single scan, the metrics of
+ * each chain are children of the scan metrics).
+ * The file processors add the rows and bytes they read and the time they spent in their scan loops, the operations
+ * add the time they spent executing the rows, and the parse time is the scan time that was not spent executing.
+ * The per operator counters are in OperatorMetrics. All the counters are striped so they can be updated by the
+ * threads that process the parts of the file, and are updated once per batch or per part of the file.
+ * While a process runs its metrics are registered as an MBean (com.upsolver:type=ExecutionMetrics,id=N),
+ * after finalizeProcess they are available as a JSON summary with toJson.
+ */
+public class ExecutionMetrics implements ExecutionMetricsMBean {
+    private static final String OBJECT_NAME_PREFIX = "com.upsolver:type=ExecutionMetrics,id=";
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    private final String query;
+    private final List<OperatorMetrics> operators = new ArrayList<>();
+    private final List<ExecutionMetrics> children = new ArrayList<>();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder scanNanos = new LongAdder();
+    private final LongAdder executeNanos = new LongAdder();
+    private final AtomicLong bufferedRows = new AtomicLong();
+    private final LongAccumulator peakBufferedRows = new LongAccumulator(Long::max, 0);
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private ObjectName objectName;
+
+    public ExecutionMetrics(String query) {
+        this.query = query;
+    }
+
+    /**
+     * Adds an operator to the metrics, operators are added in the order of the operations chain
+     * @param operator the operator name with its parameters
+     * @returns the metrics of the operator
+     */
+    public OperatorMetrics addOperator(String operator) {
+        OperatorMetrics operatorMetrics = new OperatorMetrics(operator);
+        operators.add(operatorMetrics);
+        return operatorMetrics;
+    }
+
+    public void addChild(ExecutionMetrics child) {
+        children.add(child);
+    }
+
+    /**
+     * Starts the elapsed time of the process and registers the MBean, once per process
+     */
+    public synchronized void start() {
+        if (startNanos != 0) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        try {
+            objectName = new ObjectName(OBJECT_NAME_PREFIX + ids.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException | SecurityException e) {
+            System.out.println("Failed to register the execution metrics: " + e);
+            objectName = null;
+        }
+    }
+
+    /**
+     * Stops the elapsed time of the process and unregisters the MBean
+     */
+    public synchronized void finish() {
+        if (startNanos == 0 || endNanos != 0) {
+            return;
+        }
+        endNanos = System.nanoTime();
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                System.out.println("Failed to unregister the execution metrics: " + e);
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * Adds a part of the file that was scanned by a file processor
+     * @param rows the rows that were read, not including the header row
+     * @param bytes the bytes that were read
+     * @param nanos the time of the scan loop, including the time the rows were executed
+     */
+    public void addScan(long rows, long bytes, long nanos) {
+        rowsRead.add(rows);
+        bytesRead.add(bytes);
+        scanNanos.add(nanos);
+    }
+
+    public void addExecuteNanos(long nanos) {
+        executeNanos.add(nanos);
+    }
+
+    /**
+     * @param delta the change in the number of result rows that are kept in memory
+     */
+    public void addBufferedRows(long delta) {
+        if (delta != 0) {
+            peakBufferedRows.accumulate(bufferedRows.addAndGet(delta));
+        }
+    }
+
+    @Override
+    public String getQuery() {
+        return query;
+    }
+
+    public List<OperatorMetrics> getOperators() {
+        return operators;
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        long elapsedNanos = getElapsedNanos();
+        return elapsedNanos == 0 ? 0 : getRowsRead() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public long getElapsedNanos() {
+        long start = startNanos;
+        if (start == 0) {
+            return 0;
+        }
+        long end = endNanos;
+        return (end != 0 ? end : System.nanoTime()) - start;
+    }
+
+    @Override
+    public long getParseNanos() {
+        return Math.max(0, scanNanos.sum() - getExecuteNanos());
+    }
+
+    @Override
+    public long getExecuteNanos() {
+        long nanos = executeNanos.sum();
+        for (ExecutionMetrics child : children) {
+            nanos += child.getExecuteNanos();
+        }
+        return nanos;
+    }
+
+    @Override
+    public long getBufferedRows() {
+        return bufferedRows.get();
+    }
+
+    @Override
+    public long getPeakBufferedRows() {
+        return peakBufferedRows.get();
+    }
+
+    @Override
+    public String getSummary() {
+        return toJson();
+    }
+
+    /**
+     * @returns the metrics as a JSON object
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"query\":");
+        appendString(json, query);
+        json.append(",\"elapsedNanos\":").append(getElapsedNanos())
+                .append(",\"rowsRead\":").append(getRowsRead())
+                .append(",\"bytesRead\":").append(getBytesRead())
+                .append(",\"rowsPerSecond\":").append(formatDouble(getRowsPerSecond()))
+                .append(",\"parseNanos\":").append(getParseNanos())
+                .append(",\"executeNanos\":").append(getExecuteNanos())
+                .append(",\"peakBufferedRows\":").append(getPeakBufferedRows())
+                .append(",\"operators\":[");
+        for (int i = 0; i < operators.size(); i++) {
+            OperatorMetrics operator = operators.get(i);
+            json.append(i > 0 ? "," : "").append("{\"operator\":");
+            appendString(json, operator.getOperator());
+            json.append(",\"rowsIn\":").append(operator.getRowsIn())
+                    .append(",\"rowsOut\":").append(operator.getRowsOut())
+                    .append(",\"selectivity\":").append(formatDouble(operator.getSelectivity()))
+                    .append(",\"nanos\":").append(operator.getNanos())
+                    .append("}");
+        }
+        json.append("]");
+        if (!children.isEmpty()) {
+            json.append(",\"queries\":[");
+            for (int i = 0; i < children.size(); i++) {
+                json.append(i > 0 ? "," : "").append(children.get(i).toJson());
+            }
+            json.append("]");
+        }
+        return json.append("}").toString();
+    }
+
+    private static String formatDouble(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
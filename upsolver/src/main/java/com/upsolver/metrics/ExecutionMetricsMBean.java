@@ -0,0 +1,29 @@
+package com.upsolver.metrics;
+
+/**
+ * The JMX view of the ExecutionMetrics of a running process
+ */
+public interface ExecutionMetricsMBean {
+    String getQuery();
+
+    long getRowsRead();
+
+    long getBytesRead();
+
+    double getRowsPerSecond();
+
+    long getElapsedNanos();
+
+    long getParseNanos();
+
+    long getExecuteNanos();
+
+    long getBufferedRows();
+
+    long getPeakBufferedRows();
+
+    /**
+     * @returns the JSON summary of the metrics, with the metrics of every operator
+     */
+    String getSummary();
+}
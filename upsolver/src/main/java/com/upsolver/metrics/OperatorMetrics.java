@@ -0,0 +1,54 @@
+package com.upsolver.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of a single operator of an operations chain: the rows it got, the rows it passed on and the time it
+ * ran. The counters are striped (LongAdder) and updated once per batch, so the threads that process the parts of
+ * a file do not contend on them.
+ */
+public class OperatorMetrics {
+    private final String operator;
+    private final LongAdder rowsIn = new LongAdder();
+    private final LongAdder rowsOut = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    public OperatorMetrics(String operator) {
+        this.operator = operator;
+    }
+
+    /**
+     * @param rowsIn the rows the operator got
+     * @param rowsOut the rows the operator passed on
+     * @param nanos the time the operator ran
+     */
+    public void add(long rowsIn, long rowsOut, long nanos) {
+        this.rowsIn.add(rowsIn);
+        this.rowsOut.add(rowsOut);
+        this.nanos.add(nanos);
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public long getRowsIn() {
+        return rowsIn.sum();
+    }
+
+    public long getRowsOut() {
+        return rowsOut.sum();
+    }
+
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * @returns the fraction of the rows the operator passed on, 0 if it got no rows
+     */
+    public double getSelectivity() {
+        long in = getRowsIn();
+        return in == 0 ? 0 : (double) getRowsOut() / in;
+    }
+}
@@ -0,0 +1,42 @@
+package com.upsolver.operations;
+
+import com.upsolver.metrics.OperatorMetrics;
+
+import java.util.List;
+
+/**
+ * Runs the batch operations that were compiled from the operations chain on each batch of rows of the file,
+ * the rows in and out and the time of each operation are added to its metrics once per batch.
+ * The executor is not thread safe, the compiled operations may reuse their state.
+ */
+public class BatchExecutor {
+    private final BatchOperation[] operations;
+    private final OperatorMetrics[] metrics;
+
+    /**
+     * @param operations
+     * @param metrics the metrics of each operation, null for an operation that adds its own metrics
+     */
+    public BatchExecutor(List<BatchOperation> operations, List<OperatorMetrics> metrics) {
+        this.operations = operations.toArray(new BatchOperation[0]);
+        this.metrics = metrics.toArray(new OperatorMetrics[0]);
+    }
+
+    /**
+     * Runs all the operations on the vector, the rows that passed them are the selected rows of the vector
+     * @param vector
+     */
+    public void execute(RowVector vector) {
+        for (int i = 0; i < operations.length; i++) {
+            int rowsIn = vector.getSelectedCount();
+            if (rowsIn == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            operations[i].apply(vector);
+            if (metrics[i] != null) {
+                metrics[i].add(rowsIn, vector.getSelectedCount(), System.nanoTime() - start);
+            }
+        }
+    }
+}
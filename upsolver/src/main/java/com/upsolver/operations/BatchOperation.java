@@ -0,0 +1,15 @@
+package com.upsolver.operations;
+
+/**
+ * A compiled operation that runs on a batch of rows, used by the BatchExecutor to pass the rows of the file
+ * through all the transformation operations a few thousand rows at a time.
+ */
+@FunctionalInterface
+public interface BatchOperation {
+    /**
+     * Runs the operation on the selected rows of the vector, by narrowing the selection (filter), changing the
+     * projection (pluck) or replacing the selected rows with computed rows (ceil)
+     * @param vector
+     */
+    void apply(RowVector vector);
+}
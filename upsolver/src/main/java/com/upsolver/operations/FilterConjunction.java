@@ -0,0 +1,151 @@
+package com.upsolver.operations;
+
+import com.upsolver.components.FieldRow;
+import com.upsolver.metrics.OperatorMetrics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The batch operation of adjacent filters, merged to a single pass over the selection vector where a row is dropped
+ * by the first filter it does not match.
+ * The filters of the first SAMPLE_ROWS rows are all evaluated to sample the selectivity of each filter, and the filters
+ * are then evaluated from the most selective (the lowest match rate) to the least selective. A row that does not have
+ * all the filter fields is evaluated in the plan order, so it fails on the same filter as it would without the merge.
+ * The rows in and out of each filter are added to its metrics, the time of the batch is split by the evaluations.
+ * The operation is not thread safe, every executor gets its own.
+ */
+public class FilterConjunction implements BatchOperation {
+    static final int SAMPLE_ROWS = 1024;
+
+    private final FilterPredicate[] predicates;
+    private final OperatorMetrics[] metrics;
+    private final int[] columns;
+    private final long[] rowsIn;
+    private final long[] rowsOut;
+    private final long[] sampledMatches;
+    private int sampledRows;
+    private final int[] order;
+
+    /**
+     * @param predicates the filters in the plan order
+     * @param metrics the metrics of each filter
+     */
+    public FilterConjunction(List<FilterPredicate> predicates, List<OperatorMetrics> metrics) {
+        this.predicates = predicates.toArray(new FilterPredicate[0]);
+        this.metrics = metrics.toArray(new OperatorMetrics[0]);
+        this.order = new int[this.predicates.length];
+        for (int i = 0; i < this.predicates.length; i++) {
+            order[i] = i;
+        }
+        this.columns = new int[this.predicates.length];
+        this.rowsIn = new long[this.predicates.length];
+        this.rowsOut = new long[this.predicates.length];
+        this.sampledMatches = new long[this.predicates.length];
+    }
+
+    @Override
+    public void apply(RowVector vector) {
+        long start = System.nanoTime();
+        int maxColumn = 0;
+        for (int i = 0; i < predicates.length; i++) {
+            columns[i] = vector.getColumn(predicates[i].getFieldIndex());
+            maxColumn = Math.max(maxColumn, columns[i]);
+        }
+        Arrays.fill(rowsIn, 0);
+        Arrays.fill(rowsOut, 0);
+        boolean sampling = sampledRows < SAMPLE_ROWS;
+        FieldRow[] rows = vector.getRows();
+        int[] selection = vector.getSelection();
+        int selectedCount = vector.getSelectedCount();
+        int selected = 0;
+        for (int i = 0; i < selectedCount; i++) {
+            int slot = selection[i];
+            boolean matches;
+            if(rows[slot].size() <= maxColumn) {
+                matches = matchInPlanOrder(rows[slot]);
+            } else if(sampling) {
+                matches = sample(rows[slot]);
+            } else {
+                matches = matchInSelectivityOrder(rows[slot]);
+            }
+            if(matches) {
+                selection[selected++] = slot;
+            }
+        }
+        vector.setSelectedCount(selected);
+        if(sampling) {
+            sampledRows += selectedCount;
+            if(sampledRows >= SAMPLE_ROWS) {
+                sortBySelectivity();
+            }
+        }
+        addMetrics(System.nanoTime() - start);
+    }
+
+    //a filter field may be missing, the filters are evaluated in the plan order so the same filter fails on it
+    private boolean matchInPlanOrder(FieldRow row) {
+        for (int i = 0; i < predicates.length; i++) {
+            rowsIn[i]++;
+            if(!predicates[i].matches(row, columns[i])) {
+                return false;
+            }
+            rowsOut[i]++;
+        }
+        return true;
+    }
+
+    //evaluates all the filters and counts the rows in and out as if they were evaluated in the current order
+    private boolean sample(FieldRow row) {
+        boolean matches = true;
+        for (int i : order) {
+            boolean filterMatches = predicates[i].matches(row, columns[i]);
+            if(filterMatches) {
+                sampledMatches[i]++;
+            }
+            if(matches) {
+                rowsIn[i]++;
+                if(filterMatches) {
+                    rowsOut[i]++;
+                } else {
+                    matches = false;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private boolean matchInSelectivityOrder(FieldRow row) {
+        for (int i : order) {
+            rowsIn[i]++;
+            if(!predicates[i].matches(row, columns[i])) {
+                return false;
+            }
+            rowsOut[i]++;
+        }
+        return true;
+    }
+
+    //insertion sort by the sampled matches, filters with the same match rate keep the plan order
+    private void sortBySelectivity() {
+        for (int i = 1; i < order.length; i++) {
+            int filter = order[i];
+            int j = i - 1;
+            while (j >= 0 && sampledMatches[order[j]] > sampledMatches[filter]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = filter;
+        }
+    }
+
+    private void addMetrics(long nanos) {
+        long evaluations = 0;
+        for (long filterRowsIn : rowsIn) {
+            evaluations += filterRowsIn;
+        }
+        for (int i = 0; i < predicates.length; i++) {
+            metrics[i].add(rowsIn[i], rowsOut[i], evaluations > 0 ? nanos * rowsIn[i] / evaluations : 0);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.upsolver.operations;
+
+import com.upsolver.components.FieldRow;
+
+import java.util.List;
+
+/**
+ * The filter condition compiled once from the filter parameters: the field index is parsed and the search value is
+ * lower cased, trimmed and unquoted once, so matching a row does not allocate.
+ * A field matches when its lower cased and trimmed value equals the search value. ASCII fields are compared
+ * character by character, fields with other characters are decoded and compared as strings.
+ * The predicate is immutable and can be shared between threads.
+ * There is no dictionary mode: the rows are filtered while the file is scanned, before they are buffered, so there
+ * are no dictionary codes to reuse. Indexed files skip the blocks without the value, see
+ * OperationsManager.getCandidateBlocks.
+ */
+public class FilterPredicate {
+    private static final int SEARCH_BY_INDEX_PARAMETER = 0;
+    private static final int SEARCH_BY_VALUE_PARAMETER = 1;
+    //the character compare matches String.toLowerCase only when the default locale lower cases ASCII letters to ASCII
+    private static final boolean ASCII_LOWER_CASE = "I".toLowerCase().equals("i");
+
+    private final int fieldIndex;
+    private final String searchValue;
+    private final boolean asciiSearchValue;
+
+    public FilterPredicate(int fieldIndex, String searchValue) {
+        this.fieldIndex = fieldIndex;
+        this.searchValue = searchValue.toLowerCase().trim().replaceAll("'", "");
+        this.asciiSearchValue = ASCII_LOWER_CASE && isAscii(this.searchValue);
+    }
+
+    /**
+     * @param parameters the filter parameters: index and 'value', throws IllegalArgumentException for any other parameter
+     * @returns FilterPredicate
+     */
+    public static FilterPredicate compile(List<String> parameters) {
+        if(parameters.size() > SEARCH_BY_VALUE_PARAMETER + 1) {
+            throw new IllegalArgumentException("Unknown parameter in filter operation: "
+                    + parameters.get(SEARCH_BY_VALUE_PARAMETER + 1).trim());
+        }
+        return new FilterPredicate(Integer.parseInt(parameters.get(SEARCH_BY_INDEX_PARAMETER).trim()),
+                parameters.get(SEARCH_BY_VALUE_PARAMETER));
+    }
+
+    public int getFieldIndex() {
+        return fieldIndex;
+    }
+
+    public String getSearchValue() {
+        return searchValue;
+    }
+
+    public boolean matches(String field) {
+        return field.toLowerCase().trim().equals(searchValue);
+    }
+
+    public boolean matches(FieldRow row) {
+        return matches(row, fieldIndex);
+    }
+
+    /**
+     * @param row
+     * @param index the index of the filter field in the row, when the row is a projection of the filtered rows
+     * @returns true if the field matches
+     */
+    public boolean matches(FieldRow row, int index) {
+        if(!asciiSearchValue) {
+            return matches(row.getField(index));
+        }
+        int end = row.getFieldLength(index);
+        int start = 0;
+        while (start < end && row.getFieldChar(index, start) <= ' ') {
+            start++;
+        }
+        while (end > start && row.getFieldChar(index, end - 1) <= ' ') {
+            end--;
+        }
+        if(end - start != searchValue.length()) {
+            //a non ASCII character may change its length when lower cased
+            return hasNonAscii(row, index, start, end) && matches(row.getField(index));
+        }
+        for (int i = start; i < end; i++) {
+            char c = row.getFieldChar(index, i);
+            if(c > 0x7f) {
+                return matches(row.getField(index));
+            }
+            if(toLowerCase(c) != searchValue.charAt(i - start)) {
+                return hasNonAscii(row, index, i + 1, end) && matches(row.getField(index));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the batch operation of the filter, it compacts the selection vector to the rows that match
+     * @returns BatchOperation
+     */
+    public BatchOperation createBatchOperation() {
+        return vector -> {
+            int column = vector.getColumn(fieldIndex);
+            FieldRow[] rows = vector.getRows();
+            int[] selection = vector.getSelection();
+            int selectedCount = vector.getSelectedCount();
+            int selected = 0;
+            for (int i = 0; i < selectedCount; i++) {
+                int slot = selection[i];
+                if(matches(rows[slot], column)) {
+                    selection[selected++] = slot;
+                }
+            }
+            vector.setSelectedCount(selected);
+        };
+    }
+
+    private boolean hasNonAscii(FieldRow row, int index, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if(row.getFieldChar(index, i) > 0x7f) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if(value.charAt(i) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
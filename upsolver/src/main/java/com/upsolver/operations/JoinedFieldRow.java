@@ -0,0 +1,71 @@
+package com.upsolver.operations;
+
+import com.upsolver.NumberParser;
+import com.upsolver.components.FieldRow;
+
+/**
+ * A view of a row joined with a row of a LookupTable: the fields of the row (as seen through the projection of the
+ * vector) followed by the fields of the lookup row, so the fields of the row are not decoded until they are needed.
+ * The views of a slot are reused by the next batch, the level is the number of joins before this one in the chain.
+ */
+public class JoinedFieldRow implements FieldRow {
+    private final int level;
+    private FieldRow row;
+    private int[] columns;
+    private int rowSize;
+    private LookupTable table;
+    private int lookupRow;
+
+    public JoinedFieldRow(int level) {
+        this.level = level;
+    }
+
+    /**
+     * @param row
+     * @param columns the projection of the row, null for all the fields
+     * @param table
+     * @param lookupRow
+     * @returns this row
+     */
+    public JoinedFieldRow setRow(FieldRow row, int[] columns, LookupTable table, int lookupRow) {
+        this.row = row;
+        this.columns = columns;
+        this.rowSize = columns == null ? row.size() : columns.length;
+        this.table = table;
+        this.lookupRow = lookupRow;
+        return this;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public int size() {
+        return rowSize + table.getFieldCount();
+    }
+
+    @Override
+    public String getField(int index) {
+        return index < rowSize ? row.getField(getColumn(index)) : table.getField(lookupRow, index - rowSize);
+    }
+
+    @Override
+    public int getFieldLength(int index) {
+        return index < rowSize ? row.getFieldLength(getColumn(index)) : getField(index).length();
+    }
+
+    @Override
+    public char getFieldChar(int index, int position) {
+        return index < rowSize ? row.getFieldChar(getColumn(index), position) : getField(index).charAt(position);
+    }
+
+    @Override
+    public boolean parseNumber(int index, NumberParser parser) {
+        return index < rowSize ? row.parseNumber(getColumn(index), parser) : parser.parse(getField(index));
+    }
+
+    private int getColumn(int index) {
+        return columns == null ? index : columns[index];
+    }
+}
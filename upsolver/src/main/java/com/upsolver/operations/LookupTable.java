@@ -0,0 +1,159 @@
+package com.upsolver.operations;
+
+import com.upsolver.components.FieldRow;
+import com.upsolver.components.KeyIndex;
+import com.upsolver.io.MappedCsvReader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The lookup side of the join operation: join(index, 'lookup.csv', lookupIndex) joins each row to the row of the
+ * lookup file whose field at lookupIndex equals the field of the row at index, rows without a match are dropped.
+ * The lookup file is loaded once into a hash table: the keys are kept in a KeyIndex (no object per key) and the other
+ * fields of each lookup row are dictionary encoded, each distinct value is kept once and the rows hold its code.
+ * A key that appears more than once keeps its first row, a missing field of a lookup row is empty.
+ * The table is not changed after it is loaded, so it is shared by the executors of all the parts without locking.
+ */
+public class LookupTable {
+    private static final int FILE_PARAMETER = 1;
+    private static final int LOOKUP_INDEX_PARAMETER = 2;
+    private static final int MISSING_CODE = -1;
+
+    private final KeyIndex keys;
+    private final String[] fieldNames;
+    //the codes of the fields of each row (fieldNames.length per row) in the dictionary
+    private final int[] codes;
+    private final String[] dictionary;
+
+    private LookupTable(KeyIndex keys, String[] fieldNames, int[] codes, String[] dictionary) {
+        this.keys = keys;
+        this.fieldNames = fieldNames;
+        this.codes = codes;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @param parameters the join parameters: index, 'lookup file' and lookupIndex
+     * @returns the table of the lookup file
+     * @throws IOException
+     */
+    public static LookupTable load(List<String> parameters) throws IOException {
+        return load(getFile(parameters), Integer.parseInt(parameters.get(LOOKUP_INDEX_PARAMETER).trim()));
+    }
+
+    /**
+     * @param parameters the join parameters: index, 'lookup file' and lookupIndex
+     * @returns the lookup file
+     */
+    public static File getFile(List<String> parameters) {
+        return new File(parameters.get(FILE_PARAMETER).trim().replaceAll("'", ""));
+    }
+
+    /**
+     * @param file a csv file with a header row
+     * @param lookupIndex the index of the key field in the lookup file
+     * @returns the table of the lookup file
+     * @throws IOException
+     */
+    public static LookupTable load(File file, int lookupIndex) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException("Lookup file " + file.getPath() + " not found");
+        }
+        try (MappedCsvReader reader = new MappedCsvReader(file)) {
+            if (!reader.next()) {
+                throw new IOException("Lookup file " + file.getPath() + " is empty");
+            }
+            String[] header = reader.getRow().toArray();
+            if (lookupIndex < 0 || lookupIndex >= header.length) {
+                throw new IllegalArgumentException("Invalid lookup index " + lookupIndex + " for lookup file " + file.getPath());
+            }
+            String[] fieldNames = withoutField(header, lookupIndex);
+            KeyIndex keys = new KeyIndex();
+            int[] codes = new int[64 * fieldNames.length];
+            List<String> dictionary = new ArrayList<>();
+            Map<String, Integer> dictionaryCodes = new HashMap<>();
+            while (reader.next()) {
+                FieldRow row = reader.getRow();
+                int size = keys.size();
+                if (row.size() <= lookupIndex || keys.getOrAdd(row, lookupIndex) < size) {
+                    continue;
+                }
+                if ((size + 1) * fieldNames.length > codes.length) {
+                    codes = Arrays.copyOf(codes, codes.length * 2);
+                }
+                for (int field = 0; field < fieldNames.length; field++) {
+                    int index = field < lookupIndex ? field : field + 1;
+                    String value = index < row.size() ? row.getField(index) : null;
+                    codes[size * fieldNames.length + field] = value == null ? MISSING_CODE
+                            : dictionaryCodes.computeIfAbsent(value, key -> {
+                                dictionary.add(key);
+                                return dictionary.size() - 1;
+                            });
+                }
+            }
+            return new LookupTable(keys, fieldNames, codes, dictionary.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * @param row
+     * @param index the index of the join field in the row
+     * @returns the lookup row of the field value, or -1 if there is no such lookup row
+     */
+    public int find(FieldRow row, int index) {
+        return keys.get(row, index);
+    }
+
+    /**
+     * @param key
+     * @returns the lookup row of the key, or -1 if there is no such lookup row
+     */
+    public int find(String key) {
+        return keys.get(key);
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * @returns the number of fields a lookup row adds to a joined row, the lookup fields without the key
+     */
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+
+    /**
+     * @returns the names of the fields a lookup row adds to a joined row
+     */
+    public String[] getFieldNames() {
+        return fieldNames.clone();
+    }
+
+    /**
+     * @param lookupRow
+     * @param field the index of the field among the added fields
+     * @returns the field value
+     */
+    public String getField(int lookupRow, int field) {
+        if (field >= fieldNames.length) {
+            throw new IndexOutOfBoundsException("Lookup row has no field " + field);
+        }
+        int code = codes[lookupRow * fieldNames.length + field];
+        return code == MISSING_CODE ? "" : dictionary[code];
+    }
+
+    private static String[] withoutField(String[] fields, int index) {
+        String[] result = new String[fields.length - 1];
+        System.arraycopy(fields, 0, result, 0, index);
+        System.arraycopy(fields, index + 1, result, index, fields.length - index - 1);
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+package com.upsolver.operations;
+
+import com.upsolver.components.ArrayFieldRow;
+import com.upsolver.components.FieldRow;
+import com.upsolver.metrics.ExecutionMetrics;
+import com.upsolver.metrics.OperatorMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The results of all the queries of a MultiQueryManager for a part of the file rows. Every group of queries
+ * has its shared filter operation (or none) and a partial result per query. The rows are collected to a RowVector,
+ * each batch passes the group filter once and the selected rows are passed to the queries of the group.
+ * A query that fails on a row is aborted without failing the other queries.
+ */
+public class MultiPartialResult implements PartialOperationsResult {
+    private final BatchOperation[] filterOperations;
+    private final List<List<OperatorMetrics>> filterMetrics;
+    private final ExecutionMetrics metrics;
+    private final PartialResult[][] groupResults;
+    private final List<PartialResult> partialResults = new ArrayList<>();
+    private final ArrayFieldRow arrayFieldRow = new ArrayFieldRow();
+    private final RowVector vector = new RowVector(RowVector.DEFAULT_CAPACITY);
+    private final RowVector groupVector = new RowVector(RowVector.DEFAULT_CAPACITY);
+
+    /**
+     * @param filterOperations the filter of each group, or null
+     * @param filterMetrics the metrics of the leading filter of each query of each group with a filter
+     * @param groupResults the partial result of each query of each group
+     * @param metrics the metrics of the scan
+     */
+    MultiPartialResult(List<BatchOperation> filterOperations, List<List<OperatorMetrics>> filterMetrics,
+                       List<List<PartialResult>> groupResults, ExecutionMetrics metrics) {
+        this.filterOperations = filterOperations.toArray(new BatchOperation[0]);
+        this.filterMetrics = filterMetrics;
+        this.metrics = metrics;
+        this.groupResults = new PartialResult[groupResults.size()][];
+        for (int i = 0; i < groupResults.size(); i++) {
+            this.groupResults[i] = groupResults.get(i).toArray(new PartialResult[0]);
+            partialResults.addAll(groupResults.get(i));
+        }
+    }
+
+    @Override
+    public void processDataRow(String[] rowData) {
+        processDataRow(arrayFieldRow.setFields(rowData));
+    }
+
+    @Override
+    public void processDataRow(FieldRow rowData) {
+        if(vector.add(rowData)) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if(vector.getSize() == 0) {
+            return;
+        }
+        for (int i = 0; i < groupResults.length; i++) {
+            if(isAborted(groupResults[i])) {
+                continue;
+            }
+            groupVector.copyFrom(vector);
+            if(filterOperations[i] != null) {
+                long start = System.nanoTime();
+                try {
+                    filterOperations[i].apply(groupVector);
+                } catch (RuntimeException e) {
+                    //the shared filter failed on a row, only the queries of the group fail
+                    for (PartialResult partialResult : groupResults[i]) {
+                        abort(partialResult, e);
+                    }
+                    continue;
+                }
+                long nanos = System.nanoTime() - start;
+                for (OperatorMetrics queryFilterMetrics : filterMetrics.get(i)) {
+                    queryFilterMetrics.add(vector.getSelectedCount(), groupVector.getSelectedCount(), nanos);
+                }
+                metrics.addExecuteNanos(nanos);
+            }
+            if(groupVector.getSelectedCount() > 0) {
+                for (PartialResult partialResult : groupResults[i]) {
+                    processVector(partialResult, groupVector);
+                }
+            }
+        }
+        vector.clear();
+    }
+
+    private void processVector(PartialResult partialResult, RowVector rowVector) {
+        try {
+            partialResult.processSharedVector(rowVector);
+        } catch (RuntimeException e) {
+            abort(partialResult, e);
+        }
+    }
+
+    private static void abort(PartialResult partialResult, RuntimeException e) {
+        if(!partialResult.isAborted()) {
+            System.out.println("Query failed on row: " + e);
+            partialResult.abort();
+        }
+    }
+
+    //true if every query of the group failed, the group filter no longer runs
+    private static boolean isAborted(PartialResult[] group) {
+        for (PartialResult partialResult : group) {
+            if(!partialResult.isAborted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        vector.clear();
+        for (PartialResult partialResult : partialResults) {
+            partialResult.close();
+        }
+    }
+
+    //the partial result of a query, in the order of the groups, after the collected rows are processed
+    PartialResult getPartialResult(int index) {
+        flush();
+        return partialResults.get(index);
+    }
+}
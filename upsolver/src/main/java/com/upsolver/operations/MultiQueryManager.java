@@ -0,0 +1,242 @@
+package com.upsolver.operations;
+
+import com.upsolver.components.FieldRow;
+import com.upsolver.io.OutputFormat;
+import com.upsolver.metrics.ExecutionMetrics;
+import com.upsolver.metrics.OperatorMetrics;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs many operations chains over a single scan of the file, each row is read and split once and passed to the
+ * operations of every query. Queries that start with the same filter are grouped, so the filter is evaluated once
+ * per row for the whole group. The result of each query is saved to its own csv file.
+ */
+public class MultiQueryManager implements OperationsProcessor {
+    private final List<String> operationsStrs;
+    private final List<OperationsManager> queries = new ArrayList<>();
+    private final List<FilterPredicate> groupFilters = new ArrayList<>();
+    private final List<List<OperationsManager>> groups = new ArrayList<>();
+    private final List<List<OperatorMetrics>> groupFilterMetrics = new ArrayList<>();
+    private final ExecutionMetrics metrics;
+    private boolean headerProcessed;
+    private MultiPartialResult result;
+
+    /**
+     * Constructor for MultiQueryManager, creates an OperationsManager for every operations chain
+     * @param operationsStrs
+     */
+    public MultiQueryManager(List<String> operationsStrs) {
+        this(operationsStrs, true);
+    }
+
+    /**
+     * @param operationsStrs
+     * @param streamingAggregation see OperationsManager
+     */
+    public MultiQueryManager(List<String> operationsStrs, boolean streamingAggregation) {
+        this.operationsStrs = operationsStrs;
+        this.metrics = new ExecutionMetrics(String.join("; ", operationsStrs));
+        for (int i = 0; i < operationsStrs.size(); i++) {
+            OperationsManager query = new OperationsManager(operationsStrs.get(i), streamingAggregation);
+            query.setOutputFileSuffix("_query" + (i + 1));
+            queries.add(query);
+            metrics.addChild(query.getMetrics());
+        }
+    }
+
+    /**
+     * The first row of the file holds the field names, it is validated by each query and the valid queries
+     * are grouped by their leading filter.
+     * @param rowData
+     * @return false if the process should stop
+     */
+    @Override
+    public boolean processDataRow(String[] rowData) {
+        if(!headerProcessed) {
+            return processHeaderRow(rowData);
+        } else if(result != null) {
+            result.processDataRow(rowData);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean processDataRow(FieldRow rowData) {
+        if(!headerProcessed) {
+            return processHeaderRow(rowData.toArray());
+        } else if(result != null) {
+            result.processDataRow(rowData);
+        }
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        if(result != null) {
+            result.flush();
+        }
+    }
+
+    private boolean processHeaderRow(String[] rowData) {
+        headerProcessed = true;
+        metrics.start();
+        Map<String, List<OperationsManager>> filterGroups = new LinkedHashMap<>();
+        Map<String, FilterPredicate> filters = new LinkedHashMap<>();
+        List<OperationsManager> unfiltered = new ArrayList<>();
+        for (OperationsManager query : queries) {
+            if(!query.hasOperations() || !query.processHeaderRow(rowData)) {
+                continue;
+            }
+            List<String> filterParameters = query.getLeadingFilterParameters();
+            if(filterParameters == null) {
+                unfiltered.add(query);
+                continue;
+            }
+            FilterPredicate filter = FilterPredicate.compile(filterParameters);
+            String key = filter.getFieldIndex() + "," + filter.getSearchValue();
+            filters.putIfAbsent(key, filter);
+            filterGroups.computeIfAbsent(key, k -> new ArrayList<>()).add(query);
+        }
+        for (Map.Entry<String, List<OperationsManager>> group : filterGroups.entrySet()) {
+            groupFilters.add(filters.get(group.getKey()));
+            groups.add(group.getValue());
+            //the leading filter of the queries of the group is run once for the group and counted for each query
+            List<OperatorMetrics> filterMetrics = new ArrayList<>();
+            for (OperationsManager query : group.getValue()) {
+                filterMetrics.add(query.getLeadingFilterMetrics());
+            }
+            groupFilterMetrics.add(filterMetrics);
+        }
+        if(!unfiltered.isEmpty()) {
+            groupFilters.add(null);
+            groups.add(unfiltered);
+            groupFilterMetrics.add(null);
+        }
+        if(groups.isEmpty()) {
+            return false;
+        }
+        result = createPartialResult();
+        return true;
+    }
+
+    /**
+     * Creates an empty result for processing a part of the file rows, with a partial result for every query
+     * @return MultiPartialResult
+     */
+    @Override
+    public MultiPartialResult createPartialResult() {
+        List<BatchOperation> filterOperations = new ArrayList<>();
+        List<List<PartialResult>> groupResults = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            FilterPredicate filter = groupFilters.get(i);
+            filterOperations.add(filter != null ? filter.createBatchOperation() : null);
+            List<PartialResult> partialResults = new ArrayList<>();
+            for (OperationsManager query : groups.get(i)) {
+                //the leading filter of the query is evaluated by the group
+                partialResults.add(query.createPartialResult(filter != null ? 1 : 0));
+            }
+            groupResults.add(partialResults);
+        }
+        return new MultiPartialResult(filterOperations, groupFilterMetrics, groupResults, metrics);
+    }
+
+    @Override
+    public void mergePartialResult(PartialOperationsResult partialResult) {
+        MultiPartialResult other = (MultiPartialResult) partialResult;
+        int index = 0;
+        for (List<OperationsManager> group : groups) {
+            for (OperationsManager query : group) {
+                query.mergePartialResult(other.getPartialResult(index++));
+            }
+        }
+    }
+
+    /**
+     * @return the most leading fields of the rows that a query reads, or -1 if a query reads all the fields
+     */
+    @Override
+    public int getRequiredFieldCount() {
+        int requiredFieldCount = 0;
+        for (List<OperationsManager> group : groups) {
+            for (OperationsManager query : group) {
+                if(query.getRequiredFieldCount() < 0) {
+                    return -1;
+                }
+                requiredFieldCount = Math.max(requiredFieldCount, query.getRequiredFieldCount());
+            }
+        }
+        return requiredFieldCount > 0 ? requiredFieldCount : -1;
+    }
+
+    /**
+     * @return the metrics of the scan, with the metrics of every query as children
+     */
+    @Override
+    public ExecutionMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void setOutputDirectory(String outputDirectory) {
+        for (OperationsManager query : queries) {
+            query.setOutputDirectory(outputDirectory);
+        }
+    }
+
+    @Override
+    public void setOutputFormat(OutputFormat outputFormat) {
+        for (OperationsManager query : queries) {
+            query.setOutputFormat(outputFormat);
+        }
+    }
+
+    @Override
+    public void setOutputCharset(Charset outputCharset) {
+        for (OperationsManager query : queries) {
+            query.setOutputCharset(outputCharset);
+        }
+    }
+
+    @Override
+    public void setIncrementalOutput(boolean incrementalOutput) {
+        for (OperationsManager query : queries) {
+            query.setIncrementalOutput(incrementalOutput);
+        }
+    }
+
+    /**
+     * Merges the rows that were processed on this manager and finalizes every query in the given order
+     */
+    @Override
+    public void finalizeProcess() {
+        if(result != null) {
+            mergePartialResult(result);
+            result = null;
+        }
+        for (int i = 0; i < queries.size(); i++) {
+            System.out.println("Query " + (i + 1) + ": " + operationsStrs.get(i));
+            queries.get(i).finalizeProcess();
+        }
+        metrics.finish();
+    }
+
+    @Override
+    public void abortProcess() {
+        try {
+            if(result != null) {
+                result.close();
+                result = null;
+            }
+            for (OperationsManager query : queries) {
+                query.abortProcess();
+            }
+        } finally {
+            metrics.finish();
+        }
+    }
+}
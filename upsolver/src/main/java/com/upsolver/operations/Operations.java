@@ -1,9 +1,25 @@
 package com.upsolver.operations;
 
+import com.upsolver.NumberParser;
+import com.upsolver.components.ArrayFieldRow;
+import com.upsolver.components.ColumnarMatrix;
+import com.upsolver.components.DoubleColumn;
+import com.upsolver.components.FieldRow;
 import com.upsolver.components.Matrix;
 import com.upsolver.components.OperationContent;
 import com.upsolver.components.Row;
+import com.upsolver.components.SortOrder;
+import com.upsolver.operations.accumulators.Accumulator;
+import com.upsolver.operations.accumulators.DistinctCountAccumulator;
+import com.upsolver.operations.accumulators.GroupByAccumulator;
+import com.upsolver.operations.accumulators.QuantileAccumulator;
+import com.upsolver.operations.accumulators.SumAccumulator;
+import com.upsolver.operations.accumulators.TopKAccumulator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.OptionalDouble;
@@ -24,10 +40,13 @@ public class Operations {
      */
     public static Function<OperationContent, Matrix> max = input -> {
         try {
-            OptionalDouble min = input.getMatrix().getRows()
+            NumberParser parser = new NumberParser();
+            OptionalDouble min = input.getMatrix() instanceof ColumnarMatrix
+                    ? max(getColumnValues(input))
+                    : input.getMatrix().getRows()
                     .stream()
                     .filter(o -> o.getRowField(SEARCH_BY_INDEX_PARAMETER) != null)
-                    .mapToDouble(r -> Double.parseDouble(r.getRowField(SEARCH_BY_INDEX_PARAMETER))).max();
+                    .mapToDouble(r -> parseField(r, parser)).max();
             if(min.isPresent()) {
                 Row row = Row.createRow(String.valueOf(min.getAsDouble()));
                 return new Matrix(Collections.singletonList(row));
@@ -50,10 +69,13 @@ public class Operations {
      */
     public static Function<OperationContent, Matrix> min = input -> {
         try {
-            OptionalDouble min = input.getMatrix().getRows()
+            NumberParser parser = new NumberParser();
+            OptionalDouble min = input.getMatrix() instanceof ColumnarMatrix
+                    ? min(getColumnValues(input))
+                    : input.getMatrix().getRows()
                     .stream()
                     .filter(o -> o.getRowField(SEARCH_BY_INDEX_PARAMETER) != null)
-                    .mapToDouble(r -> Double.parseDouble(r.getRowField(SEARCH_BY_INDEX_PARAMETER))).min();
+                    .mapToDouble(r -> parseField(r, parser)).min();
             if(min.isPresent()) {
                 Row row = Row.createRow(String.valueOf(min.getAsDouble()));
                 return new Matrix(Collections.singletonList(row));
@@ -76,10 +98,13 @@ public class Operations {
      */
     public static Function<OperationContent, Matrix> avg = input -> {
         try {
-            OptionalDouble min = input.getMatrix().getRows()
+            NumberParser parser = new NumberParser();
+            OptionalDouble min = input.getMatrix() instanceof ColumnarMatrix
+                    ? avg(getColumnValues(input))
+                    : input.getMatrix().getRows()
                     .stream()
                     .filter(o -> o.getRowField(SEARCH_BY_INDEX_PARAMETER) != null)
-                    .mapToDouble(r -> Double.parseDouble(r.getRowField(SEARCH_BY_INDEX_PARAMETER))).average();
+                    .mapToDouble(r -> parseField(r, parser)).average();
             if(min.isPresent()) {
                 Row row = Row.createRow(String.valueOf(min.getAsDouble()));
                 return new Matrix(Collections.singletonList(row));
@@ -102,10 +127,13 @@ public class Operations {
      */
     public static Function<OperationContent, Matrix> sum = input -> {
         try {
-            Double min = input.getMatrix().getRows()
+            NumberParser parser = new NumberParser();
+            Double min = input.getMatrix() instanceof ColumnarMatrix
+                    ? SumAccumulator.sum(getColumnValues(input))
+                    : input.getMatrix().getRows()
                     .stream()
                     .filter(o -> o.getRowField(SEARCH_BY_INDEX_PARAMETER) != null)
-                    .mapToDouble(r -> Double.parseDouble(r.getRowField(SEARCH_BY_INDEX_PARAMETER))).sum();
+                    .mapToDouble(r -> parseField(r, parser)).sum();
             Row row = Row.createRow(String.valueOf(min));
             return new Matrix(Collections.singletonList(row));
         } catch (Exception e) {
@@ -124,12 +152,19 @@ public class Operations {
      */
     public static Function<OperationContent, Matrix> ceil = input -> {
         try {
+            NumberParser parser = new NumberParser();
+            if(input.getMatrix() instanceof ColumnarMatrix) {
+                DoubleColumn column = new DoubleColumn();
+                for (double value : getColumnValues(input)) {
+                    column.add(Math.ceil(value));
+                }
+                return ColumnarMatrix.fromColumn(column);
+            }
             List<Row> rows = input.getMatrix()
                     .getRows()
                     .stream()
                     .filter(o -> o.getRowField(SEARCH_BY_INDEX_PARAMETER) != null)
-                    .map(o -> Row.createRow(String.valueOf(
-                            Math.ceil(Double.parseDouble(o.getRowField(SEARCH_BY_INDEX_PARAMETER))))))
+                    .map(o -> Row.createRow(String.valueOf(Math.ceil(parseField(o, parser)))))
                     .collect(Collectors.toList());
             return new Matrix(rows);
         } catch (Exception e) {
@@ -164,19 +199,264 @@ public class Operations {
      *
      */
     public static Function<OperationContent, Matrix> filter = input -> {
-        int fieldIndexParameter = Integer.parseInt(input.getParameters().get(SEARCH_BY_INDEX_PARAMETER));
-        String searchValueParameter = input.getParameters().get(SEARCH_BY_VALUE_PARAMETER)
-                .toLowerCase()
-                .trim()
-                .replaceAll("'", "");
+        FilterPredicate predicate = FilterPredicate.compile(input.getParameters());
 
         List<Row> collect = input.getMatrix()
                 .getRows()
                 .stream()
-                .filter(o -> o.getRowField(fieldIndexParameter).toLowerCase().trim()
-                        .equals(searchValueParameter))
+                .filter(o -> predicate.matches(o.getRowField(predicate.getFieldIndex())))
                 .collect(Collectors.toList());
         return new Matrix(collect);
     };
 
+    /**
+     * The join transformation function takes OperationContent = matrix and parameters (index, 'lookup file', lookupIndex)
+     * and retrieves a matrix of the rows that have a matching lookup row, each one followed by the fields of its lookup
+     * row, see LookupTable
+     * @param OperationContent
+     * @returns Matrix
+     *
+     */
+    public static Function<OperationContent, Matrix> join = input -> {
+        LookupTable table = loadLookupTable(input.getParameters());
+        int fieldIndex = Integer.parseInt(input.getParameters().get(SEARCH_BY_INDEX_PARAMETER).trim());
+        List<Row> rows = new ArrayList<>();
+        for (Row row : input.getMatrix().getRows()) {
+            int lookupRow = fieldIndex < row.getData().size() ? table.find(row.getRowField(fieldIndex)) : -1;
+            if(lookupRow >= 0) {
+                List<String> data = new ArrayList<>(row.getData());
+                for (int i = 0; i < table.getFieldCount(); i++) {
+                    data.add(table.getField(lookupRow, i));
+                }
+                rows.add(new Row(data));
+            }
+        }
+        return new Matrix(rows);
+    };
+
+    /**
+     * The groupby aggregation function takes OperationContent = matrix and parameters (keyIdx, valueIdx, agg)
+     * and retrieves a matrix with a row per distinct value of the key field, see GroupByAccumulator
+     * @param OperationContent
+     * @returns Matrix
+     *
+     */
+    public static Function<OperationContent, Matrix> groupBy = input -> {
+        GroupByAccumulator accumulator = new GroupByAccumulator(input.getParameters());
+        ArrayFieldRow fieldRow = new ArrayFieldRow();
+        for (Row row : input.getMatrix().getRows()) {
+            accumulator.accumulate(fieldRow.setFields(row.getData().toArray(new String[0])));
+        }
+        return accumulator.getResult();
+    };
+
+    /**
+     * The top aggregation function takes OperationContent = matrix and parameters (k) and retrieves a matrix
+     * with the k largest values of the first field (SEARCH_BY_INDEX_PARAMETER), from the largest down
+     * @param OperationContent
+     * @returns Matrix
+     *
+     */
+    public static Function<OperationContent, Matrix> top = input ->
+            aggregate(new TopKAccumulator(input.getParameters()), input.getMatrix());
+
+    /**
+     * The distinct aggregation function takes OperationContent = matrix and optional parameters (exact)
+     * and retrieves a matrix with one row that holds the number of distinct values of the first field
+     * (SEARCH_BY_INDEX_PARAMETER), estimated by a HyperLogLog sketch unless exact is given
+     * @param OperationContent
+     * @returns Matrix
+     *
+     */
+    public static Function<OperationContent, Matrix> distinct = input ->
+            aggregate(new DistinctCountAccumulator(input.getParameters()), input.getMatrix());
+
+    /**
+     * The percentile aggregation function takes OperationContent = matrix and parameters (p, optional exact)
+     * and retrieves a matrix with one row that holds the p'th percentile of the first field
+     * (SEARCH_BY_INDEX_PARAMETER), estimated by a KLL sketch unless exact is given
+     * @param OperationContent
+     * @returns Matrix
+     *
+     */
+    public static Function<OperationContent, Matrix> percentile = input ->
+            aggregate(new QuantileAccumulator(input.getParameters()), input.getMatrix());
+
+    /**
+     * The sort function takes OperationContent = matrix and parameters (index, optional asc|desc, optional limit)
+     * and retrieves a matrix with the rows sorted by the field at the index, only the first limit rows when a limit
+     * is given. See SortOrder for the order of the keys.
+     * @param OperationContent
+     * @returns Matrix
+     *
+     */
+    public static Function<OperationContent, Matrix> sort = input -> {
+        SortOrder sortOrder = SortOrder.compile(input.getParameters());
+        List<Row> rows = input.getMatrix().getRows();
+        SortOrder.Keys keys = sortOrder.createKeys(rows.size());
+        if(input.getMatrix() instanceof ColumnarMatrix) {
+            keys.setAll((ColumnarMatrix) input.getMatrix());
+        } else {
+            for (int i = 0; i < rows.size(); i++) {
+                keys.set(i, rows.get(i));
+            }
+        }
+        int[] order = keys.sort(rows.size());
+        int count = sortOrder.hasLimit() ? Math.min(sortOrder.getLimit(), order.length) : order.length;
+        List<Row> sortedRows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sortedRows.add(rows.get(order[i]));
+        }
+        return new Matrix(sortedRows);
+    };
+
+    private static LookupTable loadLookupTable(List<String> parameters) {
+        try {
+            return LookupTable.load(parameters);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load the lookup file", e);
+        }
+    }
+
+    //runs the accumulator of an aggregation over the first field of the matrix rows
+    private static Matrix aggregate(Accumulator accumulator, Matrix matrix) {
+        for (Row row : matrix.getRows()) {
+            accumulator.accumulate(row.getRowField(SEARCH_BY_INDEX_PARAMETER));
+        }
+        return accumulator.getResult();
+    }
+
+    //parses the first field (SEARCH_BY_INDEX_PARAMETER) of the row, throws NumberFormatException if it is not a number
+    private static double parseField(Row row, NumberParser parser) {
+        if(!parser.parse(row.getRowField(SEARCH_BY_INDEX_PARAMETER))) {
+            throw new NumberFormatException(row.getRowField(SEARCH_BY_INDEX_PARAMETER));
+        }
+        return parser.getDouble();
+    }
+
+    //the numeric values of the first field (SEARCH_BY_INDEX_PARAMETER) of a columnar matrix
+    private static double[] getColumnValues(OperationContent input) {
+        return ((ColumnarMatrix) input.getMatrix()).getDoubleValues(SEARCH_BY_INDEX_PARAMETER);
+    }
+
+    private static OptionalDouble max(double[] values) {
+        if(values.length == 0) {
+            return OptionalDouble.empty();
+        }
+        double max = values[0];
+        for (int i = 1; i < values.length; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return OptionalDouble.of(max);
+    }
+
+    private static OptionalDouble min(double[] values) {
+        if(values.length == 0) {
+            return OptionalDouble.empty();
+        }
+        double min = values[0];
+        for (int i = 1; i < values.length; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return OptionalDouble.of(min);
+    }
+
+    private static OptionalDouble avg(double[] values) {
+        return values.length == 0 ? OptionalDouble.empty() : OptionalDouble.of(SumAccumulator.sum(values) / values.length);
+    }
+
+    /**
+     * Compiles the pluck transformation for a batch of rows, the field index is parsed once.
+     * The compiled operation projects the rows to the SEARCH_BY_INDEX_PARAMETER’th field, so the rows are not
+     * copied and the field is not decoded by pluck.
+     * @param parameters
+     * @returns BatchOperation
+     *
+     */
+    public static Function<List<String>, BatchOperation> pluckBatch = parameters -> {
+        int fieldIndex = Integer.parseInt(parameters.get(SEARCH_BY_INDEX_PARAMETER).trim());
+        return vector -> vector.project(fieldIndex);
+    };
+
+    /**
+     * Compiles the filter transformation for a batch of rows, see FilterPredicate.
+     * The compiled operation keeps the rows whose SEARCH_BY_INDEX_PARAMETER’th field is equal to
+     * SEARCH_BY_VALUE_PARAMETER in the selection vector.
+     * @param parameters
+     * @returns BatchOperation
+     *
+     */
+    public static Function<List<String>, BatchOperation> filterBatch = parameters ->
+            FilterPredicate.compile(parameters).createBatchOperation();
+
+    /**
+     * Compiles the join transformation for a batch of rows, the lookup file is loaded by the compiled operation,
+     * see compileJoin to share a loaded table
+     * @param parameters
+     * @returns BatchOperation
+     *
+     */
+    public static Function<List<String>, BatchOperation> joinBatch = parameters ->
+            compileJoin(loadLookupTable(parameters), Integer.parseInt(parameters.get(SEARCH_BY_INDEX_PARAMETER).trim()));
+
+    /**
+     * Compiles the join of the SEARCH_BY_INDEX_PARAMETER'th field with a loaded lookup table, the compiled operation
+     * keeps the rows that have a matching lookup row and replaces them with the joined rows.
+     * The table is only read, the operations of all the parts can share it.
+     * @param table
+     * @param fieldIndex
+     * @returns BatchOperation
+     */
+    public static BatchOperation compileJoin(LookupTable table, int fieldIndex) {
+        return vector -> {
+            int column = vector.getColumn(fieldIndex);
+            FieldRow[] rows = vector.getRows();
+            int[] selection = vector.getSelection();
+            int selectedCount = vector.getSelectedCount();
+            int selected = 0;
+            for (int i = 0; i < selectedCount; i++) {
+                int slot = selection[i];
+                int lookupRow = rows[slot].size() > column ? table.find(rows[slot], column) : -1;
+                if(lookupRow >= 0) {
+                    vector.setJoinedRow(slot, table, lookupRow);
+                    selection[selected++] = slot;
+                }
+            }
+            vector.setSelectedCount(selected);
+            vector.clearProjection();
+        };
+    }
+
+    /**
+     * Compiles the ceil function for a batch of rows, the compiled operation replaces each selected row with a row
+     * with the rounded up value of the first field (SEARCH_BY_INDEX_PARAMETER).
+     * Throws NumberFormatException if the field is not a number, which fails the whole process.
+     * @param parameters
+     * @returns BatchOperation
+     *
+     */
+    public static Function<List<String>, BatchOperation> ceilBatch = parameters -> {
+        NumberParser parser = new NumberParser();
+        return vector -> {
+            int column = vector.getColumn(SEARCH_BY_INDEX_PARAMETER);
+            FieldRow[] rows = vector.getRows();
+            int[] selection = vector.getSelection();
+            int selectedCount = vector.getSelectedCount();
+            int selected = 0;
+            for (int i = 0; i < selectedCount; i++) {
+                int slot = selection[i];
+                if(!rows[slot].parseNumber(column, parser)) {
+                    if(rows[slot].getField(column) == null) {
+                        continue;
+                    }
+                    throw new NumberFormatException("Invalid CEIL operation on field 0");
+                }
+                vector.setComputedField(slot, String.valueOf(Math.ceil(parser.getDouble())));
+                selection[selected++] = slot;
+            }
+            vector.setSelectedCount(selected);
+            vector.clearProjection();
+        };
+    };
+
 }
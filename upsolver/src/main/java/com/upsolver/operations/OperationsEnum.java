@@ -2,26 +2,48 @@ package com.upsolver.operations;
 
 import com.upsolver.components.Matrix;
 import com.upsolver.components.OperationContent;
+import com.upsolver.operations.accumulators.Accumulator;
+import com.upsolver.operations.accumulators.AvgAccumulator;
+import com.upsolver.operations.accumulators.DistinctCountAccumulator;
+import com.upsolver.operations.accumulators.GroupByAccumulator;
+import com.upsolver.operations.accumulators.MaxAccumulator;
+import com.upsolver.operations.accumulators.MinAccumulator;
+import com.upsolver.operations.accumulators.QuantileAccumulator;
+import com.upsolver.operations.accumulators.SumAccumulator;
+import com.upsolver.operations.accumulators.TopKAccumulator;
+import com.upsolver.operations.accumulators.TopRowsAccumulator;
 
+import java.util.List;
 import java.util.function.Function;
 
 public enum OperationsEnum {
-    SUM ("sum", Operations.sum, false),
-    AVG("avg", Operations.avg, false),
-    MIN("min", Operations.min, false),
-    MAX("max", Operations.max, false),
-    CEIL("ceil", Operations.ceil, false),
-    PLUCK("pluck", Operations.pluck, true),
-    FILTER("filter", Operations.filter, true);
+    SUM ("sum", Operations.sum, false, parameters -> new SumAccumulator(), null),
+    AVG("avg", Operations.avg, false, parameters -> new AvgAccumulator(), null),
+    MIN("min", Operations.min, false, parameters -> new MinAccumulator(), null),
+    MAX("max", Operations.max, false, parameters -> new MaxAccumulator(), null),
+    GROUPBY("groupby", Operations.groupBy, false, GroupByAccumulator::new, null),
+    TOP("top", Operations.top, false, TopKAccumulator::new, null),
+    DISTINCT("distinct", Operations.distinct, false, DistinctCountAccumulator::new, null),
+    PERCENTILE("percentile", Operations.percentile, false, QuantileAccumulator::new, null),
+    SORT("sort", Operations.sort, false, TopRowsAccumulator::new, null),
+    CEIL("ceil", Operations.ceil, false, null, Operations.ceilBatch),
+    PLUCK("pluck", Operations.pluck, true, null, Operations.pluckBatch),
+    FILTER("filter", Operations.filter, true, null, Operations.filterBatch),
+    JOIN("join", Operations.join, true, null, Operations.joinBatch);
 
     private final String name;
     private final Function<OperationContent, Matrix> function;
     private final boolean isTransformation;
+    private final Function<List<String>, Accumulator> accumulatorFactory;
+    private final Function<List<String>, BatchOperation> batchOperationFactory;
 
-    OperationsEnum(String name, Function<OperationContent, Matrix> function, boolean isTransformation) {
+    OperationsEnum(String name, Function<OperationContent, Matrix> function, boolean isTransformation,
+                   Function<List<String>, Accumulator> accumulatorFactory, Function<List<String>, BatchOperation> batchOperationFactory) {
         this.name = name;
         this.function = function;
         this.isTransformation = isTransformation;
+        this.accumulatorFactory = accumulatorFactory;
+        this.batchOperationFactory = batchOperationFactory;
     }
 
     public String getName() {
@@ -35,4 +57,27 @@ public enum OperationsEnum {
     public Function<OperationContent, Matrix> getFunction() {
         return function;
     }
+
+    //aggregations that collapse the matrix to a single row (or a row per group) can be computed incrementally by an accumulator
+    public boolean hasAccumulator() {
+        return accumulatorFactory != null;
+    }
+
+    public Accumulator createAccumulator(List<String> parameters) {
+        return accumulatorFactory.apply(parameters);
+    }
+
+    //the first parameter of pluck, filter, groupby, sort and join is the index of a field
+    public boolean hasFieldIndexParameter() {
+        return this == PLUCK || this == FILTER || this == GROUPBY || this == SORT || this == JOIN;
+    }
+
+    //transformations and row wise aggregations can be compiled to run on a batch of rows
+    public boolean hasBatchOperation() {
+        return batchOperationFactory != null;
+    }
+
+    public BatchOperation compileBatchOperation(List<String> parameters) {
+        return batchOperationFactory.apply(parameters);
+    }
 }
@@ -1,22 +1,61 @@
 package com.upsolver.operations;
 
+import com.upsolver.components.FieldRow;
 import com.upsolver.components.Matrix;
 import com.upsolver.components.OperationContent;
 import com.upsolver.components.Row;
+import com.upsolver.components.SortOrder;
+import com.upsolver.index.ColumnIndex;
+import com.upsolver.index.ColumnStatistics;
+import com.upsolver.io.OutputFormat;
+import com.upsolver.io.ResultWriter;
+import com.upsolver.io.SpillBudget;
+import com.upsolver.io.SpillingRowBuffer;
+import com.upsolver.metrics.ExecutionMetrics;
+import com.upsolver.metrics.OperatorMetrics;
+import com.upsolver.operations.accumulators.NumericAccumulator;
 
-import java.io.FileWriter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
-public class OperationsManager {
-    private Map<OperationsEnum, List<String>> operations = new LinkedHashMap<>();
+public class OperationsManager implements OperationsProcessor {
+    private List<Map.Entry<OperationsEnum, List<String>>> operations = new ArrayList<>();
     private List<String> fieldList = new ArrayList<>();
-    private Matrix matrix = new Matrix();
+    private List<Map.Entry<OperationsEnum, List<String>>> rowOperations = new ArrayList<>();
+    private Map.Entry<OperationsEnum, List<String>> accumulatorOperation;
+    private Map.Entry<OperationsEnum, List<String>> sortOperation;
+    private SortOrder rowSortOrder;
+    //the tables of the join operations, loaded once and shared by the partial results
+    private final Map<Map.Entry<OperationsEnum, List<String>>, LookupTable> lookupTables = new IdentityHashMap<>();
+    private List<Map.Entry<OperationsEnum, List<String>>> finalizeOperations = new ArrayList<>();
+    private PartialResult result;
+    private String outputDirectory = DEFAULT_OUTPUT_DIRECTORY;
+    private String outputFileSuffix = "";
+    private SpillBudget spillBudget = new SpillBudget();
+    private OutputFormat outputFormat = OutputFormat.CSV;
+    private Charset outputCharset = Charset.defaultCharset();
+    private boolean incrementalOutput;
+    private ResultWriter resultWriter;
+    private ColumnStatistics columnStatistics;
+    private final ExecutionMetrics metrics;
+    private final List<OperatorMetrics> rowOperationMetrics = new ArrayList<>();
+    private OperatorMetrics accumulatorMetrics;
+    private OperatorMetrics sortMetrics;
+    private final List<OperatorMetrics> finalizeOperationMetrics = new ArrayList<>();
+    private int requiredFieldCount = -1;
+    private boolean finalized;
+    private String validationError;
 
+    private static final String DEFAULT_OUTPUT_DIRECTORY = "c:/tmp/";
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy_MM_dd_HH_mm");
 
     /**
@@ -24,171 +63,821 @@ public class OperationsManager {
      * @param operationsStr
      */
     public OperationsManager(String operationsStr) {
+        this(operationsStr, true);
+    }
+
+    /**
+     * Constructor for OperationsManager, creates the operations list for the process
+     * @param operationsStr
+     * @param streamingAggregation when true and the operations contain an aggregation that collapses the matrix
+     *                             (sum, avg, min, max) the aggregation is computed while the rows are processed
+     *                             instead of buffering all the rows in memory
+     */
+    public OperationsManager(String operationsStr, boolean streamingAggregation) {
         System.out.println("Processing operations for: " + operationsStr);
+        metrics = new ExecutionMetrics(operationsStr);
         if(operationsStr != null && !operationsStr.isEmpty()) {
-            convertOperationsStrToList(operationsStr);
-            if(operations.isEmpty()) {
-                System.out.println("No operations found");
+            try {
+                convertOperationsStrToList(operationsStr);
+                if(validationError != null) {
+                    return;
+                }
+                if(operations.isEmpty()) {
+                    setValidationError("No operations found");
+                } else {
+                    compileOperations(streamingAggregation);
+                }
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                //the operations are not compiled, the process has no result
+                setValidationError("Invalid parameter in operations: " + e.getMessage());
             }
         } else {
-            System.out.println("No operations found");
+            setValidationError("No operations found");
         }
     }
 
     /**
-     * Each row of the file is converted to a matrix, transformation operations need to be performed at this point
-     * since they produce a matrix with a different layout, so each row is processed and added to the final matrix result.
+     * The rows of the file are collected to batches that are passed through the batch executor that was compiled from
+     * the transformation operations, since they produce rows with a different layout. The transformed rows are either
+     * accumulated by the streaming aggregation or added to the final matrix result.
+     * The first row of the file holds the field names and is used to validate the operations parameters.
      * @param rowData
-     * @return
+     * @return false if the process should stop
      */
+    @Override
     public boolean processDataRow(String[] rowData) {
         if(this.fieldList.isEmpty()) {
-            this.fieldList.addAll(Arrays.asList(rowData));
-            //validate input parameters
-            return checkNumberOfFieldsInParams();
-        } else if(this.operations.entrySet().stream().findFirst().isPresent()) {
-            Matrix matrix = new Matrix();
-            matrix.addRow(Row.createRow(rowData));
-            this.matrix.join(runTransformationOperations(matrix));
+            return processHeaderRow(rowData);
+        } else if(result != null) {
+            result.processDataRow(rowData);
+        }
+        return true;
+    }
+
+    /**
+     * Runs the operations on the rows that were collected for the next batch, so the rows that were passed to
+     * processDataRow are no longer used
+     */
+    @Override
+    public void flush() {
+        if(result != null) {
+            result.flush();
+        }
+    }
+
+    /**
+     * Sets the directory the result matrix file is saved to, c:/tmp/ by default
+     * @param outputDirectory
+     */
+    @Override
+    public void setOutputDirectory(String outputDirectory) {
+        this.outputDirectory = outputDirectory.endsWith("/") ? outputDirectory : outputDirectory + "/";
+    }
+
+    /**
+     * Sets the format of the result file, csv by default
+     * @param outputFormat
+     */
+    @Override
+    public void setOutputFormat(OutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * Sets the charset of the csv result file, the default charset by default
+     * @param outputCharset
+     */
+    @Override
+    public void setOutputCharset(Charset outputCharset) {
+        this.outputCharset = outputCharset;
+    }
+
+    /**
+     * When the operations do not end with an aggregation, the result rows are written to the result file while the
+     * rows of the file are processed (and while the parts of the file are merged), instead of being kept until
+     * finalizeProcess. computeResult has no rows in this mode. Off by default.
+     * @param incrementalOutput
+     */
+    @Override
+    public void setIncrementalOutput(boolean incrementalOutput) {
+        this.incrementalOutput = incrementalOutput;
+    }
+
+    /**
+     * Sets the memory budget of the transformed rows that are kept for the result (when the operations do not end
+     * with an aggregation), once it is exceeded the rows are spilled to run files. A quarter of the max heap by default.
+     * @param memoryBudget estimated size in bytes
+     */
+    public void setSpillMemoryBudget(long memoryBudget) {
+        spillBudget.setMemoryBudget(memoryBudget);
+    }
+
+    /**
+     * Shares the memory budget of the transformed rows with other processes, so the rows that all of them keep in
+     * memory are bounded together (the query server shares one budget between its queries). Called before the
+     * header row is processed.
+     * @param spillBudget
+     */
+    public void setSpillBudget(SpillBudget spillBudget) {
+        this.spillBudget = spillBudget;
+        if(result != null) {
+            //the result has no rows yet, its buffer is created again with the shared budget
+            result.close();
+            result = createPartialResult();
+        }
+    }
+
+    /**
+     * Sets the directory of the spilled run files, the system temp directory by default
+     * @param spillDirectory
+     */
+    public void setSpillDirectory(File spillDirectory) {
+        spillBudget.setDirectory(spillDirectory);
+    }
+
+    /**
+     * Sets a suffix for the name of the result matrix file, so the results of queries that are finalized
+     * in the same minute are saved to different files
+     * @param outputFileSuffix
+     */
+    public void setOutputFileSuffix(String outputFileSuffix) {
+        this.outputFileSuffix = outputFileSuffix;
+    }
+
+    /**
+     * Processes a row that was read as field views, see processDataRow(String[])
+     * @param rowData
+     * @return false if the process should stop
+     */
+    @Override
+    public boolean processDataRow(FieldRow rowData) {
+        if(this.fieldList.isEmpty()) {
+            return processHeaderRow(rowData.toArray());
+        } else if(result != null) {
+            result.processDataRow(rowData);
+        }
+        return true;
+    }
+
+    /**
+     * Validates the operations parameters against the field names in the first row of the file
+     * @param rowData
+     * @return false if the process should stop
+     */
+    public boolean processHeaderRow(String[] rowData) {
+        metrics.start();
+        this.fieldList.addAll(Arrays.asList(rowData));
+        if(result == null) {
+            //the operations were not compiled, they are invalid or a lookup file failed to load
+            return false;
+        }
+        //validate input parameters
+        if(!checkNumberOfFieldsInParams()) {
+            return false;
+        }
+        if(incrementalOutput && result != null && accumulatorOperation == null && sortOperation == null
+                && finalizeOperations.isEmpty()) {
+            resultWriter = createResultWriter();
+            result.setWriter(resultWriter);
+        }
+        return true;
+    }
+
+    /**
+     * Creates an empty result for processing a part of the file rows, every part gets its own compiled batch executor
+     * so parts can be processed concurrently, and are then merged in the file order with mergePartialResult.
+     * @return PartialResult
+     */
+    @Override
+    public PartialResult createPartialResult() {
+        return createPartialResult(0);
+    }
+
+    //creates a partial result without the first row operations, for rows that already passed them
+    PartialResult createPartialResult(int skippedRowOperations) {
+        List<BatchOperation> compiledOperations = new ArrayList<>();
+        List<OperatorMetrics> compiledMetrics = new ArrayList<>();
+        int i = skippedRowOperations;
+        while (i < rowOperations.size()) {
+            int filters = 0;
+            while (i + filters < rowOperations.size() && rowOperations.get(i + filters).getKey() == OperationsEnum.FILTER) {
+                filters++;
+            }
+            if(filters > 1) {
+                //adjacent filters run as one operation that adds the metrics of each filter
+                List<FilterPredicate> predicates = new ArrayList<>();
+                for (Map.Entry<OperationsEnum, List<String>> filter : rowOperations.subList(i, i + filters)) {
+                    predicates.add(FilterPredicate.compile(filter.getValue()));
+                }
+                compiledOperations.add(new FilterConjunction(predicates, rowOperationMetrics.subList(i, i + filters)));
+                compiledMetrics.add(null);
+                i += filters;
+            } else if(rowOperations.get(i).getKey() == OperationsEnum.JOIN) {
+                Map.Entry<OperationsEnum, List<String>> join = rowOperations.get(i);
+                compiledOperations.add(Operations.compileJoin(lookupTables.get(join),
+                        Integer.parseInt(join.getValue().get(0).trim())));
+                compiledMetrics.add(rowOperationMetrics.get(i));
+                i++;
+            } else {
+                Map.Entry<OperationsEnum, List<String>> operation = rowOperations.get(i);
+                compiledOperations.add(operation.getKey().compileBatchOperation(operation.getValue()));
+                compiledMetrics.add(rowOperationMetrics.get(i));
+                i++;
+            }
+        }
+        return new PartialResult(new BatchExecutor(compiledOperations, compiledMetrics),
+                accumulatorOperation != null
+                        ? accumulatorOperation.getKey().createAccumulator(accumulatorOperation.getValue()) : null,
+                accumulatorMetrics, rowSortOrder, spillBudget, metrics);
+    }
+
+    /**
+     * Merges the result of the next part of the file rows into the process result
+     * @param partialResult
+     */
+    @Override
+    public void mergePartialResult(PartialOperationsResult partialResult) {
+        if(result != null) {
+            result.merge((PartialResult) partialResult);
+        }
+    }
+
+    /**
+     * @return the metrics of the process, complete after finalizeProcess
+     */
+    @Override
+    public ExecutionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the message of the first error in the operations (an unknown operation, an invalid parameter, a field
+     * index the file does not have or a lookup file that cannot be loaded), or null if they are valid. The field
+     * indexes are validated when the header row is processed.
+     */
+    public String getValidationError() {
+        return validationError;
+    }
+
+    //prints the error, the process has no result
+    private void setValidationError(String message) {
+        System.out.println(message);
+        if(validationError == null) {
+            validationError = message;
+        }
+    }
+
+    //true if the operations were compiled
+    boolean hasOperations() {
+        return result != null;
+    }
+
+    //the parameters of the filter if it is the first row operation, otherwise null
+    List<String> getLeadingFilterParameters() {
+        if(rowOperations.isEmpty() || rowOperations.get(0).getKey() != OperationsEnum.FILTER) {
+            return null;
+        }
+        return rowOperations.get(0).getValue();
+    }
+
+    //the metrics of the filter that is the first row operation
+    OperatorMetrics getLeadingFilterMetrics() {
+        return rowOperationMetrics.get(0);
+    }
+
+    /**
+     * @return the number of leading fields of the file rows the operations read, the readers do not have to split
+     * the rest of the line, or -1 for all the fields
+     */
+    @Override
+    public int getRequiredFieldCount() {
+        return requiredFieldCount;
+    }
+
+    /**
+     * @return true if the state of the process can be saved with writeState, when the rows are accumulated by a
+     * numeric aggregation (sum, avg, min, max, top or percentile)
+     */
+    public boolean hasSavableState() {
+        return result != null && result.getAccumulator() instanceof NumericAccumulator;
+    }
+
+    /**
+     * Writes the state of the rows that were processed so far, so a later process of more rows can continue from it
+     * with readState instead of processing the rows again. See hasSavableState.
+     * @param output
+     * @throws IOException
+     */
+    public void writeState(DataOutput output) throws IOException {
+        flush();
+        output.writeBoolean(result.isAborted());
+        ((NumericAccumulator) result.getAccumulator()).writeState(output);
+    }
+
+    /**
+     * Restores the state that was written by writeState of the same operations, called after the header row is
+     * processed and before the rows
+     * @param input
+     * @throws IOException
+     */
+    public void readState(DataInput input) throws IOException {
+        boolean aborted = input.readBoolean();
+        ((NumericAccumulator) result.getAccumulator()).readState(input);
+        if(aborted) {
+            result.abort();
+        }
+    }
+
+    /**
+     * Answers the operations from the column statistics of the index without reading the rows, when the operations
+     * are a max, min, sum or avg of a column (optionally after pluck) and every line has the column. The answer is
+     * the result of finalizeProcess, the remaining aggregations run on it. Called after the header row is processed.
+     * @param index the index of the processed file
+     * @return true if the operations were answered, false if the rows should be processed
+     */
+    public boolean answerFromStatistics(ColumnIndex index) {
+        if(result == null || accumulatorOperation == null || rowOperations.size() > 1) {
+            return false;
         }
+        switch (accumulatorOperation.getKey()) {
+            case MAX:
+            case MIN:
+            case SUM:
+            case AVG:
+                break;
+            default:
+                return false;
+        }
+        int column = 0;
+        if(!rowOperations.isEmpty()) {
+            if(rowOperations.get(0).getKey() != OperationsEnum.PLUCK) {
+                return false;
+            }
+            column = Integer.parseInt(rowOperations.get(0).getValue().get(0).trim());
+        }
+        ColumnStatistics statistics = index.getStatistics(column);
+        if(statistics == null || statistics.getMissingCount() > 0) {
+            return false;
+        }
+        columnStatistics = statistics;
         return true;
     }
 
     /**
-     * After processing each row the final matrix result is processed by the aggregation operations.
+     * @param index the index of the processed file
+     * @return the blocks of the index that may have rows that pass the operations, the blocks of every leading
+     * filter on a column that has an inverted index, all the blocks if there is no such filter
+     */
+    public BitSet getCandidateBlocks(ColumnIndex index) {
+        BitSet blocks = new BitSet();
+        blocks.set(0, index.getBlockCount());
+        for (Map.Entry<OperationsEnum, List<String>> operation : rowOperations) {
+            if(operation.getKey() != OperationsEnum.FILTER) {
+                break;
+            }
+            FilterPredicate predicate = FilterPredicate.compile(operation.getValue());
+            if(index.isIndexed(predicate.getFieldIndex())) {
+                blocks.and(index.getBlocks(predicate.getFieldIndex(), predicate.getSearchValue()));
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Runs the remaining aggregation operations on the final matrix result (or the accumulated aggregation result)
+     * @return the result matrix, or null if there is no result
+     */
+    public Matrix computeResult() {
+        if(columnStatistics != null) {
+            return runOperations(getStatisticsMatrix(), finalizeOperations);
+        }
+        flush();
+        if(result == null || result.isAborted()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Matrix matrix = result.getMatrix();
+        if(accumulatorMetrics != null) {
+            accumulatorMetrics.add(0, matrix != null ? matrix.getRows().size() : 0, 0);
+        }
+        if(sortMetrics != null) {
+            sortMetrics.add(matrix.getRows().size(), matrix.getRows().size(), System.nanoTime() - start);
+        }
+        return runOperations(matrix, finalizeOperations);
+    }
+
+    //the aggregation result from the column statistics, the same result the accumulator gives
+    private Matrix getStatisticsMatrix() {
+        OperationsEnum operation = accumulatorOperation.getKey();
+        if(columnStatistics.getInvalidCount() > 0) {
+            System.out.println("Invalid " + operation.name() + " operation on field 0");
+            return null;
+        }
+        long count = columnStatistics.getCount();
+        double value;
+        switch (operation) {
+            case MAX:
+                value = columnStatistics.getMax();
+                break;
+            case MIN:
+                value = columnStatistics.getMin();
+                break;
+            case AVG:
+                value = columnStatistics.getSum() / count;
+                break;
+            default:
+                //the sum of no values is 0
+                value = columnStatistics.getSum();
+                count = 1;
+        }
+        return count > 0 ? new Matrix(Collections.singletonList(Row.createRow(String.valueOf(value)))) : null;
+    }
+
+    /**
+     * After processing each row the final matrix result (or the accumulated aggregation result)
+     * is processed by the remaining aggregation operations.
      * Finally, the final aggregated matrix is saved to csv file
      */
+    @Override
     public void finalizeProcess() {
-        Matrix matrix = runAggregationOperations(this.matrix);
+        try {
+            flush();
+            writeFinalResult();
+            finalized = true;
+        } finally {
+            metrics.finish();
+        }
+    }
+
+    @Override
+    public void abortProcess() {
+        if(finalized) {
+            return;
+        }
+        finalized = true;
+        try {
+            if(resultWriter != null) {
+                //the rows that were written are not a result, the file is deleted
+                resultWriter.abort();
+            }
+            if(result != null) {
+                result.close();
+            }
+        } finally {
+            metrics.finish();
+        }
+    }
+
+    private void writeFinalResult() {
+        if(resultWriter != null) {
+            //the result rows were written while they were processed
+            closeResultWriter(resultWriter);
+            result.close();
+            return;
+        }
+        if(result != null && !result.isAborted() && result.getRows() != null && finalizeOperations.isEmpty()) {
+            //the transformed rows are the result, they are written while they are read back from the spilled runs
+            SpillingRowBuffer rows = result.getRows();
+            if(rows.getRowCount() > 0) {
+                //the sorted runs are merged while the rows are written
+                long start = System.nanoTime();
+                writeResult(rows);
+                if(sortMetrics != null) {
+                    sortMetrics.add(rows.getRowCount(), rows.getRowCount(), System.nanoTime() - start);
+                }
+            } else {
+                System.out.println("No results found for this query");
+            }
+            result.close();
+            return;
+        }
+        Matrix matrix = computeResult();
         if(matrix != null && matrix.getRows() != null && !matrix.getRows().isEmpty()) {
-            writeMatrixToCSV(matrix);
+            writeResult(matrix.getRows());
         } else {
             System.out.println("No results found for this query");
         }
+        if(result != null) {
+            result.close();
+        }
     }
 
-    //iterate and run each transformation operation recursively
-    private Matrix runTransformationOperations(Matrix matrix) {
+    //iterate and run the given finalize operations recursively
+    private Matrix runOperations(Matrix matrix, List<Map.Entry<OperationsEnum, List<String>>> operationsList) {
         Matrix resultMatrix = matrix;
-        for(Map.Entry<OperationsEnum, List<String>> operation : operations.entrySet()) {
+        for (int i = 0; i < operationsList.size(); i++) {
+            if(resultMatrix != null) {
+                long start = System.nanoTime();
+                int rowsIn = resultMatrix.getRows().size();
+                resultMatrix = doRunOperation(resultMatrix, operationsList.get(i));
+                finalizeOperationMetrics.get(i).add(rowsIn, resultMatrix != null ? resultMatrix.getRows().size() : 0,
+                        System.nanoTime() - start);
+            }
+        }
+        return resultMatrix;
+    }
+
+    /**
+     * Compiles the plan of the operations chain once into the batch operations that run on the rows, see
+     * OperationsPlanner. The transformations are compiled first (they always run before the aggregations), with
+     * streaming aggregation the row wise aggregations (ceil) that come before the first aggregation that collapses
+     * the matrix are compiled as well, and that aggregation is replaced by an accumulator. A sort at that point keeps
+     * the first rows in an accumulator when it has a limit, otherwise the kept rows are sorted by a SpillingRowBuffer
+     * that sorts the runs it spills. The rest of the aggregations are run in finalizeProcess.
+     * @param streamingAggregation
+     */
+    private void compileOperations(boolean streamingAggregation) {
+        List<Map.Entry<OperationsEnum, List<String>>> plan = OperationsPlanner.plan(operations);
+        requiredFieldCount = OperationsPlanner.getRequiredFieldCount(plan);
+        for (Map.Entry<OperationsEnum, List<String>> operation : plan) {
             if (operation.getKey().isTransformation()) {
-                if(resultMatrix != null) {
-                    resultMatrix = doRunOperation(resultMatrix, operation);
+                rowOperations.add(operation);
+            }
+        }
+        boolean rowWise = streamingAggregation;
+        for (Map.Entry<OperationsEnum, List<String>> operation : plan) {
+            OperationsEnum operationsEnum = operation.getKey();
+            if (operationsEnum.isTransformation()) {
+                continue;
+            } else if(rowWise && operationsEnum == OperationsEnum.SORT) {
+                SortOrder sortOrder = SortOrder.compile(operation.getValue());
+                if(sortOrder.hasLimit()) {
+                    accumulatorOperation = operation;
+                } else {
+                    sortOperation = operation;
+                    rowSortOrder = sortOrder;
                 }
+                rowWise = false;
+            } else if(rowWise && operationsEnum.hasAccumulator()) {
+                accumulatorOperation = operation;
+                rowWise = false;
+            } else if(rowWise && operationsEnum.hasBatchOperation()) {
+                rowOperations.add(operation);
+            } else {
+                finalizeOperations.add(operation);
+                rowWise = false;
             }
         }
-        return resultMatrix;
+        for (Map.Entry<OperationsEnum, List<String>> operation : rowOperations) {
+            rowOperationMetrics.add(metrics.addOperator(getOperatorName(operation)));
+        }
+        if(accumulatorOperation != null) {
+            accumulatorMetrics = metrics.addOperator(getOperatorName(accumulatorOperation));
+        }
+        if(sortOperation != null) {
+            sortMetrics = metrics.addOperator(getOperatorName(sortOperation));
+        }
+        for (Map.Entry<OperationsEnum, List<String>> operation : finalizeOperations) {
+            finalizeOperationMetrics.add(metrics.addOperator(getOperatorName(operation)));
+        }
+        if(!loadLookupTables()) {
+            return;
+        }
+        result = createPartialResult();
     }
 
-    //iterate and run each aggregation operation recursively
-    private Matrix runAggregationOperations(Matrix matrix) {
-        Matrix resultMatrix = matrix;
-        for (Map.Entry<OperationsEnum, List<String>> operation : operations.entrySet()) {
-            if (!operation.getKey().isTransformation()) {
-                if(resultMatrix != null) {
-                    resultMatrix = doRunOperation(resultMatrix, operation);
+    //loads the lookup file of each join once, a query with a lookup file that cannot be loaded has no result
+    private boolean loadLookupTables() {
+        for (Map.Entry<OperationsEnum, List<String>> operation : rowOperations) {
+            if(operation.getKey() == OperationsEnum.JOIN) {
+                try {
+                    lookupTables.put(operation, LookupTable.load(operation.getValue()));
+                } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                    setValidationError("Failed to load the lookup file of " + getOperatorName(operation) + ": " + e.getMessage());
+                    return false;
                 }
             }
         }
-        return resultMatrix;
+        return true;
+    }
+
+    //the operation name with its parameters, for the metrics
+    static String getOperatorName(Map.Entry<OperationsEnum, List<String>> operation) {
+        return operation.getValue() == null ? operation.getKey().getName()
+                : operation.getKey().getName() + "(" + String.join(",", operation.getValue()) + ")";
     }
 
     private Matrix doRunOperation(Matrix matrix, Map.Entry<OperationsEnum, List<String>> operation) {
         return operation.getKey().getFunction().apply(new OperationContent(matrix, operation.getValue()));
     }
 
+    //the operations in the chain order, an operation may appear more than once
     private void convertOperationsStrToList(String operationsStr) {
         String[] operationsArr = operationsStr.trim().toLowerCase().split("->");
-        for(String operationStrTmp : operationsArr) {
-            String operationStr = operationStrTmp.trim();
+        //the lookup file of a join keeps its case
+        String[] originalOperationsArr = operationsStr.trim().split("->");
+        for (int i = 0; i < operationsArr.length; i++) {
+            String operationStr = operationsArr[i].trim();
             if(OperationsEnum.SUM.getName().equals(operationStr)) {
-                operations.put(OperationsEnum.SUM, null);
-            }
-
-            if(OperationsEnum.AVG.getName().equals(operationStr)) {
-                operations.put(OperationsEnum.AVG, null);
-            }
-
-            if(OperationsEnum.MIN.getName().equals(operationStr)) {
-                operations.put(OperationsEnum.MIN, null);
-            }
-
-            if(OperationsEnum.MAX.getName().equals(operationStr)) {
-                operations.put(OperationsEnum.MAX, null);
-            }
-
-            if(OperationsEnum.CEIL.getName().equals(operationStr)) {
-                operations.put(OperationsEnum.CEIL, null);
+                addOperation(OperationsEnum.SUM, null);
+            } else if(OperationsEnum.AVG.getName().equals(operationStr)) {
+                addOperation(OperationsEnum.AVG, null);
+            } else if(OperationsEnum.MIN.getName().equals(operationStr)) {
+                addOperation(OperationsEnum.MIN, null);
+            } else if(OperationsEnum.MAX.getName().equals(operationStr)) {
+                addOperation(OperationsEnum.MAX, null);
+            } else if(OperationsEnum.CEIL.getName().equals(operationStr)) {
+                addOperation(OperationsEnum.CEIL, null);
+            } else if(operationStr.startsWith(OperationsEnum.PLUCK.getName())) {
+                addOperation(OperationsEnum.PLUCK, getParamList(operationStr));
+            } else if(operationStr.startsWith(OperationsEnum.FILTER.getName())) {
+                addOperation(OperationsEnum.FILTER, getParamList(operationStr));
+            } else if(operationStr.startsWith(OperationsEnum.GROUPBY.getName())) {
+                addOperation(OperationsEnum.GROUPBY, getParamList(operationStr));
+            } else if(operationStr.startsWith(OperationsEnum.TOP.getName() + "(")) {
+                addOperation(OperationsEnum.TOP, getParamList(operationStr));
+            } else if(operationStr.startsWith(OperationsEnum.DISTINCT.getName())) {
+                addOperation(OperationsEnum.DISTINCT, operationStr.contains("(") ? getParamList(operationStr) : null);
+            } else if(operationStr.startsWith(OperationsEnum.PERCENTILE.getName())) {
+                addOperation(OperationsEnum.PERCENTILE, getParamList(operationStr));
+            } else if(operationStr.startsWith(OperationsEnum.SORT.getName() + "(")) {
+                addOperation(OperationsEnum.SORT, getParamList(operationStr));
+            } else if(operationStr.startsWith(OperationsEnum.JOIN.getName() + "(")) {
+                addOperation(OperationsEnum.JOIN, getParamList(originalOperationsArr[i].trim()));
+            } else if(!operationStr.isEmpty()) {
+                setValidationError("Unknown operation: " + operationStr);
             }
+        }
+    }
 
-            if(operationStr.startsWith(OperationsEnum.PLUCK.getName())) {
-                operations.put(OperationsEnum.PLUCK, getParamList(operationStr));
-            }
+    private void addOperation(OperationsEnum operation, List<String> parameters) {
+        operations.add(new AbstractMap.SimpleImmutableEntry<>(operation, parameters));
+    }
 
-            if(operationStr.startsWith(OperationsEnum.FILTER.getName())) {
-                operations.put(OperationsEnum.FILTER, getParamList(operationStr));
+    /**
+     * The result of a query depends on the lookup files of its joins as well as on the data file
+     * @param operationsStr
+     * @return the lookup files of the join operations, in the chain order
+     */
+    public static List<File> getLookupFiles(String operationsStr) {
+        List<File> lookupFiles = new ArrayList<>();
+        for (String operationStr : operationsStr.trim().split("->")) {
+            String operation = operationStr.trim();
+            if(operation.toLowerCase().startsWith(OperationsEnum.JOIN.getName() + "(") && operation.endsWith(")")) {
+                List<String> parameters = getParamList(operation);
+                if(parameters.size() > 1) {
+                    lookupFiles.add(LookupTable.getFile(parameters));
+                }
             }
         }
+        return lookupFiles;
     }
 
-    private List<String> getParamList(String paramStr) {
+    private static List<String> getParamList(String paramStr) {
         return Arrays.asList(paramStr.substring(paramStr.indexOf("(") + 1, paramStr.lastIndexOf(")")).split(","));
     }
 
     private boolean checkNumberOfFieldsInParams() {
-        if(operations.entrySet().isEmpty()) {
+        if(operations.isEmpty()) {
             return false;
         }
 
-        Optional<Map.Entry<OperationsEnum, List<String>>> firstParam = operations.entrySet()
+        Optional<Map.Entry<OperationsEnum, List<String>>> firstParam = operations
                 .stream()
-                .filter(o -> o.getValue() != null && !o.getValue().isEmpty())
+                .filter(o -> o.getKey().hasFieldIndexParameter() && o.getValue() != null && !o.getValue().isEmpty())
                 .findFirst();
         if(firstParam.isPresent()) {
-            int maxFieldIndexInParameters = Integer.parseInt(Collections.max(firstParam.get().getValue()));
-            if(maxFieldIndexInParameters >= fieldList.size()) {
-                System.out.println("Invalid value in INDEX parameter, there are not enough fields in the file to process the request");
+            //the first parameter is the field index, the rest (like the filter value) are not indexes
+            int fieldIndexInParameters = Integer.parseInt(firstParam.get().getValue().get(0).trim());
+            if(fieldIndexInParameters >= fieldList.size()) {
+                setValidationError("Invalid value in INDEX parameter, there are not enough fields in the file to process the request");
                 return false;
             }
         }
+        if(!checkFieldIndexes()) {
+            setValidationError("Invalid value in INDEX parameter, there are not enough fields in the file to process the request");
+            return false;
+        }
 
         return true;
     }
 
-    private void writeMatrixToCSV(Matrix matrix) {
+    //checks the field indexes of the planned transformations against the fields of the rows they get (a pluck leaves
+    //a single field, a join adds the lookup fields), and those of the first aggregation against the transformed rows
+    private boolean checkFieldIndexes() {
+        int fieldCount = fieldList.size();
+        for (Map.Entry<OperationsEnum, List<String>> operation : rowOperations) {
+            if(!operation.getKey().isTransformation()) {
+                continue;
+            }
+            if(Integer.parseInt(operation.getValue().get(0).trim()) >= fieldCount) {
+                return false;
+            }
+            if(operation.getKey() == OperationsEnum.PLUCK) {
+                fieldCount = 1;
+            } else if(operation.getKey() == OperationsEnum.JOIN) {
+                fieldCount += lookupTables.get(operation).getFieldNames().length;
+            }
+        }
+        for (Map.Entry<OperationsEnum, List<String>> operation : operations) {
+            if(!operation.getKey().isTransformation()) {
+                switch (operation.getKey()) {
+                    case GROUPBY:
+                        return Integer.parseInt(operation.getValue().get(0).trim()) < fieldCount
+                                && Integer.parseInt(operation.getValue().get(1).trim()) < fieldCount;
+                    case SORT:
+                        return Integer.parseInt(operation.getValue().get(0).trim()) < fieldCount;
+                    default:
+                        return true;
+                }
+            }
+        }
+        return true;
+    }
+
+    //writes the result rows to a new result file
+    private void writeResult(Iterable<Row> rows) {
+        ResultWriter writer = createResultWriter();
+        try {
+            for (Row rowData : rows) {
+                writer.writeRow(rowData);
+            }
+        } catch (UncheckedIOException e) {
+            writer.abort();
+            e.printStackTrace();
+            return;
+        }
+        closeResultWriter(writer);
+    }
+
+    private ResultWriter createResultWriter() {
         LocalDateTime now = LocalDateTime.now();
-        String fileName = "c:/tmp/matrix_" + DATETIME_FORMATTER.format(ZonedDateTime.of(now, ZoneId.of("UTC-4"))) +".csv";
+        String fileName = outputDirectory + "matrix_" + DATETIME_FORMATTER.format(ZonedDateTime.of(now, ZoneId.of("UTC-4")))
+                + outputFileSuffix + outputFormat.getExtension();
+        //a sort keeps the fields of the rows it sorts, the fields are those of the last operation before it
+        Map.Entry<OperationsEnum, List<String>> lastOperation = null;
+        for (Map.Entry<OperationsEnum, List<String>> operation : operations) {
+            if(operation.getKey() != OperationsEnum.SORT) {
+                lastOperation = operation;
+            }
+        }
+        String[] fields = lastOperation != null ? getMatrixFields(lastOperation.getKey(), lastOperation.getValue())
+                : this.fieldList.toArray(new String[0]);
+        return outputFormat.createWriter(new File(fileName), fields, outputCharset);
+    }
+
+    private void closeResultWriter(ResultWriter writer) {
         try {
-            FileWriter csvWriter = new FileWriter(fileName);
-            List<OperationsEnum> operationsEnums = new ArrayList<>(operations.keySet());
-            OperationsEnum lastOperation = operationsEnums.get(operationsEnums.size() - 1);
-
-            //add field(s) name(s) to result matrix file
-            csvWriter.append(String.join(",", getMatrixFields(lastOperation, operations.get(lastOperation))));
-            csvWriter.append("\n");
-
-            for (Row rowData : matrix.getRows()) {
-                csvWriter.append(String.join(",", rowData.getRowDataWithDelimiter(",")));
-                csvWriter.append("\n");
-            }
-            csvWriter.flush();
-            csvWriter.close();
-            System.out.println("Matrix file " + fileName + " created");
-        } catch (IOException e) {
+            writer.close();
+        } catch (UncheckedIOException e) {
             e.printStackTrace();
+            return;
+        }
+        if(writer.getRowCount() > 0 && !writer.isAborted()) {
+            System.out.println("Matrix file " + writer.getFile().getPath() + " created");
+        } else {
+            System.out.println("No results found for this query");
+        }
+    }
+
+    //the field of the file rows the plan plucks, a pluck of a plucked row can only take its single field
+    private int getPluckedFieldIndex() {
+        for (Map.Entry<OperationsEnum, List<String>> operation : rowOperations) {
+            if(operation.getKey() == OperationsEnum.PLUCK) {
+                return Integer.parseInt(operation.getValue().get(0).trim());
+            }
         }
+        return 0;
+    }
 
+    //the field names of the rows after the row operations, for plans that join lookup fields to the rows
+    private String[] getJoinedFields() {
+        List<String> fields = new ArrayList<>(fieldList);
+        for (Map.Entry<OperationsEnum, List<String>> operation : rowOperations) {
+            switch (operation.getKey()) {
+                case PLUCK:
+                    int fieldIndex = Integer.parseInt(operation.getValue().get(0).trim());
+                    fields = new ArrayList<>(Collections.singletonList(fieldIndex < fields.size() ? fields.get(fieldIndex) : ""));
+                    break;
+                case CEIL:
+                    fields = new ArrayList<>(Collections.singletonList(fields.get(0)));
+                    break;
+                case JOIN:
+                    fields.addAll(Arrays.asList(lookupTables.get(operation).getFieldNames()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return fields.toArray(new String[0]);
     }
 
-    //gets the field names for the csv file
-    private String getMatrixFields(OperationsEnum lastOperation, List<String> operationParams) {
+    //gets the field names for the result file
+    private String[] getMatrixFields(OperationsEnum lastOperation, List<String> operationParams) {
+        if(!lookupTables.isEmpty() && lastOperation.isTransformation()) {
+            return getJoinedFields();
+        }
         switch (lastOperation) {
             case PLUCK:
-                return fieldList.get(Integer.parseInt(operationParams.get(0)));
+                return new String[]{fieldList.get(getPluckedFieldIndex())};
             case FILTER:
-                return String.join(",", this.fieldList);
+                return this.fieldList.toArray(new String[0]);
+            case GROUPBY:
+                List<String> fields = lookupTables.isEmpty() ? fieldList : Arrays.asList(getJoinedFields());
+                return new String[]{fields.get(Integer.parseInt(operationParams.get(0).trim())),
+                        fields.get(Integer.parseInt(operationParams.get(1).trim()))};
             default:
-                return fieldList.get(0);
+                return new String[]{fieldList.get(0)};
         }
     }
 }
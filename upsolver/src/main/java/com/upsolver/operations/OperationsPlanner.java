@@ -0,0 +1,90 @@
+package com.upsolver.operations;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plans the operations chain that was parsed from the operations string. The plan is the ordered list of the
+ * operations, each operation runs on the rows of the previous one and an operation may appear more than once.
+ * The transformations run before the aggregations (in the chain order), and a filter that comes after a pluck is
+ * pushed before it, on the plucked field of the file row, so the filters run on the rows of the file first.
+ * Adjacent filters are compiled to a single FilterConjunction that orders them by their sampled selectivity.
+ */
+public class OperationsPlanner {
+    /**
+     * @param operations the operations in the chain order
+     * @returns the operations in the order they run
+     */
+    public static List<Map.Entry<OperationsEnum, List<String>>> plan(List<Map.Entry<OperationsEnum, List<String>>> operations) {
+        List<Map.Entry<OperationsEnum, List<String>>> plan = new ArrayList<>();
+        for (Map.Entry<OperationsEnum, List<String>> operation : operations) {
+            if (operation.getKey().isTransformation()) {
+                plan.add(operation);
+            }
+        }
+        for (Map.Entry<OperationsEnum, List<String>> operation : operations) {
+            if (!operation.getKey().isTransformation()) {
+                plan.add(operation);
+            }
+        }
+        pushFiltersBeforePlucks(plan);
+        return plan;
+    }
+
+    //a filter on the single field of a pluck filters the plucked field of the rows before the pluck
+    private static void pushFiltersBeforePlucks(List<Map.Entry<OperationsEnum, List<String>>> plan) {
+        for (int i = 1; i < plan.size(); i++) {
+            for (int j = i; j > 0 && plan.get(j).getKey() == OperationsEnum.FILTER
+                    && plan.get(j - 1).getKey() == OperationsEnum.PLUCK; j--) {
+                Map.Entry<OperationsEnum, List<String>> filter = plan.get(j);
+                Map.Entry<OperationsEnum, List<String>> pluck = plan.get(j - 1);
+                if (getFieldIndex(filter) != 0) {
+                    //the pluck has a single field, a filter on another field fails on every row as it is
+                    break;
+                }
+                List<String> parameters = new ArrayList<>(filter.getValue());
+                parameters.set(0, pluck.getValue().get(0).trim());
+                plan.set(j - 1, new AbstractMap.SimpleImmutableEntry<>(OperationsEnum.FILTER, parameters));
+                plan.set(j, pluck);
+            }
+        }
+    }
+
+    /**
+     * The fields of a file row that come after the fields the plan reads do not have to be split from the line,
+     * when the plan projects the rows to some of their fields (with pluck or groupby) before anything else reads them
+     * @param plan
+     * @returns the number of leading fields of the file rows the plan reads, or -1 for all the fields
+     */
+    public static int getRequiredFieldCount(List<Map.Entry<OperationsEnum, List<String>>> plan) {
+        int maxFieldIndex = 0;
+        try {
+            for (Map.Entry<OperationsEnum, List<String>> operation : plan) {
+                switch (operation.getKey()) {
+                    case FILTER:
+                        maxFieldIndex = Math.max(maxFieldIndex, getFieldIndex(operation));
+                        break;
+                    case PLUCK:
+                        return Math.max(maxFieldIndex, getFieldIndex(operation)) + 1;
+                    case GROUPBY:
+                        return Math.max(maxFieldIndex, Math.max(getFieldIndex(operation),
+                                Integer.parseInt(operation.getValue().get(1).trim()))) + 1;
+                    default:
+                        //the operation keeps the other fields of the rows
+                        return -1;
+                }
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            //invalid parameters fail when the operations run
+            return -1;
+        }
+        //the result rows are the filtered rows with all their fields
+        return -1;
+    }
+
+    private static int getFieldIndex(Map.Entry<OperationsEnum, List<String>> operation) {
+        return Integer.parseInt(operation.getValue().get(0).trim());
+    }
+}
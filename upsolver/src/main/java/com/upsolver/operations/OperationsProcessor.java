@@ -0,0 +1,82 @@
+package com.upsolver.operations;
+
+import com.upsolver.components.FieldRow;
+import com.upsolver.io.OutputFormat;
+import com.upsolver.metrics.ExecutionMetrics;
+
+import java.nio.charset.Charset;
+
+/**
+ * Processes the rows of a file for the file processors, implemented by the OperationsManager for a single
+ * operations chain and by the MultiQueryManager for many operations chains over a single scan of the file.
+ */
+public interface OperationsProcessor {
+    /**
+     * The first row of the file holds the field names
+     * @param rowData
+     * @return false if the process should stop
+     */
+    boolean processDataRow(String[] rowData);
+
+    /**
+     * The rows may be collected to a batch before the operations run on them, the row object can be reused for the
+     * next row but the data it views must stay valid until flush
+     * @param rowData
+     * @return false if the process should stop
+     */
+    boolean processDataRow(FieldRow rowData);
+
+    /**
+     * Runs the operations on the collected rows, called before the data of the rows that were passed is reused
+     */
+    void flush();
+
+    /**
+     * Creates an empty result for processing a part of the file rows concurrently with the other parts
+     * @return PartialOperationsResult
+     */
+    PartialOperationsResult createPartialResult();
+
+    /**
+     * Merges the result of the next part of the file rows, parts are merged in the file order
+     * @param partialResult a result that was created by createPartialResult
+     */
+    void mergePartialResult(PartialOperationsResult partialResult);
+
+    /**
+     * The readers split only the leading fields of the lines that the operations read, the rest of the line is
+     * skipped. Known once the header row is processed.
+     * @return the number of leading fields of the rows the operations read, or -1 for all the fields
+     */
+    int getRequiredFieldCount();
+
+    /**
+     * The file processors add the rows and bytes they read to the metrics
+     * @return the metrics of the process
+     */
+    ExecutionMetrics getMetrics();
+
+    void setOutputDirectory(String outputDirectory);
+
+    void setOutputFormat(OutputFormat outputFormat);
+
+    void setOutputCharset(Charset outputCharset);
+
+    /**
+     * Writes the result rows while the rows are processed, for operations that do not end with an aggregation
+     * @param incrementalOutput
+     */
+    void setIncrementalOutput(boolean incrementalOutput);
+
+    /**
+     * Computes the final result and saves it to csv file
+     */
+    void finalizeProcess();
+
+    /**
+     * Releases the resources of a process that failed before it was finalized, the result file that was started and
+     * the spilled rows are deleted and the metrics are unregistered. Does nothing once finalizeProcess completed, so the file processors call it in a
+     * finally block.
+     */
+    void abortProcess();
+}
@@ -0,0 +1,22 @@
+package com.upsolver.operations;
+
+import com.upsolver.components.FieldRow;
+
+/**
+ * The result of processing a part of the file rows, see OperationsProcessor.createPartialResult
+ */
+public interface PartialOperationsResult {
+    void processDataRow(String[] rowData);
+
+    void processDataRow(FieldRow rowData);
+
+    /**
+     * Runs the operations on the rows that were collected for the next batch
+     */
+    void flush();
+
+    /**
+     * Deletes the spilled rows of a result that is not merged
+     */
+    void close();
+}
@@ -0,0 +1,200 @@
+package com.upsolver.operations;
+
+import com.upsolver.components.ArrayFieldRow;
+import com.upsolver.components.FieldRow;
+import com.upsolver.components.Matrix;
+import com.upsolver.components.Row;
+import com.upsolver.components.SortOrder;
+import com.upsolver.io.ResultWriter;
+import com.upsolver.io.SpillBudget;
+import com.upsolver.io.SpillingRowBuffer;
+import com.upsolver.metrics.ExecutionMetrics;
+import com.upsolver.metrics.OperatorMetrics;
+import com.upsolver.operations.accumulators.Accumulator;
+
+/**
+ * The result of processing a part of the file rows, holds its own batch executor so each part can be processed
+ * on a different thread. The rows are collected to a RowVector and the operations run once it is full (or on flush).
+ * Partial results of consecutive parts are merged in order by the OperationsManager.
+ */
+public class PartialResult implements PartialOperationsResult {
+    private final BatchExecutor batchExecutor;
+    private final Accumulator accumulator;
+    private final OperatorMetrics accumulatorMetrics;
+    private final ExecutionMetrics metrics;
+    private final SpillingRowBuffer rows;
+    private final ArrayFieldRow arrayFieldRow = new ArrayFieldRow();
+    private final RowVector vector = new RowVector(RowVector.DEFAULT_CAPACITY);
+    private ResultWriter writer;
+    private boolean aborted;
+    private long bufferedRows;
+
+    PartialResult(BatchExecutor batchExecutor, Accumulator accumulator, OperatorMetrics accumulatorMetrics,
+                  SortOrder sortOrder, SpillBudget spillBudget, ExecutionMetrics metrics) {
+        this.batchExecutor = batchExecutor;
+        this.accumulator = accumulator;
+        this.accumulatorMetrics = accumulatorMetrics;
+        this.metrics = metrics;
+        this.rows = accumulator == null ? new SpillingRowBuffer(spillBudget, sortOrder) : null;
+    }
+
+    @Override
+    public void processDataRow(String[] rowData) {
+        processDataRow(arrayFieldRow.setFields(rowData));
+    }
+
+    /**
+     * Collects the row to the next batch, the batch is passed through the batch executor once it is full
+     * @param rowData
+     */
+    @Override
+    public void processDataRow(FieldRow rowData) {
+        if(aborted) {
+            return;
+        }
+        if(vector.add(rowData)) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if(vector.getSize() > 0) {
+            try {
+                processVector(vector);
+            } finally {
+                vector.clear();
+            }
+        }
+    }
+
+    //runs the batch executor on the selected rows of a vector that is not changed, for the queries of a shared scan
+    void processSharedVector(RowVector sharedVector) {
+        if(aborted) {
+            return;
+        }
+        vector.copyFrom(sharedVector);
+        try {
+            processVector(vector);
+        } finally {
+            vector.clear();
+        }
+    }
+
+    /**
+     * Passes the rows through the batch executor, the transformed rows are either accumulated by the streaming
+     * aggregation or added to the rows result, that spills to disk when the memory budget is exceeded.
+     * @param rowVector
+     */
+    private void processVector(RowVector rowVector) {
+        if(aborted) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            batchExecutor.execute(rowVector);
+        } catch (NumberFormatException e) {
+            //a row wise aggregation failed on a row, the whole process has no result
+            System.out.println("Invalid CEIL operation on field 0");
+            abort();
+            return;
+        }
+        long accumulateStart = System.nanoTime();
+        int[] selection = rowVector.getSelection();
+        int selectedCount = rowVector.getSelectedCount();
+        for (int i = 0; i < selectedCount; i++) {
+            FieldRow resultRow = rowVector.getRow(selection[i]);
+            if(writer != null) {
+                writer.writeRow(resultRow);
+            } else if(accumulator != null) {
+                accumulator.accumulate(resultRow);
+            } else {
+                rows.addRow(resultRow);
+            }
+        }
+        long end = System.nanoTime();
+        if(accumulatorMetrics != null) {
+            accumulatorMetrics.add(selectedCount, 0, end - accumulateStart);
+        }
+        metrics.addExecuteNanos(end - start);
+        updateBufferedRows();
+    }
+
+    //adds the change in the rows this result keeps in memory to the metrics
+    private void updateBufferedRows() {
+        long buffered = rows != null && !aborted ? rows.getBufferedRowCount() : 0;
+        metrics.addBufferedRows(buffered - bufferedRows);
+        bufferedRows = buffered;
+    }
+
+    /**
+     * Merges the result of the next part of the file into this result, rows are appended to keep the file order
+     * @param other
+     */
+    public void merge(PartialResult other) {
+        flush();
+        other.flush();
+        if(other.aborted) {
+            abort();
+        }
+        if(aborted) {
+            close();
+            other.close();
+            return;
+        }
+        if(writer != null) {
+            for (Row row : other.rows) {
+                writer.writeRow(row);
+            }
+            other.close();
+        } else if(accumulator != null) {
+            accumulator.merge(other.accumulator);
+        } else {
+            rows.addAll(other.rows);
+            other.updateBufferedRows();
+            updateBufferedRows();
+        }
+    }
+
+    //stops processing the rows, the whole process has no result
+    void abort() {
+        aborted = true;
+        if(writer != null) {
+            writer.abort();
+        }
+    }
+
+    //the transformed rows are written to the writer instead of being kept, the rows of merged results too
+    void setWriter(ResultWriter writer) {
+        this.writer = writer;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    //the accumulated aggregation result or the matrix of transformed rows, in the sort order of a row sort
+    Matrix getMatrix() {
+        return accumulator != null ? accumulator.getResult() : rows.toMatrix();
+    }
+
+    //the streaming aggregation, null if the rows are kept
+    Accumulator getAccumulator() {
+        return accumulator;
+    }
+
+    //the transformed rows, null for an aggregation
+    SpillingRowBuffer getRows() {
+        return rows;
+    }
+
+    //deletes the spilled rows
+    @Override
+    public void close() {
+        if(rows != null) {
+            rows.close();
+        }
+        metrics.addBufferedRows(-bufferedRows);
+        bufferedRows = 0;
+    }
+}
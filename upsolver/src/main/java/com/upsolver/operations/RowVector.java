@@ -0,0 +1,181 @@
+package com.upsolver.operations;
+
+import com.upsolver.components.ArrayFieldRow;
+import com.upsolver.components.ByteFieldRow;
+import com.upsolver.components.FieldRow;
+import com.upsolver.components.ProjectedFieldRow;
+
+import java.util.Arrays;
+
+/**
+ * A batch of rows that passes through the BatchOperations of an operations chain. The rows are not copied or removed
+ * by the operations: a selection vector holds the indexes of the rows that passed the operations so far (filter
+ * compacts it), and a projection maps the field indexes of the operations to the fields of the rows (pluck replaces
+ * it). Operations that compute new values (ceil) replace the selected rows by rows the vector owns, and join replaces
+ * them by views of the row joined with a lookup row.
+ * Rows added with add are copied to slots the vector owns, so the reader can reuse its row object.
+ * A vector is used by a single thread.
+ */
+public class RowVector {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final FieldRow[] rows;
+    private final ByteFieldRow[] byteRows;
+    private final ArrayFieldRow[] arrayRows;
+    private final ArrayFieldRow[] computedRows;
+    private final String[][] computedFields;
+    private final JoinedFieldRow[][] joinedRows;
+    private final int[] selection;
+    private int size;
+    private int selectedCount;
+    private int[] columns;
+    private ProjectedFieldRow projectedRow;
+
+    public RowVector(int capacity) {
+        rows = new FieldRow[capacity];
+        byteRows = new ByteFieldRow[capacity];
+        arrayRows = new ArrayFieldRow[capacity];
+        computedRows = new ArrayFieldRow[capacity];
+        computedFields = new String[capacity][];
+        joinedRows = new JoinedFieldRow[capacity][];
+        selection = new int[capacity];
+    }
+
+    /**
+     * Adds a copy of the row to the vector, the row is selected
+     * @param row
+     * @returns true if the vector is full
+     */
+    public boolean add(FieldRow row) {
+        int slot = size++;
+        if(row instanceof ByteFieldRow) {
+            if(byteRows[slot] == null) {
+                byteRows[slot] = new ByteFieldRow();
+            }
+            rows[slot] = byteRows[slot].copyFrom((ByteFieldRow) row);
+        } else {
+            if(arrayRows[slot] == null) {
+                arrayRows[slot] = new ArrayFieldRow();
+            }
+            rows[slot] = arrayRows[slot].setFields(row.toArray());
+        }
+        selection[selectedCount++] = slot;
+        return size == rows.length;
+    }
+
+    /**
+     * Replaces the rows, selection and projection of this vector by the ones of the other vector, the rows are shared
+     * @param other a vector with the same capacity
+     */
+    public void copyFrom(RowVector other) {
+        System.arraycopy(other.rows, 0, rows, 0, other.size);
+        System.arraycopy(other.selection, 0, selection, 0, other.selectedCount);
+        size = other.size;
+        selectedCount = other.selectedCount;
+        setColumns(other.columns);
+    }
+
+    public void clear() {
+        size = 0;
+        selectedCount = 0;
+        setColumns(null);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @returns the rows of the vector by slot, a field of an operation is read with getColumn
+     */
+    public FieldRow[] getRows() {
+        return rows;
+    }
+
+    /**
+     * @returns the slots of the selected rows in the first getSelectedCount entries, in the rows order
+     */
+    public int[] getSelection() {
+        return selection;
+    }
+
+    public int getSelectedCount() {
+        return selectedCount;
+    }
+
+    public void setSelectedCount(int selectedCount) {
+        this.selectedCount = selectedCount;
+    }
+
+    /**
+     * @param fieldIndex the field index of an operation
+     * @returns the index of the field in the rows
+     */
+    public int getColumn(int fieldIndex) {
+        return columns == null ? fieldIndex : columns[fieldIndex];
+    }
+
+    /**
+     * Projects the rows to the given fields, the field indexes of the next operations refer to the projection
+     * @param fieldIndexes
+     */
+    public void project(int... fieldIndexes) {
+        int[] projection = new int[fieldIndexes.length];
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            projection[i] = getColumn(fieldIndexes[i]);
+        }
+        setColumns(projection);
+    }
+
+    /**
+     * Replaces the row in the slot by a row with the single computed field, the projection must be cleared with
+     * clearProjection once all the selected rows are computed
+     * @param slot
+     * @param value
+     */
+    public void setComputedField(int slot, String value) {
+        if(computedRows[slot] == null) {
+            computedFields[slot] = new String[1];
+            computedRows[slot] = new ArrayFieldRow(computedFields[slot]);
+        }
+        computedFields[slot][0] = value;
+        rows[slot] = computedRows[slot];
+    }
+
+    /**
+     * Replaces the row in the slot by the row (as seen through the projection) joined with a row of the lookup table,
+     * the projection must be cleared with clearProjection once all the selected rows are joined
+     * @param slot
+     * @param table
+     * @param lookupRow
+     */
+    public void setJoinedRow(int slot, LookupTable table, int lookupRow) {
+        //a joined row of a previous join of the chain is wrapped by the view of the next level
+        int level = rows[slot] instanceof JoinedFieldRow ? ((JoinedFieldRow) rows[slot]).getLevel() + 1 : 0;
+        if(joinedRows[slot] == null || joinedRows[slot].length <= level) {
+            joinedRows[slot] = joinedRows[slot] == null ? new JoinedFieldRow[level + 1] : Arrays.copyOf(joinedRows[slot], level + 1);
+        }
+        if(joinedRows[slot][level] == null) {
+            joinedRows[slot][level] = new JoinedFieldRow(level);
+        }
+        rows[slot] = joinedRows[slot][level].setRow(rows[slot], columns, table, lookupRow);
+    }
+
+    public void clearProjection() {
+        setColumns(null);
+    }
+
+    /**
+     * @param slot
+     * @returns the row in the slot as seen by the operations (after the projection), the returned row may be
+     * reused by the next call
+     */
+    public FieldRow getRow(int slot) {
+        return columns == null ? rows[slot] : projectedRow.setRow(rows[slot]);
+    }
+
+    private void setColumns(int[] columns) {
+        this.columns = columns;
+        this.projectedRow = columns == null ? null : new ProjectedFieldRow(columns);
+    }
+}
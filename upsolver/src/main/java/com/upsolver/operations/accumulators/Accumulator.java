@@ -0,0 +1,45 @@
+package com.upsolver.operations.accumulators;
+
+import com.upsolver.components.FieldRow;
+import com.upsolver.components.Matrix;
+
+/**
+ * An accumulator keeps the running state of an aggregation operation, so the aggregation can be computed
+ * while the rows are processed instead of buffering all the rows in a matrix.
+ */
+public interface Accumulator {
+    /**
+     * Adds the value of the first field of a transformed row to the running state
+     * @param value
+     */
+    void accumulate(String value);
+
+    /**
+     * Adds the value of a field of a transformed row to the running state
+     * @param row
+     * @param index
+     */
+    default void accumulate(FieldRow row, int index) {
+        accumulate(row.getField(index));
+    }
+
+    /**
+     * Adds a transformed row to the running state, the numeric aggregations add its first field
+     * @param row
+     */
+    default void accumulate(FieldRow row) {
+        accumulate(row, 0);
+    }
+
+    /**
+     * Merges the running state of another accumulator of the same operation into this one
+     * @param other
+     */
+    void merge(Accumulator other);
+
+    /**
+     * Retrieves a matrix with the aggregated value (a row per group for groupby), or null when there is no result
+     * @returns Matrix
+     */
+    Matrix getResult();
+}
@@ -0,0 +1,18 @@
+package com.upsolver.operations.accumulators;
+
+import java.util.OptionalDouble;
+
+/**
+ * The average is kept as a running sum and count, merging two averages merges their sums and counts.
+ */
+public class AvgAccumulator extends SumAccumulator {
+
+    public AvgAccumulator() {
+        super("AVG");
+    }
+
+    @Override
+    protected OptionalDouble getValue() {
+        return count > 0 ? OptionalDouble.of(getSum() / count) : OptionalDouble.empty();
+    }
+}
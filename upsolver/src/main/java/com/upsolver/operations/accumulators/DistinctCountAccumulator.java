@@ -0,0 +1,154 @@
+package com.upsolver.operations.accumulators;
+
+import com.upsolver.components.FieldRow;
+import com.upsolver.components.KeyIndex;
+import com.upsolver.components.Matrix;
+import com.upsolver.components.Row;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counts the distinct values of the first field with a HyperLogLog sketch of 2^14 registers (16KB), the count has
+ * a standard error of about 0.8% however many distinct values there are. Merging two sketches keeps the max of each
+ * register, so the count of the merged sketch is the count of the union.
+ * In exact mode (distinct(exact)) the distinct values are kept in a KeyIndex instead, for validating the estimate.
+ */
+public class DistinctCountAccumulator implements Accumulator {
+    public static final String EXACT_OPTION = "exact";
+
+    private static final int PRECISION = 14;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final byte[] registers;
+    private final KeyIndex distinctValues;
+    private long count;
+
+    /**
+     * @param parameters optional exact option
+     */
+    public DistinctCountAccumulator(List<String> parameters) {
+        this(isExact(parameters));
+    }
+
+    public DistinctCountAccumulator(boolean exact) {
+        registers = exact ? null : new byte[REGISTERS];
+        distinctValues = exact ? new KeyIndex() : null;
+    }
+
+    static boolean isExact(List<String> parameters) {
+        if(parameters != null) {
+            for (String parameter : parameters) {
+                if(EXACT_OPTION.equals(parameter.trim())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void accumulate(String value) {
+        if(value == null) {
+            return;
+        }
+        count++;
+        if(distinctValues != null) {
+            distinctValues.getOrAdd(value);
+        } else {
+            long hash = FNV_OFFSET_BASIS;
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+            addHash(hash);
+        }
+    }
+
+    //hashes the field from the row characters, so ASCII fields of byte rows are not decoded
+    @Override
+    public void accumulate(FieldRow row, int index) {
+        if(distinctValues != null) {
+            count++;
+            distinctValues.getOrAdd(row, index);
+            return;
+        }
+        int length = row.getFieldLength(index);
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < length; i++) {
+            char c = row.getFieldChar(index, i);
+            if(c > 0x7f) {
+                //byte rows return the UTF-8 bytes of non ASCII characters, the value is the decoded field
+                accumulate(row.getField(index));
+                return;
+            }
+            hash = (hash ^ c) * FNV_PRIME;
+        }
+        count++;
+        addHash(hash);
+    }
+
+    @Override
+    public void merge(Accumulator other) {
+        DistinctCountAccumulator otherAccumulator = (DistinctCountAccumulator) other;
+        count += otherAccumulator.count;
+        if(distinctValues != null) {
+            for (int i = 0; i < otherAccumulator.distinctValues.size(); i++) {
+                distinctValues.getOrAdd(otherAccumulator.distinctValues, i);
+            }
+        } else {
+            for (int i = 0; i < REGISTERS; i++) {
+                registers[i] = (byte) Math.max(registers[i], otherAccumulator.registers[i]);
+            }
+        }
+    }
+
+    @Override
+    public Matrix getResult() {
+        if(count == 0) {
+            return null;
+        }
+        Row row = Row.createRow(String.valueOf(getDistinctCount()));
+        return new Matrix(Collections.singletonList(row));
+    }
+
+    /**
+     * @returns the exact count in exact mode, otherwise the HyperLogLog estimate
+     */
+    public long getDistinctCount() {
+        if(distinctValues != null) {
+            return distinctValues.size();
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if(register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if(estimate <= 2.5 * REGISTERS && zeros > 0) {
+            //small range correction, linear counting of the empty registers
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private void addHash(long fnvHash) {
+        //the murmur3 finalizer spreads the FNV hash over all the bits
+        long hash = fnvHash;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        int register = (int) (hash >>> (64 - PRECISION));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if(rank > registers[register]) {
+            registers[register] = rank;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.upsolver.operations.accumulators;
+
+import com.upsolver.NumberParser;
+import com.upsolver.components.ArrayFieldRow;
+import com.upsolver.components.ColumnarMatrix;
+import com.upsolver.components.FieldRow;
+import com.upsolver.components.KeyIndex;
+import com.upsolver.components.Matrix;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aggregates the value field per distinct value of the key field: groupby(keyIdx, valueIdx, agg) where agg is one
+ * of sum, avg, min, max or count (the number of rows of the group).
+ * The groups are kept in a KeyIndex and the state of each group in primitive arrays indexed by the group id,
+ * so there is no object per group. The result matrix has a row per group, in the order the groups first appear,
+ * with the key and the aggregated value.
+ * An invalid (non numeric) value fails the whole aggregation the same way the other aggregations do.
+ */
+public class GroupByAccumulator implements Accumulator {
+    private static final int KEY_INDEX_PARAMETER = 0;
+    private static final int VALUE_INDEX_PARAMETER = 1;
+    private static final int AGGREGATION_PARAMETER = 2;
+
+    public enum Aggregation {
+        SUM, AVG, MIN, MAX, COUNT
+    }
+
+    private final int keyIndex;
+    private final int valueIndex;
+    private final Aggregation aggregation;
+    private final NumberParser parser = new NumberParser();
+    private final KeyIndex groups = new KeyIndex();
+    private double[] values = new double[64];
+    private double[] compensations; //the Kahan summation compensation of each group, for sum and avg
+    private long[] counts = new long[64];
+    private boolean invalid;
+
+    /**
+     * @param parameters keyIdx, valueIdx, agg
+     */
+    public GroupByAccumulator(List<String> parameters) {
+        this(Integer.parseInt(parameters.get(KEY_INDEX_PARAMETER).trim()),
+                Integer.parseInt(parameters.get(VALUE_INDEX_PARAMETER).trim()),
+                parseAggregation(parameters.get(AGGREGATION_PARAMETER)));
+    }
+
+    public GroupByAccumulator(int keyIndex, int valueIndex, Aggregation aggregation) {
+        this.keyIndex = keyIndex;
+        this.valueIndex = valueIndex;
+        this.aggregation = aggregation;
+        if(aggregation == Aggregation.SUM || aggregation == Aggregation.AVG) {
+            compensations = new double[values.length];
+        }
+    }
+
+    public int getKeyIndex() {
+        return keyIndex;
+    }
+
+    public int getValueIndex() {
+        return valueIndex;
+    }
+
+    private static Aggregation parseAggregation(String aggregation) {
+        try {
+            return Aggregation.valueOf(aggregation.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid aggregation in groupby operation: " + aggregation.trim());
+        }
+    }
+
+    /**
+     * A single value has no group key, the group by aggregation accumulates whole rows
+     * @param value
+     */
+    @Override
+    public void accumulate(String value) {
+        throw new UnsupportedOperationException("groupby accumulates rows");
+    }
+
+    //the index is ignored, the key and value fields are given by the operation parameters
+    @Override
+    public void accumulate(FieldRow row, int index) {
+        accumulate(row);
+    }
+
+    @Override
+    public void accumulate(FieldRow row) {
+        if(invalid) {
+            return;
+        }
+        if(aggregation == Aggregation.COUNT) {
+            int group = addGroup(row);
+            counts[group]++;
+            return;
+        }
+        if(!row.parseNumber(valueIndex, parser)) {
+            if(row.getField(valueIndex) != null) {
+                invalid = true;
+            }
+            return;
+        }
+        int group = addGroup(row);
+        accumulate(group, parser.getDouble());
+        counts[group]++;
+    }
+
+    @Override
+    public void merge(Accumulator other) {
+        GroupByAccumulator otherAccumulator = (GroupByAccumulator) other;
+        invalid |= otherAccumulator.invalid;
+        if(invalid) {
+            return;
+        }
+        for (int otherGroup = 0; otherGroup < otherAccumulator.groups.size(); otherGroup++) {
+            int group = groups.getOrAdd(otherAccumulator.groups, otherGroup);
+            ensureCapacity(group + 1);
+            long otherCount = otherAccumulator.counts[otherGroup];
+            if(aggregation == Aggregation.SUM || aggregation == Aggregation.AVG) {
+                //the same merge of compensated sums as SumAccumulator
+                sumWithCompensation(group, otherAccumulator.values[otherGroup]);
+                sumWithCompensation(group, -otherAccumulator.compensations[otherGroup]);
+            } else if(aggregation != Aggregation.COUNT && otherCount > 0) {
+                accumulate(group, otherAccumulator.values[otherGroup]);
+            }
+            counts[group] += otherCount;
+        }
+    }
+
+    @Override
+    public Matrix getResult() {
+        if(invalid) {
+            System.out.println("Invalid GROUPBY operation on field " + valueIndex);
+            return null;
+        }
+        if(groups.size() == 0) {
+            return null;
+        }
+        ColumnarMatrix matrix = new ColumnarMatrix();
+        String[] fields = new String[2];
+        ArrayFieldRow row = new ArrayFieldRow(fields);
+        for (int group = 0; group < groups.size(); group++) {
+            fields[0] = groups.getKey(group);
+            fields[1] = getValue(group);
+            matrix.addRow(row);
+        }
+        return matrix;
+    }
+
+    /**
+     * @returns the number of distinct groups
+     */
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    private int addGroup(FieldRow row) {
+        int group = groups.getOrAdd(row, keyIndex);
+        ensureCapacity(group + 1);
+        return group;
+    }
+
+    private void accumulate(int group, double value) {
+        switch (aggregation) {
+            case SUM:
+            case AVG:
+                sumWithCompensation(group, value);
+                break;
+            case MIN:
+                values[group] = counts[group] == 0 ? value : Math.min(values[group], value);
+                break;
+            case MAX:
+                values[group] = counts[group] == 0 ? value : Math.max(values[group], value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void sumWithCompensation(int group, double value) {
+        double tmp = value - compensations[group];
+        double velvel = values[group] + tmp;
+        compensations[group] = (velvel - values[group]) - tmp;
+        values[group] = velvel;
+    }
+
+    private String getValue(int group) {
+        switch (aggregation) {
+            case COUNT:
+                return String.valueOf(counts[group]);
+            case SUM:
+                return String.valueOf(getSum(group));
+            case AVG:
+                return String.valueOf(getSum(group) / counts[group]);
+            default:
+                return String.valueOf(values[group]);
+        }
+    }
+
+    private double getSum(int group) {
+        double sum = values[group] - compensations[group];
+        return Double.isNaN(sum) ? values[group] : sum;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity > values.length) {
+            int newLength = Math.max(capacity, values.length * 2);
+            values = Arrays.copyOf(values, newLength);
+            counts = Arrays.copyOf(counts, newLength);
+            if(compensations != null) {
+                compensations = Arrays.copyOf(compensations, newLength);
+            }
+        }
+    }
+}
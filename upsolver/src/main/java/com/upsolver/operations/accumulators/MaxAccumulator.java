@@ -0,0 +1,39 @@
+package com.upsolver.operations.accumulators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.OptionalDouble;
+
+public class MaxAccumulator extends NumericAccumulator {
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public MaxAccumulator() {
+        super("MAX");
+    }
+
+    @Override
+    protected void accumulate(double value) {
+        max = Math.max(max, value);
+    }
+
+    @Override
+    protected void mergeState(NumericAccumulator other) {
+        max = Math.max(max, ((MaxAccumulator) other).max);
+    }
+
+    @Override
+    protected void writeValues(DataOutput output) throws IOException {
+        output.writeDouble(max);
+    }
+
+    @Override
+    protected void readValues(DataInput input) throws IOException {
+        max = input.readDouble();
+    }
+
+    @Override
+    protected OptionalDouble getValue() {
+        return count > 0 ? OptionalDouble.of(max) : OptionalDouble.empty();
+    }
+}
@@ -0,0 +1,39 @@
+package com.upsolver.operations.accumulators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.OptionalDouble;
+
+public class MinAccumulator extends NumericAccumulator {
+    private double min = Double.POSITIVE_INFINITY;
+
+    public MinAccumulator() {
+        super("MIN");
+    }
+
+    @Override
+    protected void accumulate(double value) {
+        min = Math.min(min, value);
+    }
+
+    @Override
+    protected void mergeState(NumericAccumulator other) {
+        min = Math.min(min, ((MinAccumulator) other).min);
+    }
+
+    @Override
+    protected void writeValues(DataOutput output) throws IOException {
+        output.writeDouble(min);
+    }
+
+    @Override
+    protected void readValues(DataInput input) throws IOException {
+        min = input.readDouble();
+    }
+
+    @Override
+    protected OptionalDouble getValue() {
+        return count > 0 ? OptionalDouble.of(min) : OptionalDouble.empty();
+    }
+}
@@ -0,0 +1,121 @@
+package com.upsolver.operations.accumulators;
+
+import com.upsolver.NumberParser;
+import com.upsolver.components.FieldRow;
+import com.upsolver.components.Matrix;
+import com.upsolver.components.Row;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.OptionalDouble;
+
+/**
+ * Base class for the numeric aggregations, parses each value once and keeps track of invalid (non numeric) values.
+ * An invalid value fails the whole aggregation the same way the buffered aggregation functions do.
+ * The running state can be saved with writeState and restored with readState, to continue the aggregation later.
+ */
+public abstract class NumericAccumulator implements Accumulator {
+    private final String operationName;
+    private final NumberParser parser = new NumberParser();
+    protected long count;
+    private boolean invalid;
+
+    protected NumericAccumulator(String operationName) {
+        this.operationName = operationName;
+    }
+
+    @Override
+    public void accumulate(String value) {
+        if(invalid || value == null) {
+            return;
+        }
+        if(parser.parse(value)) {
+            accumulate(parser.getDouble());
+            count++;
+        } else {
+            invalid = true;
+        }
+    }
+
+    //parses the field directly from the row, so byte rows are not decoded
+    @Override
+    public void accumulate(FieldRow row, int index) {
+        if(invalid) {
+            return;
+        }
+        if(row.parseNumber(index, parser)) {
+            accumulate(parser.getDouble());
+            count++;
+        } else if(row.getField(index) != null) {
+            invalid = true;
+        }
+    }
+
+    @Override
+    public void merge(Accumulator other) {
+        NumericAccumulator otherAccumulator = (NumericAccumulator) other;
+        invalid |= otherAccumulator.invalid;
+        if(!invalid) {
+            count += otherAccumulator.count;
+            mergeState(otherAccumulator);
+        }
+    }
+
+    @Override
+    public Matrix getResult() {
+        if(invalid) {
+            System.out.println("Invalid " + operationName + " operation on field 0");
+            return null;
+        }
+        return getValueMatrix();
+    }
+
+    //a matrix with one row that holds the aggregated value, or null when there are no values
+    protected Matrix getValueMatrix() {
+        OptionalDouble value = getValue();
+        if(value.isPresent()) {
+            Row row = Row.createRow(String.valueOf(value.getAsDouble()));
+            return new Matrix(Collections.singletonList(row));
+        } else {
+            return null;
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the running state of the aggregation
+     * @param output
+     * @throws IOException
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeLong(count);
+        output.writeBoolean(invalid);
+        writeValues(output);
+    }
+
+    /**
+     * Replaces the running state with a state that was written by writeState of the same aggregation
+     * @param input
+     * @throws IOException
+     */
+    public void readState(DataInput input) throws IOException {
+        count = input.readLong();
+        invalid = input.readBoolean();
+        readValues(input);
+    }
+
+    protected abstract void accumulate(double value);
+
+    protected abstract void mergeState(NumericAccumulator other);
+
+    protected abstract void writeValues(DataOutput output) throws IOException;
+
+    protected abstract void readValues(DataInput input) throws IOException;
+
+    protected abstract OptionalDouble getValue();
+}
@@ -0,0 +1,198 @@
+package com.upsolver.operations.accumulators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.Random;
+
+/**
+ * Computes a percentile of the values with a KLL sketch: percentile(p) where p is between 0 and 100.
+ * The sketch keeps levels of sampled values, a value in level h stands for 2^h values. When the sketch is full
+ * a level is sorted and every other value (from a random offset) is promoted to the next level, so the sketch keeps
+ * about 3 * K values however many values are accumulated, and the rank error is about 1.7% with K = 200.
+ * Merging two sketches merges their levels. In exact mode (percentile(p, exact)) all the values are kept.
+ * The percentile is the nearest rank value: the value at rank ceil(p / 100 * count).
+ * The saved state holds the levels, the random offsets of the compactions that follow a restore are not the same
+ * as they would be without it.
+ */
+public class QuantileAccumulator extends NumericAccumulator {
+    private static final int PERCENTILE_PARAMETER = 0;
+    private static final int K = 200;
+    private static final int MIN_LEVEL_CAPACITY = 8;
+    private static final double LEVEL_CAPACITY_RATIO = 2.0 / 3.0;
+
+    private final double percentile;
+    private final boolean exact;
+    private final Random random = new Random(1);
+    private double[][] levels = new double[][]{new double[K]};
+    private int[] levelSizes = new int[1];
+    private int retained;
+    private int capacity = K;
+    //the min and max are kept exactly, they are the 0 and 100 percentiles
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param parameters the percentile and an optional exact option
+     */
+    public QuantileAccumulator(List<String> parameters) {
+        this(Double.parseDouble(parameters.get(PERCENTILE_PARAMETER).trim()), DistinctCountAccumulator.isExact(parameters));
+    }
+
+    public QuantileAccumulator(double percentile, boolean exact) {
+        super("PERCENTILE");
+        if(!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Invalid percentile in percentile operation: " + percentile);
+        }
+        this.percentile = percentile;
+        this.exact = exact;
+    }
+
+    @Override
+    protected void accumulate(double value) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        add(0, value);
+        compressIfFull();
+    }
+
+    @Override
+    protected void mergeState(NumericAccumulator other) {
+        QuantileAccumulator otherSketch = (QuantileAccumulator) other;
+        min = Math.min(min, otherSketch.min);
+        max = Math.max(max, otherSketch.max);
+        for (int level = 0; level < otherSketch.levels.length; level++) {
+            for (int i = 0; i < otherSketch.levelSizes[level]; i++) {
+                add(level, otherSketch.levels[level][i]);
+            }
+        }
+        compressIfFull();
+    }
+
+    @Override
+    protected void writeValues(DataOutput output) throws IOException {
+        output.writeDouble(min);
+        output.writeDouble(max);
+        output.writeInt(levels.length);
+        for (int level = 0; level < levels.length; level++) {
+            output.writeInt(levelSizes[level]);
+            for (int i = 0; i < levelSizes[level]; i++) {
+                output.writeDouble(levels[level][i]);
+            }
+        }
+    }
+
+    @Override
+    protected void readValues(DataInput input) throws IOException {
+        min = input.readDouble();
+        max = input.readDouble();
+        int levelCount = input.readInt();
+        levels = new double[levelCount][];
+        levelSizes = new int[levelCount];
+        retained = 0;
+        for (int level = 0; level < levelCount; level++) {
+            levelSizes[level] = input.readInt();
+            levels[level] = new double[Math.max(MIN_LEVEL_CAPACITY, levelSizes[level])];
+            for (int i = 0; i < levelSizes[level]; i++) {
+                levels[level][i] = input.readDouble();
+            }
+            retained += levelSizes[level];
+        }
+        capacity = getCapacity();
+    }
+
+    @Override
+    protected OptionalDouble getValue() {
+        if(count == 0) {
+            return OptionalDouble.empty();
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        if(rank == 1 || rank == count) {
+            return OptionalDouble.of(rank == 1 ? min : max);
+        }
+        //walks the values of all the levels in sorted order, a value in level h has the weight 2^h
+        int[] positions = new int[levels.length];
+        for (int level = 0; level < levels.length; level++) {
+            Arrays.sort(levels[level], 0, levelSizes[level]);
+        }
+        long cumulativeWeight = 0;
+        double value = Double.NaN;
+        while (cumulativeWeight < rank) {
+            int minLevel = -1;
+            for (int level = 0; level < levels.length; level++) {
+                if(positions[level] < levelSizes[level] && (minLevel < 0
+                        || Double.compare(levels[level][positions[level]], levels[minLevel][positions[minLevel]]) < 0)) {
+                    minLevel = level;
+                }
+            }
+            if(minLevel < 0) {
+                break;
+            }
+            value = levels[minLevel][positions[minLevel]++];
+            cumulativeWeight += 1L << minLevel;
+        }
+        return OptionalDouble.of(value);
+    }
+
+    private void add(int level, double value) {
+        if(level >= levels.length) {
+            int oldLength = levels.length;
+            levels = Arrays.copyOf(levels, level + 1);
+            for (int i = oldLength; i <= level; i++) {
+                levels[i] = new double[MIN_LEVEL_CAPACITY];
+            }
+            levelSizes = Arrays.copyOf(levelSizes, level + 1);
+            capacity = getCapacity();
+        }
+        if(levelSizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][levelSizes[level]++] = value;
+        retained++;
+    }
+
+    private void compressIfFull() {
+        if(exact) {
+            return;
+        }
+        while (retained >= capacity) {
+            for (int level = 0; level < levels.length; level++) {
+                if(levelSizes[level] >= getLevelCapacity(level)) {
+                    compact(level);
+                    break;
+                }
+            }
+        }
+    }
+
+    //promotes every other value of the sorted level to the next level, an odd value is kept in the level
+    private void compact(int level) {
+        int size = levelSizes[level];
+        double[] values = levels[level];
+        Arrays.sort(values, 0, size);
+        int start = size % 2;
+        int offset = random.nextBoolean() ? 1 : 0;
+        for (int i = start + offset; i < size; i += 2) {
+            add(level + 1, values[i]);
+        }
+        levelSizes[level] = start;
+        retained -= size - start;
+    }
+
+    private int getCapacity() {
+        int capacity = 0;
+        for (int level = 0; level < levels.length; level++) {
+            capacity += getLevelCapacity(level);
+        }
+        return capacity;
+    }
+
+    //the top level holds K values, each level below holds 2/3 of the level above
+    private int getLevelCapacity(int level) {
+        int depth = levels.length - 1 - level;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(K * Math.pow(LEVEL_CAPACITY_RATIO, depth)));
+    }
+}
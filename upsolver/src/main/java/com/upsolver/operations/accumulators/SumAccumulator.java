@@ -0,0 +1,84 @@
+package com.upsolver.operations.accumulators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.OptionalDouble;
+
+/**
+ * Keeps a compensated (Kahan) running sum, the same summation DoubleStream.sum() uses,
+ * so the streaming result is identical to the buffered one.
+ */
+public class SumAccumulator extends NumericAccumulator {
+    private double sum;
+    private double sumCompensation;
+    private double simpleSum;
+
+    public SumAccumulator() {
+        super("SUM");
+    }
+
+    protected SumAccumulator(String operationName) {
+        super(operationName);
+    }
+
+    /**
+     * @param values
+     * @returns the compensated sum of the values
+     */
+    public static double sum(double[] values) {
+        SumAccumulator accumulator = new SumAccumulator();
+        for (double value : values) {
+            accumulator.accumulate(value);
+        }
+        return accumulator.getSum();
+    }
+
+    @Override
+    protected void accumulate(double value) {
+        simpleSum += value;
+        sumWithCompensation(value);
+    }
+
+    @Override
+    protected void mergeState(NumericAccumulator other) {
+        SumAccumulator otherSum = (SumAccumulator) other;
+        simpleSum += otherSum.simpleSum;
+        sumWithCompensation(otherSum.sum);
+        sumWithCompensation(-otherSum.sumCompensation);
+    }
+
+    @Override
+    protected void writeValues(DataOutput output) throws IOException {
+        output.writeDouble(sum);
+        output.writeDouble(sumCompensation);
+        output.writeDouble(simpleSum);
+    }
+
+    @Override
+    protected void readValues(DataInput input) throws IOException {
+        sum = input.readDouble();
+        sumCompensation = input.readDouble();
+        simpleSum = input.readDouble();
+    }
+
+    @Override
+    protected OptionalDouble getValue() {
+        return OptionalDouble.of(getSum());
+    }
+
+    protected double getSum() {
+        double tmp = sum - sumCompensation;
+        if (Double.isNaN(tmp) && Double.isInfinite(simpleSum)) {
+            return simpleSum;
+        }
+        return tmp;
+    }
+
+    private void sumWithCompensation(double value) {
+        double tmp = value - sumCompensation;
+        double velvel = sum + tmp;
+        sumCompensation = (velvel - sum) - tmp;
+        sum = velvel;
+    }
+}
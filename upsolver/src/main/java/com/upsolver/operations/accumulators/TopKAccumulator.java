@@ -0,0 +1,128 @@
+package com.upsolver.operations.accumulators;
+
+import com.upsolver.components.Matrix;
+import com.upsolver.components.Row;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalDouble;
+
+/**
+ * Keeps the k largest values in a bounded min heap, so only k values are kept however many rows are accumulated.
+ * The heap is exact, merging two heaps keeps the k largest values of both.
+ * The result matrix has a row per value, from the largest value down.
+ */
+public class TopKAccumulator extends NumericAccumulator {
+    private static final int K_PARAMETER = 0;
+
+    private final double[] heap;
+    private int size;
+
+    /**
+     * @param parameters the number of values to keep
+     */
+    public TopKAccumulator(List<String> parameters) {
+        this(Integer.parseInt(parameters.get(K_PARAMETER).trim()));
+    }
+
+    public TopKAccumulator(int k) {
+        super("TOP");
+        if(k <= 0) {
+            throw new IllegalArgumentException("Invalid k in top operation: " + k);
+        }
+        heap = new double[k];
+    }
+
+    @Override
+    protected void accumulate(double value) {
+        if(size < heap.length) {
+            heap[size] = value;
+            siftUp(size++);
+        } else if(Double.compare(value, heap[0]) > 0) {
+            heap[0] = value;
+            siftDown(0);
+        }
+    }
+
+    @Override
+    protected void mergeState(NumericAccumulator other) {
+        TopKAccumulator otherTop = (TopKAccumulator) other;
+        for (int i = 0; i < otherTop.size; i++) {
+            accumulate(otherTop.heap[i]);
+        }
+    }
+
+    @Override
+    protected void writeValues(DataOutput output) throws IOException {
+        output.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            output.writeDouble(heap[i]);
+        }
+    }
+
+    //the values were written in the heap order
+    @Override
+    protected void readValues(DataInput input) throws IOException {
+        size = input.readInt();
+        if(size > heap.length) {
+            throw new IOException("Invalid top state size: " + size);
+        }
+        for (int i = 0; i < size; i++) {
+            heap[i] = input.readDouble();
+        }
+    }
+
+    //the smallest of the top values
+    @Override
+    protected OptionalDouble getValue() {
+        return size > 0 ? OptionalDouble.of(heap[0]) : OptionalDouble.empty();
+    }
+
+    @Override
+    protected Matrix getValueMatrix() {
+        if(size == 0) {
+            return null;
+        }
+        double[] values = Arrays.copyOf(heap, size);
+        Arrays.sort(values);
+        List<Row> rows = new ArrayList<>(size);
+        for (int i = values.length - 1; i >= 0; i--) {
+            rows.add(Row.createRow(String.valueOf(values[i])));
+        }
+        return new Matrix(rows);
+    }
+
+    private void siftUp(int index) {
+        double value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if(Double.compare(value, heap[parent]) >= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    private void siftDown(int index) {
+        double value = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if(child + 1 < size && Double.compare(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if(Double.compare(value, heap[child]) <= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+}
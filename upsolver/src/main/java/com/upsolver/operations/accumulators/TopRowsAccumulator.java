@@ -0,0 +1,158 @@
+package com.upsolver.operations.accumulators;
+
+import com.upsolver.components.ArrayFieldRow;
+import com.upsolver.components.FieldRow;
+import com.upsolver.components.Matrix;
+import com.upsolver.components.Row;
+import com.upsolver.components.SortOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the first rows of a sort with a limit in a bounded heap, so only limit rows are kept however many rows are
+ * accumulated. The root of the heap is the last kept row, a new row replaces it only if it sorts before it, and a row
+ * is copied only when it is kept. Rows with equal keys keep their accumulation order, the rows of a merged accumulator
+ * (of the next part of the file) come after the rows of this one.
+ * The result matrix has the kept rows in the sort order.
+ */
+public class TopRowsAccumulator implements Accumulator {
+    private final int limit;
+    //the keys of the heap slots, and the key of the next row in the slot after them
+    private final SortOrder.Keys keys;
+    private final Row[] rows;
+    private final long[] sequences;
+    private final ArrayFieldRow valueRow = new ArrayFieldRow();
+    private int size;
+    private long rowCount;
+
+    /**
+     * @param parameters the parameters of the sort operation, with a limit
+     */
+    public TopRowsAccumulator(List<String> parameters) {
+        this(SortOrder.compile(parameters));
+    }
+
+    public TopRowsAccumulator(SortOrder sortOrder) {
+        if(!sortOrder.hasLimit()) {
+            throw new IllegalArgumentException("Missing limit in sort operation");
+        }
+        this.limit = sortOrder.getLimit();
+        this.keys = sortOrder.createKeys(limit + 1);
+        this.rows = new Row[limit];
+        this.sequences = new long[limit];
+    }
+
+    @Override
+    public void accumulate(String value) {
+        accumulate(valueRow.setFields(new String[]{value}));
+    }
+
+    @Override
+    public void accumulate(FieldRow row, int index) {
+        accumulate(row);
+    }
+
+    @Override
+    public void accumulate(FieldRow row) {
+        keys.set(limit, row);
+        int slot = offer(rowCount++);
+        if(slot >= 0) {
+            rows[slot] = new Row(row.toArray());
+        }
+    }
+
+    @Override
+    public void merge(Accumulator other) {
+        TopRowsAccumulator otherTop = (TopRowsAccumulator) other;
+        for (int i = 0; i < otherTop.size; i++) {
+            keys.copy(otherTop.keys, i, limit);
+            int slot = offer(rowCount + otherTop.sequences[i]);
+            if(slot >= 0) {
+                rows[slot] = otherTop.rows[i];
+            }
+        }
+        rowCount += otherTop.rowCount;
+    }
+
+    @Override
+    public Matrix getResult() {
+        if(size == 0) {
+            return null;
+        }
+        Integer[] slots = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = i;
+        }
+        //the sequences of the kept rows are distinct, so two slots are never equal
+        Arrays.sort(slots, (slot, otherSlot) -> slot.equals(otherSlot) ? 0
+                : isBefore(slot, sequences[slot], otherSlot, sequences[otherSlot]) ? -1 : 1);
+        List<Row> result = new ArrayList<>(size);
+        for (int slot : slots) {
+            result.add(rows[slot]);
+        }
+        return new Matrix(result);
+    }
+
+    //adds the key in the last slot to the heap, returns the slot of the new row or -1 if the row is not kept
+    private int offer(long sequence) {
+        int slot;
+        if(size < limit) {
+            slot = size++;
+        } else if(isBefore(limit, sequence, 0, sequences[0])) {
+            slot = 0;
+        } else {
+            return -1;
+        }
+        keys.copy(keys, limit, slot);
+        sequences[slot] = sequence;
+        rows[slot] = null;
+        return slot == 0 && size == limit ? siftDown(0) : siftUp(slot);
+    }
+
+    //true if the row of the slot sorts before the row of the other slot
+    private boolean isBefore(int slot, long sequence, int otherSlot, long otherSequence) {
+        int comparison = keys.compare(slot, otherSlot);
+        return comparison < 0 || comparison == 0 && sequence < otherSequence;
+    }
+
+    //the parent of a slot sorts after it, returns the final slot
+    private int siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if(!isBefore(parent, sequences[parent], slot, sequences[slot])) {
+                break;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+        return slot;
+    }
+
+    private int siftDown(int slot) {
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            if(child + 1 < size && isBefore(child, sequences[child], child + 1, sequences[child + 1])) {
+                child++;
+            }
+            if(!isBefore(slot, sequences[slot], child, sequences[child])) {
+                break;
+            }
+            swap(slot, child);
+            slot = child;
+        }
+        return slot;
+    }
+
+    private void swap(int slot, int otherSlot) {
+        keys.swap(slot, otherSlot);
+        Row row = rows[slot];
+        rows[slot] = rows[otherSlot];
+        rows[otherSlot] = row;
+        long sequence = sequences[slot];
+        sequences[slot] = sequences[otherSlot];
+        sequences[otherSlot] = sequence;
+    }
+}
@@ -0,0 +1,233 @@
+package com.upsolver.processors;
+
+import com.upsolver.io.MappedCsvReader;
+import com.upsolver.operations.OperationsManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Processes an append only csv file incrementally: the byte offset of the processed lines and the state of the
+ * aggregation are saved to a state file next to the data file, and the next process of the same operations continues
+ * from the saved state with the lines that were appended since. A line is processed only once it ends with a new line,
+ * a line that is still being appended is processed by the next process.
+ * The state is used only if the file starts with the same header and the bytes before the saved offset are unchanged
+ * (checked with the checksum of all the bytes before the offset, a pass over the processed lines that is much cheaper
+ * than parsing them again), otherwise the file is processed from the start.
+ * The operations must end with a numeric aggregation, see OperationsManager.hasSavableState.
+ */
+public class FollowFileProcessor {
+    public static final String FILE_EXTENSION = ".state";
+    public static final long DEFAULT_POLL_MILLIS = 1000;
+
+    private static final int MAGIC = 0x55505353; //UPSS
+    private static final int VERSION = 2;
+
+    private final File dataFile;
+    private final OperationsManager operationsManager;
+    private final String operationsStr;
+    //the checksum of the processed lines, continued with the new lines when the state is saved
+    private final CRC32 linesChecksum = new CRC32();
+
+    /**
+     * @param dataFile
+     * @param operationsManager
+     * @param operationsStr the operations of the manager, the state of other operations is kept in another state file
+     */
+    public FollowFileProcessor(File dataFile, OperationsManager operationsManager, String operationsStr) {
+        this.dataFile = dataFile;
+        this.operationsManager = operationsManager;
+        this.operationsStr = operationsStr.trim().toLowerCase();
+    }
+
+    /**
+     * Processes the file again whenever it changes, with a new operations manager for each process, until the
+     * thread is interrupted
+     * @param dataFile
+     * @param operationsManagers creates the operations manager of a process
+     * @param operationsStr
+     * @param pollMillis the interval of the file size checks
+     */
+    public static void follow(File dataFile, Supplier<OperationsManager> operationsManagers, String operationsStr,
+                              long pollMillis) {
+        long processedSize = -1;
+        long processedModified = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            long size = dataFile.length();
+            long modified = dataFile.lastModified();
+            if (size != processedSize || modified != processedModified) {
+                try {
+                    new FollowFileProcessor(dataFile, operationsManagers.get(), operationsStr).process();
+                } catch (IOException e) {
+                    //the file may be replaced, it is processed again on the next change
+                    e.printStackTrace();
+                }
+                processedSize = size;
+                processedModified = modified;
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @param dataFile
+     * @param operationsStr
+     * @return the state file of the operations for the data file
+     */
+    public static File getStateFile(File dataFile, String operationsStr) {
+        return new File(dataFile.getPath() + "." + Integer.toHexString(operationsStr.trim().toLowerCase().hashCode())
+                + FILE_EXTENSION);
+    }
+
+    /**
+     * Processes the lines that were appended since the saved state, saves the new state and finalizes the
+     * operations process with the result of all the lines
+     * @throws IOException
+     */
+    public void process() throws IOException {
+        try {
+            processFile();
+        } finally {
+            //releases the results of a process that failed before it was finalized
+            operationsManager.abortProcess();
+        }
+    }
+
+    private void processFile() throws IOException {
+        if (!operationsManager.hasSavableState()) {
+            System.out.println("Follow mode needs operations that end with a sum, avg, min, max, top or percentile");
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            MappedCsvReader headerReader = new MappedCsvReader(channel, 0, fileSize);
+            if (headerReader.next() && operationsManager.processDataRow(headerReader.getRow())) {
+                operationsManager.getMetrics().addScan(0, headerReader.getBytesRead(), 0);
+                long headerEnd = headerReader.getBytesRead();
+                long start = loadState(channel, headerEnd);
+                long end = getLinesEnd(channel, start, fileSize);
+                processRows(channel, start, end);
+                saveState(channel, headerEnd, start, end);
+            }
+        }
+        operationsManager.finalizeProcess();
+    }
+
+    private void processRows(FileChannel channel, long start, long end) throws IOException {
+        long startNanos = System.nanoTime();
+        long rows = 0;
+        try (MappedCsvReader reader = new MappedCsvReader(channel, start, end)) {
+            reader.setMaxFields(operationsManager.getRequiredFieldCount());
+            while (reader.next()) {
+                if (!operationsManager.processDataRow(reader.getRow())) {
+                    break;
+                }
+                rows++;
+            }
+            operationsManager.flush();
+            operationsManager.getMetrics().addScan(rows, reader.getBytesRead(), System.nanoTime() - startNanos);
+        }
+    }
+
+    //the end of the last line that ends with a new line, the lines before it are complete
+    private long getLinesEnd(FileChannel channel, long start, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long end = fileSize;
+        while (end > start) {
+            long position = Math.max(start, end - buffer.capacity());
+            buffer.clear().limit((int) (end - position));
+            readFully(channel, buffer, position);
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            end = position;
+        }
+        return start;
+    }
+
+    //the offset of the saved state, the end of the header if there is no valid state for the file
+    private long loadState(FileChannel channel, long headerEnd) throws IOException {
+        File stateFile = getStateFile(dataFile, operationsStr);
+        if (!stateFile.isFile()) {
+            return headerEnd;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || !operationsStr.equals(input.readUTF())) {
+                System.out.println("Invalid state file " + stateFile.getPath());
+                return headerEnd;
+            }
+            long savedHeaderEnd = input.readLong();
+            long offset = input.readLong();
+            long headerChecksum = input.readLong();
+            long checksum = input.readLong();
+            if (savedHeaderEnd != headerEnd || offset > channel.size()
+                    || headerChecksum != getChecksum(channel, 0, headerEnd)
+                    || checksum != updateChecksum(linesChecksum, channel, headerEnd, offset)) {
+                System.out.println("State file " + stateFile.getPath() + " is out of date, the file is processed from the start");
+                linesChecksum.reset();
+                return headerEnd;
+            }
+            operationsManager.readState(input);
+            return offset;
+        }
+    }
+
+    //writes the state to a new file that replaces the state file, so a failed process keeps the previous state
+    private void saveState(FileChannel channel, long headerEnd, long start, long offset) throws IOException {
+        File stateFile = getStateFile(dataFile, operationsStr);
+        File tempFile = new File(stateFile.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(operationsStr);
+            output.writeLong(headerEnd);
+            output.writeLong(offset);
+            output.writeLong(getChecksum(channel, 0, headerEnd));
+            output.writeLong(updateChecksum(linesChecksum, channel, start, offset));
+            operationsManager.writeState(output);
+        }
+        Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static long getChecksum(FileChannel channel, long start, long end) throws IOException {
+        return updateChecksum(new CRC32(), channel, start, end);
+    }
+
+    //adds the bytes of the range to the checksum
+    private static long updateChecksum(CRC32 checksum, FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        for (long position = start; position < end; position += buffer.limit()) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(channel, buffer, position);
+            checksum.update(buffer.array(), 0, buffer.limit());
+        }
+        return checksum.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+}
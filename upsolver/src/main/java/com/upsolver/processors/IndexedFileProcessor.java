@@ -0,0 +1,75 @@
+package com.upsolver.processors;
+
+import com.upsolver.index.ColumnIndex;
+import com.upsolver.io.MappedCsvReader;
+import com.upsolver.operations.OperationsManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Processes a csv file with the help of its ColumnIndex. Aggregations the index statistics can answer are answered
+ * without reading the rows, otherwise only the blocks of lines that may pass the leading filter are read (consecutive
+ * blocks as a single range). Without an up to date index the whole file is processed by a MappedFileProcessor.
+ */
+public class IndexedFileProcessor {
+    private final File dataFile;
+    private final OperationsManager operationsManager;
+
+    public IndexedFileProcessor(File dataFile, OperationsManager operationsManager) {
+        this.dataFile = dataFile;
+        this.operationsManager = operationsManager;
+    }
+
+    /**
+     * Processes the file rows and finalizes the operations process
+     * @throws IOException
+     */
+    public void process() throws IOException {
+        try {
+            processFile();
+        } finally {
+            //releases the results of a process that failed before it was finalized
+            operationsManager.abortProcess();
+        }
+    }
+
+    private void processFile() throws IOException {
+        ColumnIndex index = ColumnIndex.load(dataFile);
+        if(index == null || index.getHeader().length == 0) {
+            new MappedFileProcessor(dataFile, operationsManager).process();
+            return;
+        }
+        if(operationsManager.processDataRow(index.getHeader()) && !operationsManager.answerFromStatistics(index)) {
+            processBlocks(index, operationsManager.getCandidateBlocks(index));
+        }
+        operationsManager.finalizeProcess();
+    }
+
+    private void processBlocks(ColumnIndex index, BitSet blocks) throws IOException {
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            int block = blocks.nextSetBit(0);
+            while (block >= 0) {
+                int lastBlock = blocks.nextClearBit(block) - 1;
+                long start = System.nanoTime();
+                long rows = 0;
+                try (MappedCsvReader reader = new MappedCsvReader(channel, index.getBlockStart(block),
+                        index.getBlockEnd(lastBlock))) {
+                    reader.setMaxFields(operationsManager.getRequiredFieldCount());
+                    while (reader.next()) {
+                        if (!operationsManager.processDataRow(reader.getRow())) {
+                            return;
+                        }
+                        rows++;
+                    }
+                    operationsManager.flush();
+                    operationsManager.getMetrics().addScan(rows, reader.getBytesRead(), System.nanoTime() - start);
+                }
+                block = blocks.nextSetBit(lastBlock + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.upsolver.processors;
+
+import com.upsolver.io.MappedCsvReader;
+import com.upsolver.operations.OperationsProcessor;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Processes a csv file on a single thread with a MappedCsvReader, the rows are passed to the operations
+ * as field views over the mapped file so only the fields the operations use are decoded.
+ */
+public class MappedFileProcessor {
+    private final File dataFile;
+    private final OperationsProcessor operationsManager;
+
+    public MappedFileProcessor(File dataFile, OperationsProcessor operationsManager) {
+        this.dataFile = dataFile;
+        this.operationsManager = operationsManager;
+    }
+
+    /**
+     * Processes the file rows and finalizes the operations process
+     * @throws IOException
+     */
+    public void process() throws IOException {
+        try {
+            processFile();
+        } finally {
+            //releases the results of a process that failed before it was finalized
+            operationsManager.abortProcess();
+        }
+    }
+
+    private void processFile() throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        try (MappedCsvReader reader = new MappedCsvReader(dataFile)) {
+            while (reader.next()) {
+                if (!operationsManager.processDataRow(reader.getRow())) {
+                    break;
+                }
+                if (rows == 0) {
+                    //the header row is split to all its fields
+                    reader.setMaxFields(operationsManager.getRequiredFieldCount());
+                }
+                rows++;
+            }
+            operationsManager.flush();
+            //the header row is not counted
+            operationsManager.getMetrics().addScan(Math.max(0, rows - 1), reader.getBytesRead(), System.nanoTime() - start);
+        }
+        operationsManager.finalizeProcess();
+    }
+}
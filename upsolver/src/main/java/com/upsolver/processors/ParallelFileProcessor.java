@@ -0,0 +1,171 @@
+package com.upsolver.processors;
+
+import com.upsolver.io.MappedCsvReader;
+import com.upsolver.operations.OperationsProcessor;
+import com.upsolver.operations.PartialOperationsResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes a csv file on all the cores. The file is split into byte ranges that are aligned to line boundaries,
+ * each range is read by a MappedCsvReader and processed by its own partial result in a fork join pool, and the partial results are merged
+ * in the file order, so aggregations are merged and the order of the transformed rows is kept.
+ * The ranges depend only on the size of the file, not on the number of cores, so a file is always merged the same
+ * way. A floating point sum is still added in a different order than in a serial scan (each range is summed and then
+ * the ranges are added), so it may differ from the serial sum in the last digits.
+ * When a range fails the other ranges are stopped and their partial results are closed.
+ */
+public class ParallelFileProcessor {
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int TARGET_CHUNKS = 64;
+
+    private final File dataFile;
+    private final OperationsProcessor operationsManager;
+    private final int parallelism;
+    private volatile boolean stopped;
+
+    public ParallelFileProcessor(File dataFile, OperationsProcessor operationsManager) {
+        this(dataFile, operationsManager, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelFileProcessor(File dataFile, OperationsProcessor operationsManager, int parallelism) {
+        this.dataFile = dataFile;
+        this.operationsManager = operationsManager;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Processes the file rows and finalizes the operations process
+     * @throws IOException
+     */
+    public void process() throws IOException {
+        try {
+            processFile();
+        } finally {
+            //releases the results of a process that failed before it was finalized
+            operationsManager.abortProcess();
+        }
+    }
+
+    private void processFile() throws IOException {
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            MappedCsvReader headerReader = new MappedCsvReader(channel, 0, fileSize);
+            if (headerReader.next() && operationsManager.processDataRow(headerReader.getRow())) {
+                operationsManager.getMetrics().addScan(0, headerReader.getBytesRead(), 0);
+                processRows(channel, headerReader.getBytesRead(), fileSize);
+            }
+        }
+        operationsManager.finalizeProcess();
+    }
+
+    private void processRows(FileChannel channel, long start, long fileSize) throws IOException {
+        List<long[]> ranges = splitToRanges(channel, start, fileSize);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<ForkJoinTask<PartialOperationsResult>> tasks = new ArrayList<>();
+        int merged = 0;
+        try {
+            for (long[] range : ranges) {
+                tasks.add(pool.submit(() -> processRange(channel, range[0], range[1])));
+            }
+            //merge in the file order
+            for (ForkJoinTask<PartialOperationsResult> task : tasks) {
+                operationsManager.mergePartialResult(task.join());
+                merged++;
+            }
+        } finally {
+            if (merged < tasks.size()) {
+                stopRanges(pool, tasks.subList(merged, tasks.size()));
+            }
+            pool.shutdown();
+        }
+    }
+
+    //stops the ranges that were not merged after a range failed and closes the partial results they completed
+    private void stopRanges(ForkJoinPool pool, List<ForkJoinTask<PartialOperationsResult>> tasks) {
+        //the running ranges see the flag and close their own results, shutdownNow cancels the ranges that did not start
+        stopped = true;
+        pool.shutdownNow();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ForkJoinTask<PartialOperationsResult> task : tasks) {
+            if (task.isDone() && !task.isCompletedAbnormally()) {
+                task.getRawResult().close();
+            }
+        }
+    }
+
+    //splits the rows part of the file to ranges that start at the beginning of a line
+    private List<long[]> splitToRanges(FileChannel channel, long start, long fileSize) throws IOException {
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, (fileSize - start) / TARGET_CHUNKS));
+        List<long[]> ranges = new ArrayList<>();
+        long rangeStart = start;
+        while (rangeStart < fileSize) {
+            long rangeEnd = rangeStart + chunkSize >= fileSize ? fileSize
+                    : findNextLineStart(channel, rangeStart + chunkSize, fileSize);
+            ranges.add(new long[]{rangeStart, rangeEnd});
+            rangeStart = rangeEnd;
+        }
+        return ranges;
+    }
+
+    //finds the position after the next new line character, starting from the given position
+    private long findNextLineStart(FileChannel channel, long position, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long currentPosition = position;
+        while (currentPosition < fileSize) {
+            buffer.clear();
+            int read = channel.read(buffer, currentPosition);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return currentPosition + i + 1;
+                }
+            }
+            currentPosition += read;
+        }
+        return fileSize;
+    }
+
+    //processes the lines in the range with a new partial result, runs on a pool thread
+    private PartialOperationsResult processRange(FileChannel channel, long start, long end) throws IOException {
+        long startNanos = System.nanoTime();
+        long rows = 0;
+        PartialOperationsResult partialResult = operationsManager.createPartialResult();
+        boolean completed = false;
+        try (MappedCsvReader reader = new MappedCsvReader(channel, start, end)) {
+            reader.setMaxFields(operationsManager.getRequiredFieldCount());
+            while (reader.next()) {
+                if (stopped) {
+                    throw new CancellationException("Another range of the file failed");
+                }
+                partialResult.processDataRow(reader.getRow());
+                rows++;
+            }
+            partialResult.flush();
+            operationsManager.getMetrics().addScan(rows, reader.getBytesRead(), System.nanoTime() - startNanos);
+            completed = true;
+        } finally {
+            if (!completed) {
+                partialResult.close();
+            }
+        }
+        return partialResult;
+    }
+}
@@ -0,0 +1,361 @@
+package com.upsolver.processors;
+
+import com.upsolver.components.ByteFieldRow;
+import com.upsolver.components.RowBatch;
+import com.upsolver.io.CompressedInput;
+import com.upsolver.io.CsvBlockTokenizer;
+import com.upsolver.io.MappedCsvReader;
+import com.upsolver.operations.OperationsProcessor;
+
+import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes a csv file in three overlapping stages: a reader thread reads the file in blocks of whole lines,
+ * a pool of tokenizer threads splits each block into batches of rows, and the calling thread passes the rows of the
+ * batches to the operations in the file order.
+ * The stages are connected by a bounded queue of the tokenized blocks (in the order they were read), and the blocks
+ * are reused from a bounded pool, so a slow stage blocks the stages before it instead of buffering the file in memory.
+ * A compressed file (see CompressedInput) is decompressed by the reader thread into the same blocks, so the
+ * decompression overlaps the tokenizing and the processing, and the blocks of a BGZF file are decompressed in parallel.
+ * When processDataRow returns false (or fails) every stage stops before its next block.
+ */
+public class PipelinedFileProcessor {
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+    public static final int DEFAULT_QUEUE_CAPACITY = 8;
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final long POLL_MILLIS = 10;
+    //the end of the file, queued by the reader after the last block
+    private static final Future<TokenizedBlock> END_OF_FILE = CompletableFuture.completedFuture(null);
+
+    private final File dataFile;
+    private final OperationsProcessor operationsManager;
+    private final int tokenizers;
+    private final int batchSize;
+    private CsvBlockTokenizer tokenizer;
+    private final BlockingQueue<Future<TokenizedBlock>> tokenizedBlocks;
+    private final BlockingQueue<byte[]> freeBlocks;
+    private final int maxBlocks;
+    private int allocatedBlocks;
+    private volatile boolean stopped;
+    private volatile IOException readError;
+
+    public PipelinedFileProcessor(File dataFile, OperationsProcessor operationsManager) {
+        this(dataFile, operationsManager, Math.max(1, Runtime.getRuntime().availableProcessors() - 2),
+                DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param dataFile
+     * @param operationsManager
+     * @param tokenizers the number of tokenizer threads
+     * @param batchSize the max number of rows in a batch
+     * @param queueCapacity the max number of blocks that were read and are not processed yet
+     */
+    public PipelinedFileProcessor(File dataFile, OperationsProcessor operationsManager, int tokenizers, int batchSize,
+                                  int queueCapacity) {
+        this.dataFile = dataFile;
+        this.operationsManager = operationsManager;
+        this.tokenizers = tokenizers;
+        this.batchSize = batchSize;
+        this.tokenizedBlocks = new ArrayBlockingQueue<>(queueCapacity);
+        //the queued blocks, the block that is read and the block that is processed
+        this.maxBlocks = queueCapacity + 2;
+        this.freeBlocks = new ArrayBlockingQueue<>(maxBlocks);
+    }
+
+    /**
+     * Processes the file rows and finalizes the operations process
+     * @throws IOException
+     */
+    public void process() throws IOException {
+        try {
+            processFile();
+        } finally {
+            //releases the results of a process that failed before it was finalized
+            operationsManager.abortProcess();
+        }
+    }
+
+    private void processFile() throws IOException {
+        CompressedInput.Format format = CompressedInput.detect(dataFile);
+        if (format != CompressedInput.Format.NONE) {
+            processCompressed(format);
+        } else {
+            try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+                long fileSize = channel.size();
+                MappedCsvReader headerReader = new MappedCsvReader(channel, 0, fileSize);
+                if (headerReader.next() && operationsManager.processDataRow(headerReader.getRow())) {
+                    operationsManager.getMetrics().addScan(0, headerReader.getBytesRead(), 0);
+                    processRows(new ChannelInput(channel, headerReader.getBytesRead(), fileSize));
+                }
+            }
+        }
+        operationsManager.finalizeProcess();
+    }
+
+    //the header line is read on the calling thread, the rest of the decompressed bytes by the reader stage
+    private void processCompressed(CompressedInput.Format format) throws IOException {
+        try (InputStream input = CompressedInput.open(dataFile, format)) {
+            byte[] header = readLine(input);
+            if (header.length == 0) {
+                return;
+            }
+            RowBatch headerBatch = new CsvBlockTokenizer(',', 1).tokenize(header, header.length).get(0);
+            if (operationsManager.processDataRow(headerBatch.getRow(0, new ByteFieldRow()))) {
+                operationsManager.getMetrics().addScan(0, header.length, 0);
+                processRows(input::read);
+            }
+        }
+    }
+
+    private void processRows(BlockInput input) throws IOException {
+        //the header row is split to all its fields, the rows only to the fields the operations read
+        tokenizer = new CsvBlockTokenizer(',', batchSize, operationsManager.getRequiredFieldCount());
+        ExecutorService tokenizerPool = Executors.newFixedThreadPool(tokenizers, runnable -> {
+            Thread thread = new Thread(runnable, "upsolver-tokenizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread reader = new Thread(() -> readBlocks(input, tokenizerPool), "upsolver-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            executeBatches();
+        } finally {
+            stopped = true;
+            tokenizerPool.shutdownNow();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (readError != null) {
+            throw readError;
+        }
+    }
+
+    //the executor stage, runs on the calling thread
+    private void executeBatches() throws IOException {
+        ByteFieldRow row = new ByteFieldRow();
+        while (true) {
+            TokenizedBlock block = takeTokenizedBlock();
+            if (block == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            for (RowBatch batch : block.batches) {
+                for (int i = 0; i < batch.getRowCount(); i++) {
+                    if (!operationsManager.processDataRow(batch.getRow(i, row))) {
+                        return;
+                    }
+                }
+            }
+            //the collected rows view the block, they are processed before the block is reused
+            operationsManager.flush();
+            //the rows and bytes of the block were added by the tokenizer
+            operationsManager.getMetrics().addScan(0, 0, System.nanoTime() - start);
+            freeBlocks.offer(block.block);
+        }
+    }
+
+    private TokenizedBlock takeTokenizedBlock() throws IOException {
+        try {
+            return tokenizedBlocks.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    //the reader stage, reads blocks of whole lines and queues them for the tokenizers
+    private void readBlocks(BlockInput input, ExecutorService tokenizerPool) {
+        try {
+            byte[] block = takeFreeBlock(0);
+            int length = 0;
+            boolean endOfInput = false;
+            while (block != null && !stopped) {
+                while (length < block.length && !endOfInput) {
+                    int read = input.read(block, length, block.length - length);
+                    if (read <= 0) {
+                        endOfInput = true;
+                        break;
+                    }
+                    length += read;
+                }
+                boolean lastBlock = endOfInput;
+                int end = lastBlock ? length : lastLineEnd(block, length);
+                if (end == 0 && !lastBlock) {
+                    //a line that is longer than the block
+                    block = Arrays.copyOf(block, block.length * 2);
+                    continue;
+                }
+                byte[] nextBlock = null;
+                if (!lastBlock) {
+                    //the beginning of the next line moves to the next block
+                    nextBlock = takeFreeBlock(length - end);
+                    if (nextBlock == null) {
+                        return;
+                    }
+                    System.arraycopy(block, end, nextBlock, 0, length - end);
+                }
+                if (end > 0 && !queue(tokenizerPool, block, end)) {
+                    return;
+                }
+                block = nextBlock;
+                length = length - end;
+            }
+        } catch (IOException e) {
+            readError = e;
+        } finally {
+            queueEndOfFile();
+        }
+    }
+
+    //queues the tokenizing of the block, waits while the queue is full
+    private boolean queue(ExecutorService tokenizerPool, byte[] block, int length) {
+        Future<TokenizedBlock> tokenizedBlock = tokenizerPool.submit(() -> stopped
+                ? new TokenizedBlock(block, Collections.emptyList())
+                : tokenize(block, length));
+        try {
+            while (!tokenizedBlocks.offer(tokenizedBlock, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (stopped) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void queueEndOfFile() {
+        try {
+            while (!stopped && !tokenizedBlocks.offer(END_OF_FILE, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                //the executor is still processing the queued blocks
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //a free block that can hold at least minLength bytes, waits while all the blocks are in use, null once stopped
+    private byte[] takeFreeBlock(int minLength) {
+        try {
+            byte[] block = freeBlocks.poll();
+            while (block == null) {
+                if (allocatedBlocks < maxBlocks) {
+                    allocatedBlocks++;
+                    block = new byte[BLOCK_SIZE];
+                } else if (stopped) {
+                    return null;
+                } else {
+                    block = freeBlocks.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            }
+            return block.length > minLength ? block : new byte[Math.max(BLOCK_SIZE, minLength * 2)];
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    //the tokenizer stage, runs on a tokenizer thread
+    private TokenizedBlock tokenize(byte[] block, int length) {
+        long start = System.nanoTime();
+        List<RowBatch> batches = tokenizer.tokenize(block, length);
+        long rows = 0;
+        for (RowBatch batch : batches) {
+            rows += batch.getRowCount();
+        }
+        operationsManager.getMetrics().addScan(rows, length, System.nanoTime() - start);
+        return new TokenizedBlock(block, batches);
+    }
+
+    //the bytes of the first line with its new line, empty if the input is empty
+    private static byte[] readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int current = input.read(); current >= 0; current = input.read()) {
+            line.write(current);
+            if (current == '\n') {
+                break;
+            }
+        }
+        return line.toByteArray();
+    }
+
+    //the position after the last new line in the block, 0 if there is none
+    private static int lastLineEnd(byte[] block, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (block[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    //the source of the bytes of the reader stage
+    private interface BlockInput {
+        /**
+         * @returns the number of bytes read into the block, or -1 at the end of the input
+         */
+        int read(byte[] block, int offset, int length) throws IOException;
+    }
+
+    //the bytes of a file channel from a position to the end of the file
+    private static class ChannelInput implements BlockInput {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        private ChannelInput(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(byte[] block, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(block, offset, length), position);
+            position += Math.max(read, 0);
+            return read;
+        }
+    }
+
+    //a block and the batches of its rows
+    private static class TokenizedBlock {
+        private final byte[] block;
+        private final List<RowBatch> batches;
+
+        private TokenizedBlock(byte[] block, List<RowBatch> batches) {
+            this.block = block;
+            this.batches = batches;
+        }
+    }
+}
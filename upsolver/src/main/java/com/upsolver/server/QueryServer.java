@@ -0,0 +1,323 @@
+package com.upsolver.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.upsolver.io.CompressedInput;
+import com.upsolver.io.OutputFormat;
+import com.upsolver.io.SpillBudget;
+import com.upsolver.operations.OperationsManager;
+import com.upsolver.processors.IndexedFileProcessor;
+import com.upsolver.processors.MappedFileProcessor;
+import com.upsolver.processors.ParallelFileProcessor;
+import com.upsolver.processors.PipelinedFileProcessor;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long running query server on the loopback interface, so queries do not pay the JVM startup and warm up.
+ * GET /query?file=[data file]&operations=[operations]&mode=[mapped|parallel|pipelined|indexed]&format=[csv|columnar|columnar-gzip]
+ * responds with the result file of the query (204 when there are no results, 400 with the message when the operations
+ * are invalid), mapped and csv by default, a gzip or BGZF compressed data file is read by the pipelined mode.
+ * The requests run on a shared pool of worker threads, the queries share a single spill budget. The results are cached by the normalized operations, the format
+ * and the identity of the data file and of the lookup files of its joins (path, size and last modified time), so a
+ * changed file is queried again.
+ * Concurrent requests of the same query wait for a single run of the query, without holding a worker thread: they are
+ * answered when the run completes. Invalid queries and failed runs are not cached.
+ */
+public class QueryServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final long DEFAULT_CACHE_BYTES = Runtime.getRuntime().maxMemory() / 8;
+    //the cached results and the rows the running queries keep in memory share this part of the heap
+    public static final long MEMORY_BYTES = Runtime.getRuntime().maxMemory() / 8 * 3;
+    private static final long MIN_SPILL_BYTES = 16 * 1024 * 1024;
+
+    private static final String CACHE_HEADER = "X-Upsolver-Cache";
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final ResultCache cache;
+    private final SpillBudget spillBudget = new SpillBudget();
+    private final Map<String, CompletableFuture<byte[]>> runningQueries = new ConcurrentHashMap<>();
+
+    /**
+     * @param port the loopback port, 0 for any free port
+     * @param workerThreads the number of threads that run the requests
+     * @param cacheBytes the max estimated memory size of the cached results, the rows the running queries keep in
+     *                   memory share a single spill budget of the rest of MEMORY_BYTES
+     * @throws IOException
+     */
+    public QueryServer(int port, int workerThreads, long cacheBytes) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "upsolver-query");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cache = new ResultCache(cacheBytes);
+        spillBudget.setMemoryBudget(Math.max(MIN_SPILL_BYTES, MEMORY_BYTES - cacheBytes));
+        server.setExecutor(workers);
+        server.createContext("/query", this::handleQuery);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Query server listening on http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/query");
+    }
+
+    public void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public ResultCache getCache() {
+        return cache;
+    }
+
+    public SpillBudget getSpillBudget() {
+        return spillBudget;
+    }
+
+    /**
+     * The operations are lower cased like OperationsManager does, and the white space out of the quoted values
+     * is removed since the parameters are trimmed
+     * @param operationsStr
+     * @returns the normalized operations
+     */
+    public static String normalizeOperations(String operationsStr) {
+        String operations = operationsStr.trim().toLowerCase();
+        StringBuilder normalized = new StringBuilder(operations.length());
+        boolean quoted = false;
+        for (int i = 0; i < operations.length(); i++) {
+            char c = operations.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            if (quoted || !Character.isWhitespace(c)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        boolean waiting = false;
+        try {
+            Map<String, String> parameters = getParameters(exchange.getRequestURI().getRawQuery());
+            String file = parameters.get("file");
+            String operationsStr = parameters.get("operations");
+            if (file == null || operationsStr == null || operationsStr.trim().isEmpty()) {
+                sendText(exchange, 400, "Missing file or operations parameter");
+                return;
+            }
+            File dataFile = new File(file).getAbsoluteFile();
+            if (!dataFile.isFile()) {
+                sendText(exchange, 404, "File not found: " + file);
+                return;
+            }
+            String mode = parameters.getOrDefault("mode", "mapped");
+            OutputFormat outputFormat;
+            try {
+                outputFormat = OutputFormat.valueOf(parameters.getOrDefault("format", "csv").toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, "Invalid format: " + parameters.get("format"));
+                return;
+            }
+            if (!"mapped".equals(mode) && !"parallel".equals(mode) && !"pipelined".equals(mode) && !"indexed".equals(mode)) {
+                sendText(exchange, 400, "Invalid mode: " + mode);
+                return;
+            }
+            //the identity of the file is taken before the query runs, a file that changes while it runs is queried again
+            StringBuilder key = new StringBuilder(normalizeOperations(operationsStr)).append('|').append(outputFormat);
+            appendIdentity(key, dataFile);
+            for (File lookupFile : OperationsManager.getLookupFiles(operationsStr)) {
+                appendIdentity(key, lookupFile.getAbsoluteFile());
+            }
+            String cacheStatus = "hit";
+            byte[] result = cache.get(key.toString());
+            if (result == null) {
+                CompletableFuture<byte[]> query = new CompletableFuture<>();
+                CompletableFuture<byte[]> runningQuery = runningQueries.putIfAbsent(key.toString(), query);
+                if (runningQuery != null) {
+                    //the worker is released, the request is answered on a worker when the running query completes
+                    runningQuery.whenCompleteAsync((queryResult, error) ->
+                            respond(exchange, "coalesced", outputFormat, queryResult, error), workers);
+                    waiting = true;
+                    return;
+                }
+                cacheStatus = "miss";
+                result = runQuery(key.toString(), query, dataFile, operationsStr, mode, outputFormat);
+            }
+            sendResult(exchange, cacheStatus, outputFormat, result);
+        } catch (Exception e) {
+            sendError(exchange, e);
+        } finally {
+            if (!waiting) {
+                exchange.close();
+            }
+        }
+    }
+
+    //answers a request that waited for a running query
+    private static void respond(HttpExchange exchange, String cacheStatus, OutputFormat outputFormat, byte[] result,
+                                Throwable error) {
+        try {
+            if (error != null) {
+                sendError(exchange, error);
+            } else {
+                sendResult(exchange, cacheStatus, outputFormat, result);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendResult(HttpExchange exchange, String cacheStatus, OutputFormat outputFormat, byte[] result)
+            throws IOException {
+        exchange.getResponseHeaders().set(CACHE_HEADER, cacheStatus);
+        if (result.length == 0) {
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", outputFormat == OutputFormat.CSV
+                ? "text/csv; charset=" + Charset.defaultCharset().name() : "application/octet-stream");
+        exchange.sendResponseHeaders(200, result.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(result);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, Throwable error) throws IOException {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (cause instanceof InvalidQueryException) {
+            sendText(exchange, 400, cause.getMessage());
+            return;
+        }
+        error.printStackTrace();
+        sendText(exchange, 500, "Query failed: " + cause);
+    }
+
+    //runs the query for the requests that wait for it, the result is cached before the query is no longer running
+    private byte[] runQuery(String key, CompletableFuture<byte[]> query, File dataFile, String operationsStr,
+                            String mode, OutputFormat outputFormat) throws IOException {
+        try {
+            //the query may have completed between the cache lookup and the registration of this run
+            byte[] result = cache.get(key);
+            if (result == null) {
+                result = execute(dataFile, operationsStr, mode, outputFormat);
+                cache.put(key, result);
+            }
+            query.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            query.completeExceptionally(e);
+            throw e;
+        } finally {
+            runningQueries.remove(key, query);
+        }
+    }
+
+    //the bytes of the result file of the query, empty when there are no results
+    private byte[] execute(File dataFile, String operationsStr, String mode, OutputFormat outputFormat) throws IOException {
+        File outputDirectory = Files.createTempDirectory("upsolver-query").toFile();
+        OperationsManager operationsManager = null;
+        try {
+            operationsManager = new OperationsManager(operationsStr);
+            if (operationsManager.getValidationError() != null) {
+                throw new InvalidQueryException(operationsManager.getValidationError());
+            }
+            operationsManager.setSpillBudget(spillBudget);
+            operationsManager.setOutputDirectory(outputDirectory.getPath());
+            operationsManager.setOutputFormat(outputFormat);
+            operationsManager.setIncrementalOutput(true);
+            //a compressed file is decompressed by the pipelined processor whatever the mode
+            switch (CompressedInput.isCompressed(dataFile) ? "pipelined" : mode) {
+                case "parallel":
+                    new ParallelFileProcessor(dataFile, operationsManager).process();
+                    break;
+                case "pipelined":
+                    new PipelinedFileProcessor(dataFile, operationsManager).process();
+                    break;
+                case "indexed":
+                    new IndexedFileProcessor(dataFile, operationsManager).process();
+                    break;
+                default:
+                    new MappedFileProcessor(dataFile, operationsManager).process();
+            }
+            //the field indexes are validated against the header row of the file
+            if (operationsManager.getValidationError() != null) {
+                throw new InvalidQueryException(operationsManager.getValidationError());
+            }
+            File[] resultFiles = outputDirectory.listFiles();
+            return resultFiles != null && resultFiles.length > 0 ? Files.readAllBytes(resultFiles[0].toPath()) : new byte[0];
+        } finally {
+            if (operationsManager != null) {
+                //the processors release a failed process, a processor that failed to start did not
+                operationsManager.abortProcess();
+            }
+            FileUtils.deleteQuietly(outputDirectory);
+        }
+    }
+
+    //the operations of a query are invalid, answered with 400 and not cached
+    private static class InvalidQueryException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private InvalidQueryException(String message) {
+            super(message);
+        }
+    }
+
+    //the path, size and last modified time of a file the result depends on
+    private static void appendIdentity(StringBuilder key, File file) {
+        key.append('|').append(file.getPath()).append('|').append(file.length()).append('|').append(file.lastModified());
+    }
+
+    private static Map<String, String> getParameters(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
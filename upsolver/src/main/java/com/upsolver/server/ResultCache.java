@@ -0,0 +1,72 @@
+package com.upsolver.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache of query results that is bounded by the memory size of the results, once a new result
+ * exceeds the max size the least recently used results are evicted. A result that is larger than the max size is not
+ * cached. The cache is thread safe.
+ */
+public class ResultCache {
+    //the estimated size of an entry of the map and of the result array headers
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * @param maxBytes the max estimated memory size of the cached results
+     */
+    public ResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param key
+     * @returns the cached result, or null if the result is not cached
+     */
+    public synchronized byte[] get(String key) {
+        return results.get(key);
+    }
+
+    /**
+     * Caches the result and evicts the least recently used results if the cache is full
+     * @param key
+     * @param result
+     */
+    public synchronized void put(String key, byte[] result) {
+        long size = getSize(key, result);
+        if (size > maxBytes) {
+            return;
+        }
+        byte[] previous = results.put(key, result);
+        if (previous != null) {
+            bytes -= getSize(key, previous);
+        }
+        bytes += size;
+        Iterator<Map.Entry<String, byte[]>> iterator = results.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, byte[]> eldest = iterator.next();
+            bytes -= getSize(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @returns the estimated memory size of the cached results
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getResultCount() {
+        return results.size();
+    }
+
+    private static long getSize(String key, byte[] result) {
+        return ENTRY_OVERHEAD + 2L * key.length() + result.length;
+    }
+}
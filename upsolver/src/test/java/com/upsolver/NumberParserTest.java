@@ -0,0 +1,107 @@
+package com.upsolver;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NumberParserTest {
+    private static final String[] NUMBERS = {
+            "0", "-0", "+0", "0.0", "-0.0", "1", "-1", "+1", "1.", ".5", "-.5", "+.5", "-5.", "007", "00.0100",
+            "  12.5 ", "\t3\n", "999.98", "0.1", "0.3", "2.675", "1.005", "123456.789", "-27969.44",
+            "1e3", "1E3", "1e+3", "1e-3", "-1.5e-7", "2.5E10", ".5e1", "5.e-1", "1e22", "1e23", "1e-22", "1e-23",
+            "1e308", "1.7976931348623157e308", "1e309", "-1e309", "4.9e-324", "1e-400", "2.2250738585072014E-308",
+            "9007199254740992", "9007199254740993", "123456789012345", "1234567890123456", "12345678901234567",
+            "0.12345678901234567890", "3.141592653589793238462643383279", "9223372036854775807",
+            "-9223372036854775808", "9223372036854775808", "99999999999999999999",
+            "0x1p3", "0x1.8p1", "NaN", "Infinity", "-Infinity", "+Infinity", "1d", "1f", "1.5D", "-2F"
+    };
+    private static final String[] NOT_NUMBERS = {
+            "", " ", "-", "+", ".", "-.", "e3", "1e", "1e+", "1.2.3", "1-2", "--1", "+-1", "1,5", "12a", "a12",
+            "Iowa", "null", "1 2", "0x", "nan", "inf", "1e3.5", "\u0661\u0662"
+    };
+
+    @Test
+    public void parsesLikeDoubleParseDouble() {
+        NumberParser parser = new NumberParser();
+        for (String number : NUMBERS) {
+            assertParsed(parser, number);
+        }
+    }
+
+    @Test
+    public void rejectsWhatDoubleParseDoubleRejects() {
+        NumberParser parser = new NumberParser();
+        for (String value : NOT_NUMBERS) {
+            assertFalse(value, parser.parse(value));
+            assertFalse(value, parser.parse(toBuffer(value), 0, toBuffer(value).limit()));
+            assertFalse(value, isDouble(value));
+        }
+    }
+
+    @Test
+    public void parsesRandomDecimalsLikeDoubleParseDouble() {
+        NumberParser parser = new NumberParser();
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder number = new StringBuilder();
+            if (random.nextBoolean()) {
+                number.append('-');
+            }
+            number.append(random.nextInt(1000000));
+            if (random.nextBoolean()) {
+                number.append('.');
+                for (int digits = random.nextInt(18); digits > 0; digits--) {
+                    number.append(random.nextInt(10));
+                }
+            }
+            if (random.nextInt(4) == 0) {
+                number.append('e').append(random.nextInt(60) - 30);
+            }
+            assertParsed(parser, number.toString());
+        }
+    }
+
+    @Test
+    public void parsesIntegersAsLongs() {
+        NumberParser parser = new NumberParser();
+        for (String integer : new String[]{"0", "-0", "42", " 42 ", "+42", "-42", "007", "999999999999999999",
+                "-999999999999999999", "9007199254740993"}) {
+            assertTrue(integer, parser.parse(integer));
+            assertTrue(integer, parser.isLong());
+            assertEquals(integer, Long.parseLong(integer.trim()), parser.getLong());
+        }
+        //values with a point, an exponent, a type suffix or more digits than the mantissa keeps are only doubles
+        for (String value : new String[]{"42.0", "4e1", "42d", "9223372036854775808", "99999999999999999999"}) {
+            assertTrue(value, parser.parse(value));
+            assertFalse(value, parser.isLong());
+        }
+    }
+
+    private static void assertParsed(NumberParser parser, String number) {
+        double expected = Double.parseDouble(number);
+        assertTrue(number, parser.parse(number));
+        assertEquals(number, Double.doubleToLongBits(expected), Double.doubleToLongBits(parser.getDouble()));
+        ByteBuffer buffer = toBuffer("x" + number + "y");
+        assertTrue(number, parser.parse(buffer, 1, buffer.limit() - 1));
+        assertEquals(number, Double.doubleToLongBits(expected), Double.doubleToLongBits(parser.getDouble()));
+    }
+
+    private static boolean isDouble(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static ByteBuffer toBuffer(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,84 @@
+package com.upsolver.index;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ColumnIndexTest {
+    private static final String[] STATES = {"Iowa", "Ohio", "Utah"};
+    private static final int ROWS = 100;
+    private static final int BLOCK_LINES = 10;
+
+    @Rule
+    public TemporaryFolder directory = new TemporaryFolder();
+    private File dataFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dataFile = directory.newFile("data.csv");
+        StringBuilder csv = new StringBuilder("id,state,value\n");
+        for (int i = 0; i < ROWS; i++) {
+            //Utah is only in the lines of the last block
+            String state = i >= ROWS - BLOCK_LINES ? STATES[2] : STATES[i % 2];
+            csv.append(i).append(',').append(state).append(',').append(i * 1.5).append('\n');
+        }
+        Files.write(dataFile.toPath(), csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void loadsTheSavedIndex() throws IOException {
+        ColumnIndex index = ColumnIndex.build(dataFile, new int[]{1}, BLOCK_LINES);
+        index.save(dataFile);
+
+        ColumnIndex loaded = ColumnIndex.load(dataFile);
+        assertNotNull(loaded);
+        assertArrayEquals(index.getHeader(), loaded.getHeader());
+        assertEquals(ROWS / BLOCK_LINES, loaded.getBlockCount());
+        for (int block = 0; block < loaded.getBlockCount(); block++) {
+            assertEquals(index.getBlockStart(block), loaded.getBlockStart(block));
+            assertEquals(index.getBlockEnd(block), loaded.getBlockEnd(block));
+            assertEquals(index.getBlockRows(block), loaded.getBlockRows(block));
+        }
+        BitSet utahBlocks = new BitSet();
+        utahBlocks.set(ROWS / BLOCK_LINES - 1);
+        assertEquals(utahBlocks, loaded.getBlocks(1, "utah"));
+        assertEquals(index.getBlocks(1, "iowa"), loaded.getBlocks(1, "iowa"));
+        assertEquals(new BitSet(), loaded.getBlocks(1, "texas"));
+    }
+
+    @Test
+    public void indexIsStaleAfterAnAppend() throws IOException {
+        ColumnIndex.build(dataFile, new int[]{1}, BLOCK_LINES).save(dataFile);
+        Files.write(dataFile.toPath(), "100,Texas,1.0\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertNull(ColumnIndex.load(dataFile));
+    }
+
+    @Test
+    public void indexIsStaleAfterAnEditOfTheSameSize() throws IOException {
+        ColumnIndex.build(dataFile, new int[]{1}, BLOCK_LINES).save(dataFile);
+        long lastModified = dataFile.lastModified();
+        try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) {
+            //"0,Iowa" becomes "0,Ohio"
+            file.seek("id,state,value\n0,".length());
+            file.write("Ohio".getBytes(StandardCharsets.UTF_8));
+        }
+        dataFile.setLastModified(lastModified + 2000);
+
+        assertNull(ColumnIndex.load(dataFile));
+    }
+}
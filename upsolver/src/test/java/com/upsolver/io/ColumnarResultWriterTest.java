@@ -0,0 +1,88 @@
+package com.upsolver.io;
+
+import com.upsolver.components.ArrayFieldRow;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ColumnarResultWriterTest {
+    private static final String[] FIELD_NAMES = {"id", "name", "\u00e9tat"};
+    //more rows than a block, so the rows are read from two blocks
+    private static final int ROWS = ColumnarResultWriter.BLOCK_ROWS + 1000;
+
+    @Rule
+    public TemporaryFolder directory = new TemporaryFolder();
+
+    @Test
+    public void readsTheWrittenRows() throws IOException {
+        assertRoundTrip(false);
+    }
+
+    @Test
+    public void readsTheWrittenCompressedRows() throws IOException {
+        assertRoundTrip(true);
+    }
+
+    @Test
+    public void abortDeletesTheFile() {
+        File file = new File(directory.getRoot(), "aborted.ucol");
+        ColumnarResultWriter writer = new ColumnarResultWriter(file, FIELD_NAMES, false);
+        writer.writeRow(new ArrayFieldRow(new String[]{"1", "a"}));
+        writer.abort();
+        assertFalse(file.exists());
+    }
+
+    private void assertRoundTrip(boolean compressed) throws IOException {
+        File file = new File(directory.getRoot(), compressed ? "result.ucol.gz" : "result.ucol");
+        List<String[]> rows = createRows();
+        ColumnarResultWriter writer = new ColumnarResultWriter(file, FIELD_NAMES, compressed);
+        for (String[] row : rows) {
+            writer.writeRow(new ArrayFieldRow(row));
+        }
+        writer.close();
+        assertEquals(ROWS, writer.getRowCount());
+
+        try (ColumnarResultReader reader = new ColumnarResultReader(file)) {
+            assertArrayEquals(FIELD_NAMES, reader.getFieldNames());
+            int row = 0;
+            while (reader.next()) {
+                assertArrayEquals("row " + row, rows.get(row), reader.getRow());
+                row++;
+            }
+            assertEquals(ROWS, row);
+        }
+    }
+
+    //rows of different sizes (a column that starts in the middle of a block), empty values and non ASCII values
+    private static List<String[]> createRows() {
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            switch (i % 5) {
+                case 0:
+                    rows.add(new String[]{String.valueOf(i)});
+                    break;
+                case 1:
+                    rows.add(new String[]{String.valueOf(i), ""});
+                    break;
+                case 2:
+                    rows.add(new String[]{String.valueOf(i), "name" + i, "Z\u00fcrich, \"quoted\"\n"});
+                    break;
+                case 3:
+                    rows.add(new String[]{String.valueOf(i), "\u540d\u524d", "", "extra"});
+                    break;
+                default:
+                    rows.add(new String[0]);
+            }
+        }
+        return rows;
+    }
+}
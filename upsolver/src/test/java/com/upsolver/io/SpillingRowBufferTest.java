@@ -0,0 +1,129 @@
+package com.upsolver.io;
+
+import com.upsolver.components.ArrayFieldRow;
+import com.upsolver.components.Row;
+import com.upsolver.components.SortOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpillingRowBufferTest {
+    //more rows than MAX_MERGE_RUNS, a budget of a byte spills every row to its own run
+    private static final int ROWS = 300;
+
+    @Rule
+    public TemporaryFolder spillDirectory = new TemporaryFolder();
+
+    @Test
+    public void spilledRowsKeepTheFileOrder() {
+        List<String[]> rows = createRows();
+        List<List<String>> expected = new ArrayList<>();
+        for (String[] row : rows) {
+            expected.add(toList(row));
+        }
+        try (SpillingRowBuffer buffer = new SpillingRowBuffer(createBudget(1))) {
+            addRows(buffer, rows);
+            assertTrue("the rows were not spilled", buffer.getRunCount() > 0);
+            assertEquals(expected, readRows(buffer));
+        }
+        assertEquals("the runs were not deleted", 0, spillDirectory.getRoot().list().length);
+    }
+
+    @Test
+    public void spilledSortEqualsInMemorySort() {
+        for (SortOrder sortOrder : new SortOrder[]{new SortOrder(1, false, SortOrder.NO_LIMIT),
+                new SortOrder(1, true, SortOrder.NO_LIMIT)}) {
+            List<String[]> rows = createRows();
+            List<List<String>> inMemory;
+            try (SpillingRowBuffer buffer = new SpillingRowBuffer(createBudget(Long.MAX_VALUE), sortOrder)) {
+                addRows(buffer, rows);
+                assertEquals(0, buffer.getRunCount());
+                inMemory = readRows(buffer);
+            }
+            try (SpillingRowBuffer buffer = new SpillingRowBuffer(createBudget(1), sortOrder)) {
+                addRows(buffer, rows);
+                assertTrue("the rows were not spilled", buffer.getRunCount() > 0);
+                assertEquals(inMemory, readRows(buffer));
+            }
+            assertEquals("the runs were not deleted", 0, spillDirectory.getRoot().list().length);
+        }
+    }
+
+    @Test
+    public void mergedBuffersKeepTheFileOrder() {
+        List<String[]> rows = createRows();
+        List<List<String>> expected = new ArrayList<>();
+        for (String[] row : rows) {
+            expected.add(toList(row));
+        }
+        SpillBudget budget = createBudget(1);
+        try (SpillingRowBuffer first = new SpillingRowBuffer(budget);
+             SpillingRowBuffer second = new SpillingRowBuffer(budget)) {
+            addRows(first, rows.subList(0, ROWS / 2));
+            addRows(second, rows.subList(ROWS / 2, ROWS));
+            first.addAll(second);
+            assertEquals(0, second.getRunCount());
+            assertEquals(expected, readRows(first));
+        }
+        assertEquals("the runs were not deleted", 0, spillDirectory.getRoot().list().length);
+    }
+
+    private SpillBudget createBudget(long memoryBudget) {
+        SpillBudget budget = new SpillBudget();
+        budget.setMemoryBudget(memoryBudget);
+        budget.setDirectory(spillDirectory.getRoot());
+        return budget;
+    }
+
+    //rows of an id and a sort key: numbers, texts, equal keys and rows without the key
+    private static List<String[]> createRows() {
+        Random random = new Random(42);
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            String id = String.valueOf(i);
+            switch (random.nextInt(4)) {
+                case 0:
+                    rows.add(new String[]{id, String.valueOf(random.nextInt(20))});
+                    break;
+                case 1:
+                    rows.add(new String[]{id, String.valueOf(random.nextDouble() * 100 - 50)});
+                    break;
+                case 2:
+                    rows.add(new String[]{id, "text" + random.nextInt(10)});
+                    break;
+                default:
+                    rows.add(new String[]{id});
+            }
+        }
+        return rows;
+    }
+
+    private static void addRows(SpillingRowBuffer buffer, List<String[]> rows) {
+        for (String[] row : rows) {
+            buffer.addRow(new ArrayFieldRow(row));
+        }
+    }
+
+    private static List<List<String>> readRows(SpillingRowBuffer buffer) {
+        List<List<String>> rows = new ArrayList<>();
+        for (Row row : buffer) {
+            rows.add(new ArrayList<>(row.getData()));
+        }
+        return rows;
+    }
+
+    private static List<String> toList(String[] row) {
+        List<String> list = new ArrayList<>();
+        for (String field : row) {
+            list.add(field);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,86 @@
+package com.upsolver.operations;
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class OperationsPlannerTest {
+    @Test
+    public void filterOnAPluckedFieldRunsBeforeThePluck() {
+        assertPlan("pluck(3) -> filter(0,'iowa') -> max", "filter(3,'iowa') -> pluck(3) -> max");
+    }
+
+    @Test
+    public void filtersOnAPluckedFieldAllRunBeforeThePluck() {
+        assertPlan("filter(2,'x') -> pluck(3) -> filter(0,'iowa') -> filter(0,'ohio')",
+                "filter(2,'x') -> filter(3,'iowa') -> filter(3,'ohio') -> pluck(3)");
+    }
+
+    @Test
+    public void filterOnAnotherFieldStaysAfterThePluck() {
+        //the plucked row has a single field, the filter fails on every row before and after the plan
+        assertPlan("pluck(3) -> filter(1,'iowa')", "pluck(3) -> filter(1,'iowa')");
+    }
+
+    @Test
+    public void filterMovesBeforeEveryPluckOfTheField() {
+        assertPlan("pluck(3) -> pluck(0) -> filter(0,'iowa')", "filter(3,'iowa') -> pluck(3) -> pluck(0)");
+    }
+
+    @Test
+    public void filterAfterAJoinIsNotMoved() {
+        assertPlan("pluck(3) -> join(0,'lookup.csv',0) -> filter(0,'iowa')",
+                "pluck(3) -> join(0,'lookup.csv',0) -> filter(0,'iowa')");
+    }
+
+    @Test
+    public void transformationsRunBeforeTheAggregations() {
+        assertPlan("ceil -> pluck(11) -> max -> filter(0,'1')", "filter(11,'1') -> pluck(11) -> ceil -> max");
+    }
+
+    @Test
+    public void requiredFieldCountStopsAtTheFirstProjection() {
+        assertEquals(12, OperationsPlanner.getRequiredFieldCount(
+                OperationsPlanner.plan(parse("pluck(11) -> filter(0,'iowa') -> max"))));
+        assertEquals(6, OperationsPlanner.getRequiredFieldCount(OperationsPlanner.plan(parse("filter(5,'x') -> pluck(2)"))));
+        assertEquals(4, OperationsPlanner.getRequiredFieldCount(OperationsPlanner.plan(parse("groupby(3,1,sum)"))));
+        assertEquals(-1, OperationsPlanner.getRequiredFieldCount(OperationsPlanner.plan(parse("filter(3,'iowa')"))));
+        assertEquals(-1, OperationsPlanner.getRequiredFieldCount(OperationsPlanner.plan(parse("max"))));
+    }
+
+    private static void assertPlan(String operations, String expectedPlan) {
+        assertEquals(operations, format(parse(expectedPlan)), format(OperationsPlanner.plan(parse(operations))));
+    }
+
+    //the operations of a chain like "pluck(3) -> max", without the validation of OperationsManager
+    private static List<Map.Entry<OperationsEnum, List<String>>> parse(String operations) {
+        List<Map.Entry<OperationsEnum, List<String>>> parsed = new ArrayList<>();
+        for (String operation : operations.split("->")) {
+            String trimmed = operation.trim();
+            int parenthesis = trimmed.indexOf('(');
+            String name = parenthesis < 0 ? trimmed : trimmed.substring(0, parenthesis);
+            List<String> parameters = parenthesis < 0 ? new ArrayList<>()
+                    : Arrays.asList(trimmed.substring(parenthesis + 1, trimmed.lastIndexOf(')')).split(","));
+            parsed.add(new AbstractMap.SimpleImmutableEntry<>(OperationsEnum.valueOf(name.toUpperCase()), parameters));
+        }
+        return parsed;
+    }
+
+    private static String format(List<Map.Entry<OperationsEnum, List<String>>> plan) {
+        List<String> operations = new ArrayList<>();
+        for (Map.Entry<OperationsEnum, List<String>> operation : plan) {
+            List<String> parameters = new ArrayList<>();
+            for (String parameter : operation.getValue()) {
+                parameters.add(parameter.trim());
+            }
+            operations.add(operation.getKey().getName() + "(" + String.join(",", parameters) + ")");
+        }
+        return String.join(" -> ", operations);
+    }
+}
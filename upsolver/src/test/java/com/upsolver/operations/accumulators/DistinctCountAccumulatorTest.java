@@ -0,0 +1,60 @@
+package com.upsolver.operations.accumulators;
+
+import com.upsolver.components.ArrayFieldRow;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DistinctCountAccumulatorTest {
+    //about 4 standard errors of a sketch of 2^14 registers
+    private static final double MAX_RELATIVE_ERROR = 0.03;
+
+    @Test
+    public void estimateIsCloseToTheExactCount() {
+        for (int distinct : new int[]{1, 10, 1000, 20000, 100000, 1000000}) {
+            DistinctCountAccumulator sketch = new DistinctCountAccumulator(false);
+            DistinctCountAccumulator exact = new DistinctCountAccumulator(true);
+            Random random = new Random(distinct);
+            //every value is added about twice, in a random order
+            for (int i = 0; i < 2 * distinct; i++) {
+                String value = "value" + random.nextInt(distinct);
+                sketch.accumulate(value);
+                exact.accumulate(value);
+            }
+            assertWithinError(exact.getDistinctCount(), sketch.getDistinctCount());
+        }
+    }
+
+    @Test
+    public void mergedEstimateIsTheCountOfTheUnion() {
+        DistinctCountAccumulator first = new DistinctCountAccumulator(false);
+        DistinctCountAccumulator second = new DistinctCountAccumulator(false);
+        //[0, 60000) and [40000, 100000) overlap
+        for (int i = 0; i < 60000; i++) {
+            first.accumulate(String.valueOf(i));
+            second.accumulate(String.valueOf(i + 40000));
+        }
+        first.merge(second);
+        assertWithinError(100000, first.getDistinctCount());
+    }
+
+    @Test
+    public void rowFieldsAreCountedLikeTheirValues() {
+        DistinctCountAccumulator values = new DistinctCountAccumulator(false);
+        DistinctCountAccumulator fields = new DistinctCountAccumulator(false);
+        for (int i = 0; i < 5000; i++) {
+            String value = i % 2 == 0 ? "v" + i : "\u00e9t\u00e9" + i;
+            values.accumulate(value);
+            fields.accumulate(new ArrayFieldRow(new String[]{"key", value}), 1);
+        }
+        assertEquals(values.getDistinctCount(), fields.getDistinctCount());
+    }
+
+    private static void assertWithinError(long exact, long estimate) {
+        assertTrue("estimate " + estimate + " of " + exact,
+                Math.abs(estimate - exact) <= Math.max(1, MAX_RELATIVE_ERROR * exact));
+    }
+}
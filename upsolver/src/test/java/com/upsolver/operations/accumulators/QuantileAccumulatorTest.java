@@ -0,0 +1,99 @@
+package com.upsolver.operations.accumulators;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileAccumulatorTest {
+    private static final double[] PERCENTILES = {0, 1, 10, 25, 50, 75, 90, 99, 100};
+    //the rank error of the sketch is about 1.7%
+    private static final double MAX_RANK_ERROR = 0.03;
+
+    @Test
+    public void exactModeIsTheNearestRankValue() {
+        double[] values = createValues(10001, new Random(1));
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double percentile : PERCENTILES) {
+            QuantileAccumulator exact = new QuantileAccumulator(percentile, true);
+            for (double value : values) {
+                exact.accumulate(String.valueOf(value));
+            }
+            int rank = (int) Math.ceil(percentile / 100 * values.length);
+            assertEquals(sorted[Math.max(0, rank - 1)], exact.getValue().getAsDouble(), 0);
+        }
+    }
+
+    @Test
+    public void estimateRankIsCloseToThePercentile() {
+        for (int count : new int[]{100, 10000, 200000}) {
+            double[] values = createValues(count, new Random(count));
+            double[] sorted = values.clone();
+            Arrays.sort(sorted);
+            for (double percentile : PERCENTILES) {
+                QuantileAccumulator sketch = new QuantileAccumulator(percentile, false);
+                for (double value : values) {
+                    sketch.accumulate(String.valueOf(value));
+                }
+                assertRankWithinError(sorted, percentile, sketch.getValue().getAsDouble());
+            }
+        }
+    }
+
+    @Test
+    public void mergedEstimateRankIsCloseToThePercentile() {
+        double[] values = createValues(200000, new Random(3));
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double percentile : PERCENTILES) {
+            //four parts of the values like the partial results of a parallel scan
+            QuantileAccumulator merged = new QuantileAccumulator(percentile, false);
+            for (int part = 0; part < 4; part++) {
+                QuantileAccumulator sketch = new QuantileAccumulator(percentile, false);
+                for (int i = part; i < values.length; i += 4) {
+                    sketch.accumulate(String.valueOf(values[i]));
+                }
+                merged.merge(sketch);
+            }
+            assertRankWithinError(sorted, percentile, merged.getValue().getAsDouble());
+        }
+    }
+
+    //values with duplicates and a skewed distribution
+    private static double[] createValues(int count, Random random) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(4) == 0 ? random.nextInt(100) : Math.exp(random.nextGaussian() * 3);
+        }
+        return values;
+    }
+
+    //the ranks of the estimate (from its first to its last occurrence) include one near the rank of the percentile
+    private static void assertRankWithinError(double[] sorted, double percentile, double estimate) {
+        double rank = percentile / 100 * sorted.length;
+        int lowRank = lowerBound(sorted, estimate);
+        int highRank = lowerBound(sorted, Math.nextUp(estimate));
+        double error = rank < lowRank ? lowRank - rank : rank > highRank ? rank - highRank : 0;
+        assertTrue("percentile " + percentile + " of " + sorted.length + " values, estimate " + estimate
+                + " has ranks " + lowRank + " to " + highRank, error <= MAX_RANK_ERROR * sorted.length);
+    }
+
+    //the number of values that are less than the value
+    private static int lowerBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
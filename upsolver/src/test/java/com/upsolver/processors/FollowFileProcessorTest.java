@@ -0,0 +1,101 @@
+package com.upsolver.processors;
+
+import com.upsolver.operations.OperationsManager;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class FollowFileProcessorTest {
+    private static final String[] OPERATIONS = {"pluck(2) -> sum", "pluck(2) -> avg", "filter(1, 'Ohio') -> pluck(2) -> max"};
+    //more than the 64KB that were once checksummed before the saved offset
+    private static final int LINES = 10000;
+
+    @Rule
+    public TemporaryFolder directory = new TemporaryFolder();
+    private File dataFile;
+    private int runs;
+
+    @Before
+    public void setUp() throws IOException {
+        dataFile = directory.newFile("data.csv");
+        Files.write(dataFile.toPath(), ("id,state,value\n" + createLines(0, LINES)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void resumedFollowEqualsASinglePass() throws IOException {
+        for (String operations : OPERATIONS) {
+            follow(operations);
+            append(createLines(LINES, 2 * LINES) + (2 * LINES) + ",Ohio,9");
+            //the last line does not end with a new line yet, it is processed by the next run
+            follow(operations);
+            append("99.5\n" + createLines(2 * LINES + 1, 3 * LINES));
+            assertEquals(operations, processOnce(operations), follow(operations));
+        }
+    }
+
+    @Test
+    public void editBeforeTheSavedOffsetIsProcessedFromTheStart() throws IOException {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            String operations = OPERATIONS[i];
+            follow(operations);
+            try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) {
+                //the value of the first line changes for every operations
+                file.seek("id,state,value\n0,Iowa,".length());
+                file.write('1' + i);
+            }
+            append(createLines(LINES + 100 * i, LINES + 100 * (i + 1)));
+            assertEquals(operations, processOnce(operations), follow(operations));
+        }
+    }
+
+    //lines of an id, a state and a value
+    private static String createLines(int start, int end) {
+        StringBuilder lines = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            lines.append(i).append(',').append(i % 3 == 0 ? "Iowa" : "Ohio").append(',').append(i % 100 * 1.5).append('\n');
+        }
+        return lines.toString();
+    }
+
+    private void append(String lines) throws IOException {
+        Files.write(dataFile.toPath(), lines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private String follow(String operations) throws IOException {
+        OperationsManager operationsManager = createOperationsManager(operations);
+        new FollowFileProcessor(dataFile, operationsManager, operations).process();
+        return readResult();
+    }
+
+    private String processOnce(String operations) throws IOException {
+        OperationsManager operationsManager = createOperationsManager(operations);
+        new MappedFileProcessor(dataFile, operationsManager).process();
+        return readResult();
+    }
+
+    //every run writes its result file to a directory of its own
+    private OperationsManager createOperationsManager(String operations) throws IOException {
+        OperationsManager operationsManager = new OperationsManager(operations);
+        File outputDirectory = directory.newFolder("run" + runs++);
+        operationsManager.setOutputDirectory(outputDirectory.getPath());
+        return operationsManager;
+    }
+
+    private String readResult() throws IOException {
+        File[] resultFiles = new File(directory.getRoot(), "run" + (runs - 1)).listFiles();
+        assertNotNull(resultFiles);
+        assertEquals(1, resultFiles.length);
+        return new String(Files.readAllBytes(resultFiles[0].toPath()), StandardCharsets.UTF_8);
+    }
+}